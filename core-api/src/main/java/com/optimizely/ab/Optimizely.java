@@ -30,10 +30,12 @@ import com.optimizely.ab.event.internal.EventFactory;
 import com.optimizely.ab.event.internal.UserEvent;
 import com.optimizely.ab.event.internal.UserEventFactory;
 import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.optimizely.ab.internal.DecisionAttributes;
 import com.optimizely.ab.notification.*;
 import com.optimizely.ab.optimizelyconfig.OptimizelyConfig;
 import com.optimizely.ab.optimizelyconfig.OptimizelyConfigManager;
 import com.optimizely.ab.optimizelyconfig.OptimizelyConfigService;
+import com.optimizely.ab.optimizelydecision.OptimizelyDecision;
 import com.optimizely.ab.optimizelyjson.OptimizelyJSON;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -208,7 +210,7 @@ public class Optimizely implements AutoCloseable {
             logger.info("Not activating user \"{}\" for experiment \"{}\".", userId, experiment.getKey());
             return null;
         }
-        Map<String, ?> copiedAttributes = copyAttributes(attributes);
+        Map<String, ?> copiedAttributes = copyAttributes(userId, attributes);
         // bucket the user to the given experiment and dispatch an impression event
         Variation variation = getVariation(projectConfig, experiment, userId, copiedAttributes);
         if (variation == null) {
@@ -286,7 +288,7 @@ public class Optimizely implements AutoCloseable {
             return;
         }
 
-        Map<String, ?> copiedAttributes = copyAttributes(attributes);
+        Map<String, ?> copiedAttributes = copyAttributes(userId, attributes);
 
         EventType eventType = projectConfig.getEventTypeForName(eventName, errorHandler);
         if (eventType == null) {
@@ -359,14 +361,17 @@ public class Optimizely implements AutoCloseable {
             return false;
         }
 
-        return isFeatureEnabled(projectConfig, featureKey, userId, attributes);
+        return isFeatureEnabled(projectConfig, featureKey, userId, copyAttributes(userId, attributes));
     }
 
+    /**
+     * @param copiedAttributes the attributes copied by the public caller, shared by the flags it decides
+     */
     @Nonnull
     private Boolean isFeatureEnabled(@Nonnull ProjectConfig projectConfig,
                                      @Nonnull String featureKey,
                                      @Nonnull String userId,
-                                     @Nonnull Map<String, ?> attributes) {
+                                     @Nonnull Map<String, ?> copiedAttributes) {
         if (featureKey == null) {
             logger.warn("The featureKey parameter must be nonnull.");
             return false;
@@ -381,7 +386,6 @@ public class Optimizely implements AutoCloseable {
             return false;
         }
 
-        Map<String, ?> copiedAttributes = copyAttributes(attributes);
         FeatureDecision.DecisionSource decisionSource = FeatureDecision.DecisionSource.ROLLOUT;
         FeatureDecision featureDecision = decisionService.getVariationForFeature(featureFlag, userId, copiedAttributes, projectConfig);
         Boolean featureEnabled = false;
@@ -684,7 +688,7 @@ public class Optimizely implements AutoCloseable {
         }
 
         String variableValue = variable.getDefaultValue();
-        Map<String, ?> copiedAttributes = copyAttributes(attributes);
+        Map<String, ?> copiedAttributes = copyAttributes(userId, attributes);
         FeatureDecision featureDecision = decisionService.getVariationForFeature(featureFlag, userId, copiedAttributes, projectConfig);
         Boolean featureEnabled = false;
         if (featureDecision.variation != null) {
@@ -818,7 +822,7 @@ public class Optimizely implements AutoCloseable {
             return null;
         }
 
-        Map<String, ?> copiedAttributes = copyAttributes(attributes);
+        Map<String, ?> copiedAttributes = copyAttributes(userId, attributes);
         FeatureDecision featureDecision = decisionService.getVariationForFeature(featureFlag, userId, copiedAttributes, projectConfig);
         Boolean featureEnabled = false;
         Variation variation = featureDecision.variation;
@@ -835,10 +839,35 @@ public class Optimizely implements AutoCloseable {
                     "The default values are being returned.", userId, featureKey);
         }
 
+        Map<String, Object> valuesMap = getFeatureVariableValues(featureFlag, featureEnabled ? variation : null);
+
+        DecisionNotification decisionNotification = DecisionNotification.newFeatureVariableDecisionNotificationBuilder()
+            .withUserId(userId)
+            .withAttributes(copiedAttributes)
+            .withFeatureKey(featureKey)
+            .withFeatureEnabled(featureEnabled)
+            .withVariableValues(valuesMap)
+            .withFeatureDecision(featureDecision)
+            .build();
+
+        notificationCenter.send(decisionNotification);
+
+        return new OptimizelyJSON(valuesMap);
+    }
+
+    /**
+     * Get the converted values of all variables in the feature.
+     *
+     * @param featureFlag The feature flag.
+     * @param variation   The variation of an enabled decision, or null to get the default values.
+     * @return map of variable keys to their values
+     */
+    private Map<String, Object> getFeatureVariableValues(@Nonnull FeatureFlag featureFlag,
+                                                         @Nullable Variation variation) {
         Map<String, Object> valuesMap = new HashMap<String, Object>();
         for (FeatureVariable variable : featureFlag.getVariables()) {
             String value = variable.getDefaultValue();
-            if (featureEnabled) {
+            if (variation != null) {
                 FeatureVariableUsageInstance instance = variation.getVariableIdToFeatureVariableUsageInstanceMap().get(variable.getId());
                 if (instance != null) {
                     value = instance.getValue();
@@ -852,19 +881,7 @@ public class Optimizely implements AutoCloseable {
 
             valuesMap.put(variable.getKey(), convertedValue);
         }
-
-        DecisionNotification decisionNotification = DecisionNotification.newFeatureVariableDecisionNotificationBuilder()
-            .withUserId(userId)
-            .withAttributes(copiedAttributes)
-            .withFeatureKey(featureKey)
-            .withFeatureEnabled(featureEnabled)
-            .withVariableValues(valuesMap)
-            .withFeatureDecision(featureDecision)
-            .build();
-
-        notificationCenter.send(decisionNotification);
-
-        return new OptimizelyJSON(valuesMap);
+        return valuesMap;
     }
 
     /**
@@ -888,7 +905,7 @@ public class Optimizely implements AutoCloseable {
             return enabledFeaturesList;
         }
 
-        Map<String, ?> copiedAttributes = copyAttributes(attributes);
+        Map<String, ?> copiedAttributes = copyAttributes(userId, attributes);
         for (FeatureFlag featureFlag : projectConfig.getFeatureFlags()) {
             String featureKey = featureFlag.getKey();
             if (isFeatureEnabled(projectConfig, featureKey, userId, copiedAttributes))
@@ -898,6 +915,82 @@ public class Optimizely implements AutoCloseable {
         return enabledFeaturesList;
     }
 
+    /**
+     * Decide all feature flags for the user in one pass.
+     * Send an impression event for every flag whose decision comes from a feature test, and a single
+     * {@link DecisionNotification} holding the decisions of all flags.
+     *
+     * The bucketing id, the attributes and the result of each audience are resolved once for the user and
+     * shared by all flags, so this is cheaper than calling {@link #isFeatureEnabled} and
+     * {@link #getAllFeatureVariables} per flag.
+     *
+     * @param userId     The ID of the user.
+     * @param attributes The user's attributes.
+     * @return Map of the feature keys to the decision of each feature, in datafile order.
+     * Empty if the userId is null or the instance is not valid.
+     */
+    @Nonnull
+    public Map<String, OptimizelyDecision> decideAll(@Nonnull String userId,
+                                                     @Nonnull Map<String, ?> attributes) {
+        Map<String, OptimizelyDecision> decisions = new LinkedHashMap<String, OptimizelyDecision>();
+        if (!validateUserId(userId)) {
+            return decisions;
+        }
+
+        ProjectConfig projectConfig = getProjectConfig();
+        if (projectConfig == null) {
+            logger.error("Optimizely instance is not valid, failing decideAll call.");
+            return decisions;
+        }
+
+        DecisionAttributes decisionAttributes = new DecisionAttributes(userId, attributes);
+        for (FeatureFlag featureFlag : projectConfig.getFeatureFlags()) {
+            String featureKey = featureFlag.getKey();
+            FeatureDecision featureDecision = decisionService.getVariationForFeature(featureFlag, userId, decisionAttributes, projectConfig);
+            Variation variation = featureDecision.variation;
+            FeatureDecision.DecisionSource decisionSource = FeatureDecision.DecisionSource.ROLLOUT;
+            String experimentKey = null;
+            String variationKey = null;
+            boolean featureEnabled = false;
+
+            if (variation != null) {
+                if (FeatureDecision.DecisionSource.FEATURE_TEST.equals(featureDecision.decisionSource)) {
+                    sendImpression(
+                        projectConfig,
+                        featureDecision.experiment,
+                        userId,
+                        decisionAttributes,
+                        variation);
+                    decisionSource = featureDecision.decisionSource;
+                }
+                experimentKey = featureDecision.experiment.getKey();
+                variationKey = variation.getKey();
+                featureEnabled = variation.getFeatureEnabled();
+            }
+
+            Map<String, Object> valuesMap = getFeatureVariableValues(featureFlag, featureEnabled ? variation : null);
+            decisions.put(featureKey, new OptimizelyDecision(
+                featureKey,
+                featureEnabled,
+                new OptimizelyJSON(valuesMap),
+                experimentKey,
+                variationKey,
+                decisionSource));
+
+            logger.info("Feature \"{}\" is enabled for user \"{}\"? {}", featureKey, userId, featureEnabled);
+        }
+
+        DecisionNotification decisionNotification = DecisionNotification.newAllFeaturesDecisionNotificationBuilder()
+            .withUserId(userId)
+            .withAttributes(decisionAttributes)
+            .withFeatureDecisions(decisions)
+            .build();
+
+        notificationCenter.send(decisionNotification);
+
+        return decisions;
+    }
+
     //======== getVariation calls ========//
 
     @Nullable
@@ -919,7 +1012,7 @@ public class Optimizely implements AutoCloseable {
                                    @Nonnull Experiment experiment,
                                    @Nonnull String userId,
                                    @Nonnull Map<String, ?> attributes) throws UnknownExperimentException {
-        Map<String, ?> copiedAttributes = copyAttributes(attributes);
+        Map<String, ?> copiedAttributes = copyAttributes(userId, attributes);
         Variation variation = decisionService.getVariation(experiment, userId, copiedAttributes, projectConfig);
 
         String notificationType = NotificationCenter.DecisionNotificationType.AB_TEST.toString();
@@ -1087,15 +1180,19 @@ public class Optimizely implements AutoCloseable {
     }
 
     /**
-     * Helper method which makes separate copy of attributesMap variable and returns it
+     * Helper method which makes separate copy of attributesMap variable and returns it.
+     * The copy caches the audience results and bucketing id of the user for the duration of the call.
+     * It is always a fresh copy, also for {@link DecisionAttributes} handed back by a caller, so a cache is
+     * never reused across calls.
      *
+     * @param userId     the user the attributes belong to
      * @param attributes map to copy
      * @return copy of attributes
      */
-    private Map<String, ?> copyAttributes(Map<String, ?> attributes) {
+    private Map<String, ?> copyAttributes(String userId, Map<String, ?> attributes) {
         Map<String, ?> copiedAttributes = null;
         if (attributes != null) {
-            copiedAttributes = new HashMap<>(attributes);
+            copiedAttributes = userId != null ? new DecisionAttributes(userId, attributes) : new HashMap<>(attributes);
         }
         return copiedAttributes;
     }
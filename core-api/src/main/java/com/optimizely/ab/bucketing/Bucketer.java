@@ -21,7 +21,6 @@ import com.optimizely.ab.bucketing.internal.MurmurHash3;
 import com.optimizely.ab.config.Experiment;
 import com.optimizely.ab.config.Group;
 import com.optimizely.ab.config.ProjectConfig;
-import com.optimizely.ab.config.TrafficAllocation;
 import com.optimizely.ab.config.Variation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +28,6 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
-import java.util.List;
 
 /**
  * Default Optimizely bucketing algorithm that evenly distributes users using the Murmur3 hash of some provided
@@ -53,35 +51,15 @@ public class Bucketer {
     @VisibleForTesting
     static final int MAX_TRAFFIC_VALUE = 10000;
 
-    private String bucketToEntity(int bucketValue, List<TrafficAllocation> trafficAllocations) {
-        int currentEndOfRange;
-        for (TrafficAllocation currAllocation : trafficAllocations) {
-            currentEndOfRange = currAllocation.getEndOfRange();
-            if (bucketValue < currentEndOfRange) {
-                // for mutually exclusive bucketing, de-allocated space is represented by an empty string
-                if (currAllocation.getEntityId().isEmpty()) {
-                    return null;
-                }
-                return currAllocation.getEntityId();
-            }
-        }
-
-        return null;
-    }
-
     private Experiment bucketToExperiment(@Nonnull Group group,
                                           @Nonnull String bucketingId,
                                           @Nonnull ProjectConfig projectConfig) {
         // "salt" the bucket id using the group id
-        String bucketKey = bucketingId + group.getId();
-
-        List<TrafficAllocation> trafficAllocations = group.getTrafficAllocation();
-
-        int hashCode = MurmurHash3.murmurhash3_x86_32(bucketKey, 0, bucketKey.length(), MURMUR_HASH_SEED);
+        int hashCode = hashBucketKey(bucketingId, group.getId());
         int bucketValue = generateBucketValue(hashCode);
         logger.debug("Assigned bucket {} to user with bucketingId \"{}\" during experiment bucketing.", bucketValue, bucketingId);
 
-        String bucketedExperimentId = bucketToEntity(bucketValue, trafficAllocations);
+        String bucketedExperimentId = group.getTrafficAllocationTable().bucketToEntity(bucketValue);
         if (bucketedExperimentId != null) {
             return projectConfig.getExperimentIdMapping().get(bucketedExperimentId);
         }
@@ -95,15 +73,12 @@ public class Bucketer {
         // "salt" the bucket id using the experiment id
         String experimentId = experiment.getId();
         String experimentKey = experiment.getKey();
-        String combinedBucketId = bucketingId + experimentId;
 
-        List<TrafficAllocation> trafficAllocations = experiment.getTrafficAllocation();
-
-        int hashCode = MurmurHash3.murmurhash3_x86_32(combinedBucketId, 0, combinedBucketId.length(), MURMUR_HASH_SEED);
+        int hashCode = hashBucketKey(bucketingId, experimentId);
         int bucketValue = generateBucketValue(hashCode);
         logger.debug("Assigned bucket {} to user with bucketingId \"{}\" when bucketing to a variation.", bucketValue, bucketingId);
 
-        String bucketedVariationId = bucketToEntity(bucketValue, trafficAllocations);
+        String bucketedVariationId = experiment.getTrafficAllocationTable().bucketToEntity(bucketValue);
         if (bucketedVariationId != null) {
             Variation bucketedVariation = experiment.getVariationIdToVariationMap().get(bucketedVariationId);
             String variationKey = bucketedVariation.getKey();
@@ -162,6 +137,18 @@ public class Bucketer {
 
     //======== Helper methods ========//
 
+    /**
+     * Hash the bucketing id salted with the given entity id, as if the two were concatenated.
+     *
+     * @param bucketingId the bucketing id of the user
+     * @param salt        the id of the experiment or group
+     * @return the murmur hash of the bucket key
+     */
+    private static int hashBucketKey(String bucketingId, @Nonnull String salt) {
+        // a null bucketing id is hashed as "null", the same as the concatenated bucket key used to be
+        return MurmurHash3.murmurhash3_x86_32(String.valueOf(bucketingId), salt, MURMUR_HASH_SEED);
+    }
+
     /**
      * Map the given 32-bit hashcode into the range [0, {@link #MAX_TRAFFIC_VALUE}).
      *
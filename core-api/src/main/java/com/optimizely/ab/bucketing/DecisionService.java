@@ -18,6 +18,7 @@ package com.optimizely.ab.bucketing;
 import com.optimizely.ab.OptimizelyRuntimeException;
 import com.optimizely.ab.config.*;
 import com.optimizely.ab.error.ErrorHandler;
+import com.optimizely.ab.internal.DecisionAttributes;
 import com.optimizely.ab.internal.ExperimentUtils;
 import com.optimizely.ab.internal.ControlAttribute;
 
@@ -25,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -167,9 +169,11 @@ public class DecisionService {
                                                   @Nonnull String userId,
                                                   @Nonnull Map<String, ?> filteredAttributes,
                                                   @Nonnull ProjectConfig projectConfig) {
-        if (!featureFlag.getExperimentIds().isEmpty()) {
-            for (String experimentId : featureFlag.getExperimentIds()) {
-                Experiment experiment = projectConfig.getExperimentIdMapping().get(experimentId);
+        DecisionPlan decisionPlan = getDecisionPlan(featureFlag, projectConfig);
+        List<Experiment> experiments = decisionPlan.getExperiments();
+        if (!experiments.isEmpty()) {
+            for (int i = 0; i < experiments.size(); i++) {
+                Experiment experiment = experiments.get(i);
                 Variation variation = getVariation(experiment, userId, filteredAttributes, projectConfig);
                 if (variation != null) {
                     return new FeatureDecision(experiment, variation, FeatureDecision.DecisionSource.FEATURE_TEST);
@@ -179,7 +183,7 @@ public class DecisionService {
             logger.info("The feature flag \"{}\" is not used in any experiments.", featureFlag.getKey());
         }
 
-        FeatureDecision featureDecision = getVariationForFeatureInRollout(featureFlag, userId, filteredAttributes, projectConfig);
+        FeatureDecision featureDecision = getVariationForFeatureInRollout(featureFlag, userId, filteredAttributes, projectConfig, decisionPlan);
         if (featureDecision.variation == null) {
             logger.info("The user \"{}\" was not bucketed into a rollout for feature flag \"{}\".",
                 userId, featureFlag.getKey());
@@ -205,24 +209,47 @@ public class DecisionService {
                                                     @Nonnull String userId,
                                                     @Nonnull Map<String, ?> filteredAttributes,
                                                     @Nonnull ProjectConfig projectConfig) {
+        return getVariationForFeatureInRollout(featureFlag, userId, filteredAttributes, projectConfig,
+            getDecisionPlan(featureFlag, projectConfig));
+    }
+
+    /**
+     * Try to bucket the user into a rollout rule of an already resolved {@link DecisionPlan}.
+     *
+     * @param featureFlag        The feature flag the user wants to access.
+     * @param userId             User Identifier
+     * @param filteredAttributes A map of filtered attributes.
+     * @param decisionPlan       The decision plan of the feature flag.
+     * @return {@link FeatureDecision}
+     */
+    @Nonnull
+    FeatureDecision getVariationForFeatureInRollout(@Nonnull FeatureFlag featureFlag,
+                                                    @Nonnull String userId,
+                                                    @Nonnull Map<String, ?> filteredAttributes,
+                                                    @Nonnull ProjectConfig projectConfig,
+                                                    @Nonnull DecisionPlan decisionPlan) {
         // use rollout to get variation for feature
         if (featureFlag.getRolloutId().isEmpty()) {
             logger.info("The feature flag \"{}\" is not used in a rollout.", featureFlag.getKey());
             return new FeatureDecision(null, null, null);
         }
-        Rollout rollout = projectConfig.getRolloutIdMapping().get(featureFlag.getRolloutId());
-        if (rollout == null) {
+        if (decisionPlan.getRollout() == null) {
             logger.error("The rollout with id \"{}\" was not found in the datafile for feature flag \"{}\".",
                 featureFlag.getRolloutId(), featureFlag.getKey());
             return new FeatureDecision(null, null, null);
         }
 
+        List<Experiment> rolloutRules = decisionPlan.getRolloutRules();
+        int rolloutRulesLength = rolloutRules.size();
+        if (rolloutRulesLength == 0) {
+            return new FeatureDecision(null, null, null);
+        }
+
         // for all rules before the everyone else rule
-        int rolloutRulesLength = rollout.getExperiments().size();
         String bucketingId = getBucketingId(userId, filteredAttributes);
         Variation variation;
         for (int i = 0; i < rolloutRulesLength - 1; i++) {
-            Experiment rolloutRule = rollout.getExperiments().get(i);
+            Experiment rolloutRule = rolloutRules.get(i);
             if (ExperimentUtils.doesUserMeetAudienceConditions(projectConfig, rolloutRule, filteredAttributes, RULE, Integer.toString(i + 1))) {
                 variation = bucketer.bucket(rolloutRule, bucketingId, projectConfig);
                 if (variation == null) {
@@ -236,7 +263,7 @@ public class DecisionService {
         }
 
         // get last rule which is the fall back rule
-        Experiment finalRule = rollout.getExperiments().get(rolloutRulesLength - 1);
+        Experiment finalRule = rolloutRules.get(rolloutRulesLength - 1);
         if (ExperimentUtils.doesUserMeetAudienceConditions(projectConfig, finalRule, filteredAttributes, RULE, "Everyone Else")) {
             variation = bucketer.bucket(finalRule, bucketingId, projectConfig);
             if (variation != null) {
@@ -248,6 +275,24 @@ public class DecisionService {
         return new FeatureDecision(null, null, null);
     }
 
+    /**
+     * Get the precompiled {@link DecisionPlan} of a feature flag. Flags that are not part of the
+     * project config, e.g. ones built by hand, are resolved against its id mappings instead.
+     *
+     * @param featureFlag   The feature flag the user wants to access.
+     * @param projectConfig The current projectConfig.
+     * @return {@link DecisionPlan}
+     */
+    @Nonnull
+    private DecisionPlan getDecisionPlan(@Nonnull FeatureFlag featureFlag,
+                                         @Nonnull ProjectConfig projectConfig) {
+        DecisionPlan decisionPlan = projectConfig.getDecisionPlan(featureFlag);
+        if (decisionPlan == null) {
+            decisionPlan = DecisionPlan.compile(featureFlag, projectConfig.getExperimentIdMapping(), projectConfig.getRolloutIdMapping());
+        }
+        return decisionPlan;
+    }
+
     /**
      * Get the variation the user has been whitelisted into.
      *
@@ -363,6 +408,23 @@ public class DecisionService {
      */
     String getBucketingId(@Nonnull String userId,
                           @Nonnull Map<String, ?> filteredAttributes) {
+        // the bucketing id only depends on the user, so it is resolved once per request when deciding several flags
+        if (filteredAttributes instanceof DecisionAttributes) {
+            DecisionAttributes decisionAttributes = (DecisionAttributes) filteredAttributes;
+            if (userId.equals(decisionAttributes.getUserId())) {
+                String bucketingId = decisionAttributes.getBucketingId();
+                if (bucketingId == null) {
+                    bucketingId = resolveBucketingId(userId, filteredAttributes);
+                    decisionAttributes.setBucketingId(bucketingId);
+                }
+                return bucketingId;
+            }
+        }
+        return resolveBucketingId(userId, filteredAttributes);
+    }
+
+    private String resolveBucketingId(@Nonnull String userId,
+                                      @Nullable Map<String, ?> filteredAttributes) {
         String bucketingId = userId;
         if (filteredAttributes != null && filteredAttributes.containsKey(ControlAttribute.BUCKETING_ATTRIBUTE.toString())) {
             if (String.class.isInstance(filteredAttributes.get(ControlAttribute.BUCKETING_ATTRIBUTE.toString()))) {
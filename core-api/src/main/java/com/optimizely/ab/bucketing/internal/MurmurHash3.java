@@ -96,14 +96,34 @@ public final class MurmurHash3 {
      * the string to a temporary buffer
      */
     public static int murmurhash3_x86_32(CharSequence data, int offset, int len, int seed) {
+        return murmurhash3_x86_32(data, offset, len, "", 0, seed);
+    }
+
+    /**
+     * Hash the UTF-8 bytes of {@code data} followed by the UTF-8 bytes of {@code salt}, as if the two
+     * were concatenated, without building the concatenated String.
+     *
+     * @param data the leading characters
+     * @param salt the trailing characters
+     * @param seed the murmur hash seed
+     * @return the MurmurHash3_x86_32 hash of the UTF-8 bytes of {@code data + salt}
+     */
+    public static int murmurhash3_x86_32(CharSequence data, CharSequence salt, int seed) {
+        return murmurhash3_x86_32(data, 0, data.length(), salt, salt.length(), seed);
+    }
+
+    private static int murmurhash3_x86_32(CharSequence data, int offset, int len,
+                                          CharSequence tail, int tailLen, int seed) {
 
         final int c1 = 0xcc9e2d51;
         final int c2 = 0x1b873593;
 
         int h1 = seed;
 
-        int pos = offset;
-        int end = offset + len;
+        // positions past len are read from the tail, so a surrogate pair split across the
+        // two segments is encoded the same way as in the concatenated string
+        int pos = 0;
+        int end = len + tailLen;
         int k1 = 0;
         int k2;
         int shift = 0;
@@ -112,7 +132,8 @@ public final class MurmurHash3 {
 
 
         while (pos < end) {
-            int code = data.charAt(pos++);
+            int code = pos < len ? data.charAt(offset + pos) : tail.charAt(pos - len);
+            pos++;
             if (code < 0x80) {
                 k2 = code;
                 bits = 8;
@@ -153,7 +174,8 @@ public final class MurmurHash3 {
             } else {
                 // surrogate pair
                 // int utf32 = pos < end ? (int) data.charAt(pos++) : 0;
-                int utf32 = (int) data.charAt(pos++);
+                int utf32 = pos < len ? data.charAt(offset + pos) : tail.charAt(pos - len);
+                pos++;
                 utf32 = ((code - 0xD7C0) << 10) + (utf32 & 0x3FF);
                 k2 = (0xff & (0xF0 | (utf32 >> 18)))
                     | ((0x80 | ((utf32 >> 12) & 0x3F))) << 8
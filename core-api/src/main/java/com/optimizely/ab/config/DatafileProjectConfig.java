@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.optimizely.ab.UnknownEventTypeException;
 import com.optimizely.ab.UnknownExperimentException;
 import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.Condition;
 import com.optimizely.ab.config.parser.ConfigParseException;
 import com.optimizely.ab.config.parser.DefaultConfigParser;
 import com.optimizely.ab.error.ErrorHandler;
@@ -83,6 +84,8 @@ public class DatafileProjectConfig implements ProjectConfig {
     private final Map<String, Group> groupIdMapping;
     private final Map<String, Rollout> rolloutIdMapping;
     private final Map<String, List<String>> experimentFeatureKeyMapping;
+    private final Map<FeatureFlag, DecisionPlan> decisionPlanMapping;
+    private final Map<Experiment, Condition> audienceConditionMapping;
 
     // other mappings
     private final Map<String, Experiment> variationIdToExperimentMapping;
@@ -197,6 +200,12 @@ public class DatafileProjectConfig implements ProjectConfig {
 
         // Generate experiment to featureFlag list mapping to identify if experiment is AB-Test experiment or Feature-Test Experiment.
         this.experimentFeatureKeyMapping = ProjectConfigUtils.generateExperimentFeatureMapping(this.featureFlags);
+
+        // Precompile the decision path of every feature flag so decisions don't need to resolve ids.
+        this.decisionPlanMapping = ProjectConfigUtils.generateDecisionPlanMapping(this.featureFlags, this.experimentIdMapping, this.rolloutIdMapping);
+
+        // Link the audience references of every experiment and rollout rule, so evaluations don't look them up.
+        this.audienceConditionMapping = ProjectConfigUtils.generateAudienceConditionMapping(this.experiments, this.rollouts, this.audienceIdMapping);
     }
 
     /**
@@ -438,6 +447,31 @@ public class DatafileProjectConfig implements ProjectConfig {
         return experimentFeatureKeyMapping;
     }
 
+    /**
+     * Returns the precompiled {@link DecisionPlan} of a feature flag of this project config.
+     *
+     * @param featureFlag the feature flag to get the decision plan for
+     * @return the decision plan, or null if the feature flag is not part of this project config
+     */
+    @Override
+    @Nullable
+    public DecisionPlan getDecisionPlan(FeatureFlag featureFlag) {
+        return decisionPlanMapping.get(featureFlag);
+    }
+
+    /**
+     * Returns the audience conditions of an experiment or rollout rule of this project config,
+     * with its audience references linked to their audiences.
+     *
+     * @param experiment the experiment or rollout rule to get the audience conditions for
+     * @return the audience conditions, or null if the experiment is not part of this project config
+     */
+    @Override
+    @Nullable
+    public Condition getAudienceCondition(Experiment experiment) {
+        return audienceConditionMapping.get(experiment);
+    }
+
     @Override
     public String toString() {
         return "ProjectConfig{" +
@@ -0,0 +1,128 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DecisionPlan is the precompiled decision path of a single {@link FeatureFlag}.
+ *
+ * The feature test experiments and the rollout rules of the flag are resolved once, when the
+ * {@link ProjectConfig} is built, so a feature decision walks them in priority order without
+ * looking up any experiment or rollout by id.
+ *
+ * The plan holds only those lists. The traffic allocations of each experiment and group are compiled
+ * into a {@link TrafficAllocationTable} and the audience conditions are linked when the config is built,
+ * but a decision still looks them up: the plan of the flag in {@link ProjectConfig#getDecisionPlan},
+ * the group of a grouped experiment by id in the Bucketer, and the linked audience condition of each
+ * experiment or rule in {@link ProjectConfig#getAudienceCondition}.
+ */
+@Immutable
+public class DecisionPlan {
+
+    private final FeatureFlag featureFlag;
+    private final List<Experiment> experiments;
+    private final Rollout rollout;
+    private final List<Experiment> rolloutRules;
+
+    public DecisionPlan(@Nonnull FeatureFlag featureFlag,
+                        @Nonnull List<Experiment> experiments,
+                        @Nullable Rollout rollout) {
+        this.featureFlag = featureFlag;
+        this.experiments = Collections.unmodifiableList(new ArrayList<>(experiments));
+        this.rollout = rollout;
+        if (rollout == null || rollout.getExperiments() == null) {
+            this.rolloutRules = Collections.emptyList();
+        } else {
+            this.rolloutRules = Collections.unmodifiableList(new ArrayList<>(rollout.getExperiments()));
+        }
+    }
+
+    /**
+     * Resolve the decision path of a feature flag against the given id mappings.
+     * Experiment ids that are not in the datafile are skipped.
+     *
+     * @param featureFlag         the feature flag to compile
+     * @param experimentIdMapping the experiment id to experiment mapping of the project config
+     * @param rolloutIdMapping    the rollout id to rollout mapping of the project config
+     * @return the {@link DecisionPlan} of the feature flag
+     */
+    public static DecisionPlan compile(@Nonnull FeatureFlag featureFlag,
+                                       @Nonnull Map<String, Experiment> experimentIdMapping,
+                                       @Nonnull Map<String, Rollout> rolloutIdMapping) {
+        List<String> experimentIds = featureFlag.getExperimentIds();
+        List<Experiment> experiments = new ArrayList<>(experimentIds == null ? 0 : experimentIds.size());
+        if (experimentIds != null) {
+            for (String experimentId : experimentIds) {
+                Experiment experiment = experimentIdMapping.get(experimentId);
+                if (experiment != null) {
+                    experiments.add(experiment);
+                }
+            }
+        }
+
+        String rolloutId = featureFlag.getRolloutId();
+        Rollout rollout = rolloutId == null || rolloutId.isEmpty() ? null : rolloutIdMapping.get(rolloutId);
+
+        return new DecisionPlan(featureFlag, experiments, rollout);
+    }
+
+    @Nonnull
+    public FeatureFlag getFeatureFlag() {
+        return featureFlag;
+    }
+
+    /**
+     * @return the feature test experiments of the flag, in the order they are evaluated
+     */
+    @Nonnull
+    public List<Experiment> getExperiments() {
+        return experiments;
+    }
+
+    /**
+     * @return the rollout of the flag, or null if the flag has no rollout or it is not in the datafile
+     */
+    @Nullable
+    public Rollout getRollout() {
+        return rollout;
+    }
+
+    /**
+     * @return the rollout rules of the flag, in the order they are evaluated. The last rule is the
+     * "Everyone Else" rule.
+     */
+    @Nonnull
+    public List<Experiment> getRolloutRules() {
+        return rolloutRules;
+    }
+
+    @Override
+    public String toString() {
+        return "DecisionPlan{" +
+            "featureFlag='" + featureFlag.getKey() + '\'' +
+            ", experiments=" + experiments.size() +
+            ", rolloutRules=" + rolloutRules.size() +
+            '}';
+    }
+}
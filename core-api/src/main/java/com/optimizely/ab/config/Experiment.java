@@ -47,6 +47,7 @@ public class Experiment implements IdKeyMapped {
     private final Condition<AudienceIdCondition> audienceConditions;
     private final List<Variation> variations;
     private final List<TrafficAllocation> trafficAllocation;
+    private final TrafficAllocationTable trafficAllocationTable;
 
     private final Map<String, Variation> variationKeyToVariationMap;
     private final Map<String, Variation> variationIdToVariationMap;
@@ -106,6 +107,7 @@ public class Experiment implements IdKeyMapped {
         this.audienceConditions = audienceConditions;
         this.variations = Collections.unmodifiableList(variations);
         this.trafficAllocation = Collections.unmodifiableList(trafficAllocation);
+        this.trafficAllocationTable = TrafficAllocationTable.of(this.trafficAllocation);
         this.groupId = groupId;
         this.userIdToVariationKeyMap = userIdToVariationKeyMap;
         this.variationKeyToVariationMap = ProjectConfigUtils.generateNameMapping(variations);
@@ -156,6 +158,10 @@ public class Experiment implements IdKeyMapped {
         return trafficAllocation;
     }
 
+    public TrafficAllocationTable getTrafficAllocationTable() {
+        return trafficAllocationTable;
+    }
+
     public String getGroupId() {
         return groupId;
     }
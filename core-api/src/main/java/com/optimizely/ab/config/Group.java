@@ -36,6 +36,7 @@ public class Group implements IdMapped {
     private final String id;
     private final String policy;
     private final List<TrafficAllocation> trafficAllocation;
+    private final TrafficAllocationTable trafficAllocationTable;
     private final List<Experiment> experiments;
 
     public static final String RANDOM_POLICY = "random";
@@ -48,6 +49,7 @@ public class Group implements IdMapped {
         this.id = id;
         this.policy = policy;
         this.trafficAllocation = trafficAllocation;
+        this.trafficAllocationTable = TrafficAllocationTable.of(trafficAllocation);
         // populate experiment's groupId
         this.experiments = new ArrayList<>(experiments.size());
         for (Experiment experiment : experiments) {
@@ -81,6 +83,10 @@ public class Group implements IdMapped {
         return trafficAllocation;
     }
 
+    public TrafficAllocationTable getTrafficAllocationTable() {
+        return trafficAllocationTable;
+    }
+
     public List<Experiment> getExperiments() {
         return experiments;
     }
@@ -17,6 +17,7 @@
 package com.optimizely.ab.config;
 
 import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.Condition;
 import com.optimizely.ab.error.ErrorHandler;
 
 import javax.annotation.CheckForNull;
@@ -97,6 +98,24 @@ public interface ProjectConfig {
 
     Map<String, List<String>> getExperimentFeatureKeyMapping();
 
+    /**
+     * @return the precompiled decision plan of the feature flag, or null when the implementation does not
+     * precompile them, in which case the plan is compiled at decision time.
+     */
+    @Nullable
+    default DecisionPlan getDecisionPlan(FeatureFlag featureFlag) {
+        return null;
+    }
+
+    /**
+     * @return the audience conditions of the experiment or rollout rule with its audiences linked, or null when
+     * the implementation does not link them, in which case the audiences are looked up at evaluation time.
+     */
+    @Nullable
+    default Condition getAudienceCondition(Experiment experiment) {
+        return null;
+    }
+
     @Override
     String toString();
 
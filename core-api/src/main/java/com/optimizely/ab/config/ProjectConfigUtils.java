@@ -16,9 +16,18 @@
  */
 package com.optimizely.ab.config;
 
+import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.Condition;
+import com.optimizely.ab.config.audience.ConditionOptimizer;
+import com.optimizely.ab.config.audience.OrCondition;
+import com.optimizely.ab.config.audience.RequiredAttributesCondition;
+import com.optimizely.ab.config.audience.ResolvedAudienceCondition;
+import com.optimizely.ab.internal.ConditionUtils;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -66,4 +75,64 @@ public class ProjectConfigUtils {
         }
         return Collections.unmodifiableMap(experimentFeatureMap);
     }
+
+    /**
+     * Helper method for creating mappings of FeatureFlag to its precompiled {@link DecisionPlan}.
+     * Plans are keyed by identity since they are only valid for the exact flag instance they were compiled from.
+     */
+    public static Map<FeatureFlag, DecisionPlan> generateDecisionPlanMapping(List<FeatureFlag> featureFlags,
+                                                                      Map<String, Experiment> experimentIdMapping,
+                                                                      Map<String, Rollout> rolloutIdMapping) {
+        Map<FeatureFlag, DecisionPlan> decisionPlanMap = new IdentityHashMap<>();
+        for (FeatureFlag featureFlag : featureFlags) {
+            decisionPlanMap.put(featureFlag, DecisionPlan.compile(featureFlag, experimentIdMapping, rolloutIdMapping));
+        }
+        return Collections.unmodifiableMap(decisionPlanMap);
+    }
+
+    /**
+     * Helper method for creating mappings of Experiment to its audience conditions, with the audience references
+     * linked to their audiences. Experiments that target a list of audience ids are mapped to an implicit 'Or'
+     * of those audiences. Conditions are keyed by identity like the decision plans.
+     *
+     * The audience conditions are compiled and guarded with the attributes they require, see
+     * {@link RequiredAttributesCondition}, and all trees are optimized, see {@link ConditionOptimizer}.
+     */
+    public static Map<Experiment, Condition> generateAudienceConditionMapping(List<Experiment> experiments,
+                                                                            List<Rollout> rollouts,
+                                                                            Map<String, Audience> audienceIdMapping) {
+        // every audience is linked and compiled once and shared by all experiments that reference it
+        Map<String, ResolvedAudienceCondition> resolvedAudiences = new HashMap<>();
+        for (Audience audience : audienceIdMapping.values()) {
+            Condition conditions = audience.getConditions() != null ?
+                RequiredAttributesCondition.guard(ConditionOptimizer.optimize(ConditionUtils.compileConditions(audience.getConditions()))) : null;
+            resolvedAudiences.put(audience.getId(), new ResolvedAudienceCondition(audience.getId(), audience, conditions));
+        }
+
+        Map<Experiment, Condition> audienceConditionMap = new IdentityHashMap<>();
+        for (Experiment experiment : experiments) {
+            audienceConditionMap.put(experiment, ConditionOptimizer.optimize(resolveAudienceCondition(experiment, resolvedAudiences)));
+        }
+        for (Rollout rollout : rollouts) {
+            if (rollout.getExperiments() == null) {
+                continue;
+            }
+            for (Experiment rule : rollout.getExperiments()) {
+                audienceConditionMap.put(rule, ConditionOptimizer.optimize(resolveAudienceCondition(rule, resolvedAudiences)));
+            }
+        }
+        return Collections.unmodifiableMap(audienceConditionMap);
+    }
+
+    private static Condition resolveAudienceCondition(Experiment experiment, Map<String, ResolvedAudienceCondition> resolvedAudiences) {
+        if (experiment.getAudienceConditions() != null) {
+            return ConditionUtils.resolveAudiences(experiment.getAudienceConditions(), resolvedAudiences);
+        }
+
+        List<Condition> conditions = new ArrayList<>(experiment.getAudienceIds().size());
+        for (String audienceId : experiment.getAudienceIds()) {
+            conditions.add(ConditionUtils.resolveAudience(audienceId, resolvedAudiences));
+        }
+        return new OrCondition(conditions);
+    }
 }
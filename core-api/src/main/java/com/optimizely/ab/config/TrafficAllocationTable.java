@@ -0,0 +1,116 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+
+/**
+ * TrafficAllocationTable is the compact form of a list of {@link TrafficAllocation}s that is used for bucketing.
+ *
+ * The end of range values are kept in a primitive array, so the entity a bucket value falls into is found with
+ * a binary search instead of a scan over the boxed allocations. It is built once, along with the
+ * {@link Experiment} or {@link Group} that owns the allocations.
+ */
+@Immutable
+public final class TrafficAllocationTable {
+
+    private static final TrafficAllocationTable EMPTY = new TrafficAllocationTable(new int[0], new String[0]);
+
+    private final int[] endOfRanges;
+    private final String[] entityIds;
+
+    private TrafficAllocationTable(int[] endOfRanges, String[] entityIds) {
+        this.endOfRanges = endOfRanges;
+        this.entityIds = entityIds;
+    }
+
+    public static TrafficAllocationTable of(@Nullable List<TrafficAllocation> trafficAllocations) {
+        if (trafficAllocations == null || trafficAllocations.isEmpty()) {
+            return EMPTY;
+        }
+
+        int size = trafficAllocations.size();
+        int[] endOfRanges = new int[size];
+        String[] entityIds = new String[size];
+        int maxEndOfRange = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            TrafficAllocation trafficAllocation = trafficAllocations.get(i);
+            // Allocations are matched in order, so an allocation can never be hit by a bucket value below the
+            // end of range of an allocation before it. Keeping the running maximum preserves that first-match
+            // behaviour for out of order ranges and keeps the array sorted for the binary search.
+            maxEndOfRange = Math.max(maxEndOfRange, trafficAllocation.getEndOfRange());
+            endOfRanges[i] = maxEndOfRange;
+            String entityId = trafficAllocation.getEntityId();
+            // for mutually exclusive bucketing, de-allocated space is represented by an empty string
+            entityIds[i] = entityId == null || entityId.isEmpty() ? null : entityId;
+        }
+
+        return new TrafficAllocationTable(endOfRanges, entityIds);
+    }
+
+    /**
+     * Find the entity the given bucket value is allocated to.
+     *
+     * @param bucketValue the bucket value of the user
+     * @return the id of the first entity whose end of range is greater than the bucket value,
+     * or null if the bucket value is not allocated to any entity.
+     */
+    @Nullable
+    public String bucketToEntity(int bucketValue) {
+        int index = indexOf(bucketValue);
+        return index < entityIds.length ? entityIds[index] : null;
+    }
+
+    /**
+     * @return the index of the first end of range greater than the bucket value, or the number of
+     * allocations if there is none.
+     */
+    private int indexOf(int bucketValue) {
+        int[] ranges = endOfRanges;
+        int length = ranges.length;
+        if (length == 0) {
+            return 0;
+        }
+
+        // branch-free upper bound search: the conditional move keeps the loop free of unpredictable branches
+        int base = 0;
+        while (length > 1) {
+            int half = length >>> 1;
+            base = ranges[base + half - 1] <= bucketValue ? base + half : base;
+            length -= half;
+        }
+        return ranges[base] <= bucketValue ? base + 1 : base;
+    }
+
+    public int size() {
+        return endOfRanges.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("TrafficAllocationTable{");
+        for (int i = 0; i < endOfRanges.length; i++) {
+            if (i > 0) {
+                s.append(", ");
+            }
+            s.append(entityIds[i]).append('<').append(endOfRanges[i]);
+        }
+        return s.append('}').toString();
+    }
+}
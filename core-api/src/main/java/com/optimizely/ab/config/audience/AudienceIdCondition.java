@@ -21,8 +21,6 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.optimizely.ab.config.ProjectConfig;
 import com.optimizely.ab.internal.InvalidAudienceCondition;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -34,14 +32,14 @@ import java.util.Objects;
  * {@link com.optimizely.ab.config.Experiment#audienceConditions auienceConditions}.
  * If the audienceId is not resolved at evaluation time, the
  * condition will fail.  AudienceIdConditions are resolved when the ProjectConfig is passed into evaluate.
+ * {@link com.optimizely.ab.config.DatafileProjectConfig} links them to their audience up front instead,
+ * see {@link ResolvedAudienceCondition}.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class AudienceIdCondition<T> implements Condition<T> {
     private Audience audience;
     final private String audienceId;
 
-    final private static Logger logger = LoggerFactory.getLogger(AudienceIdCondition.class);
-
     /**
      * Constructor used in json parsing to store the audienceId parsed from Experiment.audienceConditions.
      *
@@ -67,17 +65,10 @@ public class AudienceIdCondition<T> implements Condition<T> {
     @Nullable
     @Override
     public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes) {
-        if (config != null) {
-            audience = config.getAudienceIdMapping().get(audienceId);
-        }
-        if (audience == null) {
-            logger.error("Audience {} could not be found.", audienceId);
-            return null;
-        }
-        logger.debug("Starting to evaluate audience \"{}\" with conditions: {}.", audience.getId(), audience.getConditions());
-        Boolean result = audience.getConditions().evaluate(config, attributes);
-        logger.debug("Audience \"{}\" evaluated to {}.", audience.getId(), result);
-        return result;
+        // the audience is resolved into a local so concurrent evaluations don't write to this shared condition
+        Audience resolvedAudience = config != null ? config.getAudienceIdMapping().get(audienceId) : audience;
+        Condition conditions = resolvedAudience != null ? resolvedAudience.getConditions() : null;
+        return ResolvedAudienceCondition.evaluate(audienceId, resolvedAudience, conditions, config, attributes);
     }
 
     @Override
@@ -0,0 +1,73 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience;
+
+import com.optimizely.ab.config.ProjectConfig;
+import com.optimizely.ab.config.audience.match.CompiledMatch;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Map;
+
+/**
+ * The CompiledUserAttribute is a {@link UserAttribute} whose matcher has been looked up and bound
+ * to its condition value, see {@link UserAttribute#compile()}.
+ *
+ * It logs as the UserAttribute it was compiled from.
+ */
+@Immutable
+class CompiledUserAttribute<T> implements Condition<T> {
+
+    private final UserAttribute<T> userAttribute;
+    private final CompiledMatch matcher;
+
+    CompiledUserAttribute(UserAttribute<T> userAttribute, CompiledMatch matcher) {
+        this.userAttribute = userAttribute;
+        this.matcher = matcher;
+    }
+
+    UserAttribute<T> getUserAttribute() {
+        return userAttribute;
+    }
+
+    CompiledMatch getMatcher() {
+        return matcher;
+    }
+
+    @Nullable
+    @Override
+    public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes) {
+        return userAttribute.evaluateMatch(matcher, attributes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return userAttribute.equals(((CompiledUserAttribute) o).userAttribute);
+    }
+
+    @Override
+    public int hashCode() {
+        return userAttribute.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return userAttribute.toString();
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience;
+
+import com.optimizely.ab.config.audience.match.MatchRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ConditionOptimizer rewrites a linked and compiled condition tree so it is cheaper to evaluate.
+ *
+ * Constant branches ({@link EmptyCondition}, {@link NullCondition}, empty 'And' and 'Or' lists) are folded,
+ * and the children of 'And' and 'Or' conditions are ordered by their estimated cost, so the cheap ones get
+ * the chance to short-circuit the expensive ones. Both keep the result of the tree, null included:
+ * 'And' and 'Or' give the same result for any order of their children.
+ */
+public final class ConditionOptimizer {
+
+    private static final int CONSTANT_COST = 0;
+    private static final int EXISTS_COST = 1;
+    private static final int EXACT_COST = 2;
+    private static final int DEFAULT_COST = 4;
+    private static final int SEMVER_COST = 8;
+    private static final int UNRESOLVED_AUDIENCE_COST = 16;
+
+    private enum Constant {
+        TRUE, FALSE, NULL, NONE
+    }
+
+    private ConditionOptimizer() {
+    }
+
+    /**
+     * Optimize a condition tree. The tree is copied where it changes, the given condition is left untouched.
+     *
+     * @param condition the condition to optimize
+     * @return a condition that evaluates to the same result
+     */
+    public static Condition optimize(Condition condition) {
+        if (condition instanceof AndCondition) {
+            List<Condition> conditions = ((AndCondition<?>) condition).getConditions();
+            return conditions == null ? condition : optimizeAnd(conditions);
+        } else if (condition instanceof OrCondition) {
+            List<Condition> conditions = ((OrCondition<?>) condition).getConditions();
+            return conditions == null ? condition : optimizeOr(conditions);
+        } else if (condition instanceof NotCondition) {
+            Condition notCondition = ((NotCondition<?>) condition).getCondition();
+            return notCondition == null ? condition : optimizeNot(optimize(notCondition));
+        }
+
+        return condition;
+    }
+
+    // false and anything is false, true is dropped, nulls only matter when nothing is false
+    private static Condition optimizeAnd(List<Condition> conditions) {
+        List<Condition> optimized = new ArrayList<>(conditions.size());
+        boolean foundNull = false;
+        for (Condition condition : conditions) {
+            Condition optimizedCondition = optimize(condition);
+            switch (constant(optimizedCondition)) {
+                case FALSE:
+                    return optimizedCondition;
+                case TRUE:
+                    break;
+                case NULL:
+                    foundNull = true;
+                    break;
+                default:
+                    optimized.add(optimizedCondition);
+            }
+        }
+
+        if (optimized.isEmpty()) {
+            return foundNull ? new NullCondition() : new EmptyCondition();
+        }
+        if (optimized.size() == 1 && !foundNull) {
+            return optimized.get(0);
+        }
+        return new AndCondition(sortByCost(optimized, foundNull));
+    }
+
+    // true or anything is true, false is dropped, nulls only matter when nothing is true
+    private static Condition optimizeOr(List<Condition> conditions) {
+        List<Condition> optimized = new ArrayList<>(conditions.size());
+        boolean foundNull = false;
+        for (Condition condition : conditions) {
+            Condition optimizedCondition = optimize(condition);
+            switch (constant(optimizedCondition)) {
+                case TRUE:
+                    return optimizedCondition;
+                case FALSE:
+                    break;
+                case NULL:
+                    foundNull = true;
+                    break;
+                default:
+                    optimized.add(optimizedCondition);
+            }
+        }
+
+        if (optimized.isEmpty()) {
+            return foundNull ? new NullCondition() : new OrCondition(Collections.emptyList());
+        }
+        if (optimized.size() == 1 && !foundNull) {
+            return optimized.get(0);
+        }
+        return new OrCondition(sortByCost(optimized, foundNull));
+    }
+
+    private static Condition optimizeNot(Condition condition) {
+        switch (constant(condition)) {
+            case TRUE:
+                return new OrCondition(Collections.emptyList());
+            case FALSE:
+                return new EmptyCondition();
+            case NULL:
+                return condition;
+            default:
+                if (condition instanceof NotCondition && ((NotCondition<?>) condition).getCondition() != null) {
+                    return ((NotCondition<?>) condition).getCondition();
+                }
+                return new NotCondition(condition);
+        }
+    }
+
+    private static List<Condition> sortByCost(List<Condition> conditions, boolean foundNull) {
+        // the sort is stable, conditions of the same cost keep the order of the datafile
+        conditions.sort(Comparator.comparingInt(ConditionOptimizer::cost));
+        if (foundNull) {
+            // a null never short-circuits, it is evaluated last
+            conditions.add(new NullCondition());
+        }
+        return conditions;
+    }
+
+    private static Constant constant(Condition condition) {
+        if (condition instanceof EmptyCondition) {
+            return Constant.TRUE;
+        } else if (condition instanceof NullCondition) {
+            return Constant.NULL;
+        } else if (condition instanceof AndCondition) {
+            List<Condition> conditions = ((AndCondition<?>) condition).getConditions();
+            return conditions == null ? Constant.NULL : conditions.isEmpty() ? Constant.TRUE : Constant.NONE;
+        } else if (condition instanceof OrCondition) {
+            List<Condition> conditions = ((OrCondition<?>) condition).getConditions();
+            return conditions == null ? Constant.NULL : conditions.isEmpty() ? Constant.FALSE : Constant.NONE;
+        } else if (condition instanceof NotCondition) {
+            Condition notCondition = ((NotCondition<?>) condition).getCondition();
+            if (notCondition == null) {
+                return Constant.NULL;
+            }
+            switch (constant(notCondition)) {
+                case TRUE:
+                    return Constant.FALSE;
+                case FALSE:
+                    return Constant.TRUE;
+                case NULL:
+                    return Constant.NULL;
+                default:
+                    return Constant.NONE;
+            }
+        }
+        return Constant.NONE;
+    }
+
+    /**
+     * Estimate the cost of evaluating a condition: the sum of the costs of the user attributes it evaluates,
+     * weighted by their match.
+     */
+    static int cost(Condition condition) {
+        if (condition instanceof CompiledUserAttribute) {
+            return cost(((CompiledUserAttribute<?>) condition).getUserAttribute());
+        } else if (condition instanceof UserAttribute) {
+            return matchCost(((UserAttribute<?>) condition).getMatch());
+        } else if (condition instanceof RequiredAttributesCondition) {
+            return cost(((RequiredAttributesCondition<?>) condition).getCondition());
+        } else if (condition instanceof ResolvedAudienceCondition) {
+            Condition conditions = ((ResolvedAudienceCondition<?>) condition).getConditions();
+            return conditions == null ? CONSTANT_COST : cost(conditions);
+        } else if (condition instanceof AudienceIdCondition) {
+            return UNRESOLVED_AUDIENCE_COST;
+        } else if (condition instanceof AndCondition) {
+            return cost(((AndCondition<?>) condition).getConditions());
+        } else if (condition instanceof OrCondition) {
+            return cost(((OrCondition<?>) condition).getConditions());
+        } else if (condition instanceof NotCondition) {
+            Condition notCondition = ((NotCondition<?>) condition).getCondition();
+            return notCondition == null ? CONSTANT_COST : cost(notCondition);
+        } else if (condition instanceof EmptyCondition || condition instanceof NullCondition) {
+            return CONSTANT_COST;
+        }
+        return DEFAULT_COST;
+    }
+
+    private static int cost(List<Condition> conditions) {
+        if (conditions == null) {
+            return CONSTANT_COST;
+        }
+
+        int cost = 0;
+        for (Condition condition : conditions) {
+            cost += cost(condition);
+        }
+        return cost;
+    }
+
+    private static int matchCost(String match) {
+        if (match == null) {
+            return EXACT_COST;
+        }
+
+        switch (match) {
+            case MatchRegistry.EXISTS:
+                return EXISTS_COST;
+            case MatchRegistry.EXACT:
+            case MatchRegistry.LEGACY:
+            case MatchRegistry.GREATER_THAN:
+            case MatchRegistry.GREATER_THAN_EQ:
+            case MatchRegistry.LESS_THAN:
+            case MatchRegistry.LESS_THAN_EQ:
+                return EXACT_COST;
+            case MatchRegistry.SEMVER_EQ:
+            case MatchRegistry.SEMVER_GE:
+            case MatchRegistry.SEMVER_GT:
+            case MatchRegistry.SEMVER_LE:
+            case MatchRegistry.SEMVER_LT:
+                return SEMVER_COST;
+            default:
+                return DEFAULT_COST;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience;
+
+import com.optimizely.ab.config.ProjectConfig;
+import com.optimizely.ab.config.audience.match.UnexpectedValueTypeException;
+import com.optimizely.ab.config.audience.match.UnknownValueTypeException;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The RequiredAttributesCondition guards a compiled condition tree with the user attributes it requires.
+ *
+ * When the tree is built, it is worked out what the tree evaluates to when an attribute is not passed,
+ * for each attribute where that does not depend on the other attributes. When one of those attributes is
+ * missing, that result is returned without evaluating the tree. Otherwise the tree is evaluated as usual.
+ * The user attributes that are skipped do not log that no value was passed for them.
+ */
+@Immutable
+public class RequiredAttributesCondition<T> implements Condition<T> {
+
+    private enum Result {
+        TRUE, FALSE, NULL;
+
+        Result not() {
+            return this == TRUE ? FALSE : this == FALSE ? TRUE : NULL;
+        }
+
+        @Nullable
+        Boolean toBoolean() {
+            return this == NULL ? null : this == TRUE;
+        }
+    }
+
+    private final Condition condition;
+    private final Map<String, Result> missingResults;
+    private final String[] attributeNames;
+    private final Boolean[] results;
+
+    private RequiredAttributesCondition(Condition condition, Map<String, Result> missingResults) {
+        this.condition = condition;
+        this.missingResults = missingResults;
+        this.attributeNames = new String[missingResults.size()];
+        this.results = new Boolean[missingResults.size()];
+        int index = 0;
+        for (Map.Entry<String, Result> entry : missingResults.entrySet()) {
+            attributeNames[index] = entry.getKey();
+            results[index] = entry.getValue().toBoolean();
+            index++;
+        }
+    }
+
+    /**
+     * Guard a compiled condition tree with the attributes it requires.
+     *
+     * @param condition the condition to guard
+     * @return the guarded condition, or the condition itself if no attribute alone decides its result
+     */
+    public static Condition guard(Condition condition) {
+        if (condition instanceof RequiredAttributesCondition) {
+            return condition;
+        }
+
+        Map<String, Result> missingResults = missingResults(condition);
+        if (missingResults.isEmpty()) {
+            return condition;
+        }
+        return new RequiredAttributesCondition(condition, missingResults);
+    }
+
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return the names of the attributes that decide the result of the condition when they are not passed
+     */
+    public Set<String> getAttributeNames() {
+        return Collections.unmodifiableSet(missingResults.keySet());
+    }
+
+    @Nullable
+    @Override
+    public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes) {
+        if (attributes == null) {
+            return results[0];
+        }
+        for (int index = 0; index < attributeNames.length; index++) {
+            if (!attributes.containsKey(attributeNames[index])) {
+                return results[index];
+            }
+        }
+        return condition.evaluate(config, attributes);
+    }
+
+    // the result of a condition when an attribute is missing, for the attributes where it is known
+    private static Map<String, Result> missingResults(Condition condition) {
+        if (condition instanceof RequiredAttributesCondition) {
+            return ((RequiredAttributesCondition<?>) condition).missingResults;
+        } else if (condition instanceof CompiledUserAttribute) {
+            CompiledUserAttribute<?> userAttribute = (CompiledUserAttribute<?>) condition;
+            Result result = missingResult(userAttribute);
+            return result == null ? Collections.emptyMap() :
+                Collections.singletonMap(userAttribute.getUserAttribute().getName(), result);
+        } else if (condition instanceof ResolvedAudienceCondition) {
+            Condition conditions = ((ResolvedAudienceCondition<?>) condition).getConditions();
+            return conditions == null ? Collections.emptyMap() : missingResults(conditions);
+        } else if (condition instanceof AndCondition) {
+            List<Condition> conditions = ((AndCondition<?>) condition).getConditions();
+            return conditions == null ? Collections.emptyMap() : combine(conditions, Result.FALSE, Result.TRUE);
+        } else if (condition instanceof OrCondition) {
+            List<Condition> conditions = ((OrCondition<?>) condition).getConditions();
+            return conditions == null ? Collections.emptyMap() : combine(conditions, Result.TRUE, Result.FALSE);
+        } else if (condition instanceof NotCondition) {
+            Condition notCondition = ((NotCondition<?>) condition).getCondition();
+            if (notCondition == null) {
+                return Collections.emptyMap();
+            }
+            Map<String, Result> notResults = new LinkedHashMap<>();
+            for (Map.Entry<String, Result> entry : missingResults(notCondition).entrySet()) {
+                notResults.put(entry.getKey(), entry.getValue().not());
+            }
+            return notResults;
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Combine the results of the children of an 'And' or an 'Or': a child that evaluates to the dominant result
+     * decides the result, otherwise all children need a known result.
+     */
+    private static Map<String, Result> combine(List<Condition> conditions, Result dominant, Result identity) {
+        Set<String> attributeNames = new LinkedHashSet<>();
+        List<Map<String, Result>> childResults = new ArrayList<>(conditions.size());
+        for (Condition condition : conditions) {
+            Map<String, Result> missingResults = missingResults(condition);
+            childResults.add(missingResults);
+            attributeNames.addAll(missingResults.keySet());
+        }
+
+        Map<String, Result> combined = new LinkedHashMap<>();
+        for (String attributeName : attributeNames) {
+            Result result = identity;
+            for (int index = 0; index < conditions.size(); index++) {
+                Result childResult = conditions.get(index) instanceof NullCondition ?
+                    Result.NULL : childResults.get(index).get(attributeName);
+                if (childResult == dominant) {
+                    result = dominant;
+                    break;
+                } else if (childResult == null) {
+                    result = null;
+                } else if (childResult == Result.NULL && result != null) {
+                    result = Result.NULL;
+                }
+            }
+            if (result != null) {
+                combined.put(attributeName, result);
+            }
+        }
+        return combined;
+    }
+
+    // what the matcher of a user attribute returns when there is no attribute value, conditions with an
+    // unsupported condition value are always evaluated so they keep warning about it
+    @Nullable
+    private static Result missingResult(CompiledUserAttribute<?> userAttribute) {
+        try {
+            Boolean result = userAttribute.getMatcher().eval(null);
+            return result == null ? Result.NULL : result ? Result.TRUE : Result.FALSE;
+        } catch (UnknownValueTypeException e) {
+            return Result.NULL;
+        } catch (UnexpectedValueTypeException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RequiredAttributesCondition that = (RequiredAttributesCondition) o;
+        return Objects.equals(condition, that.condition);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(condition);
+    }
+
+    @Override
+    public String toString() {
+        return condition.toString();
+    }
+}
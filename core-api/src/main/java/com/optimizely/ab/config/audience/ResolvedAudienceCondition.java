@@ -0,0 +1,148 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience;
+
+import com.optimizely.ab.config.ProjectConfig;
+import com.optimizely.ab.internal.DecisionAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The ResolvedAudienceCondition is an {@link AudienceIdCondition} that has been linked to its {@link Audience}
+ * when the {@link ProjectConfig} was built.
+ *
+ * It holds the audience it refers to, so it is evaluated without looking the audience up and without
+ * writing to any shared state. The audience conditions it evaluates can be compiled, see
+ * {@link com.optimizely.ab.internal.ConditionUtils#compileConditions(Condition)}.
+ */
+@Immutable
+public class ResolvedAudienceCondition<T> implements Condition<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResolvedAudienceCondition.class);
+
+    private final String audienceId;
+    @Nullable
+    private final Audience audience;
+    @Nullable
+    private final Condition conditions;
+
+    /**
+     * @param audienceId the id of the audience
+     * @param audience   the audience with that id, or null if it is not in the datafile
+     */
+    public ResolvedAudienceCondition(@Nonnull String audienceId, @Nullable Audience audience) {
+        this(audienceId, audience, audience != null ? audience.getConditions() : null);
+    }
+
+    /**
+     * @param audienceId the id of the audience
+     * @param audience   the audience with that id, or null if it is not in the datafile
+     * @param conditions the conditions to evaluate for the audience, typically its compiled conditions
+     */
+    public ResolvedAudienceCondition(@Nonnull String audienceId, @Nullable Audience audience, @Nullable Condition conditions) {
+        this.audienceId = audienceId;
+        this.audience = audience;
+        this.conditions = conditions;
+    }
+
+    public String getAudienceId() {
+        return audienceId;
+    }
+
+    @Nullable
+    public Audience getAudience() {
+        return audience;
+    }
+
+    @Nullable
+    public Condition getConditions() {
+        return conditions;
+    }
+
+    @Nullable
+    @Override
+    public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes) {
+        return evaluate(audienceId, audience, conditions, config, attributes);
+    }
+
+    /**
+     * Evaluate an audience, reusing its result when it has already been evaluated for the same
+     * {@link DecisionAttributes}.
+     *
+     * @param audienceId the id of the audience
+     * @param audience   the audience with that id, or null if it could not be found
+     * @param conditions the conditions to evaluate for the audience
+     * @param config     the current project config
+     * @param attributes the attributes of the user
+     * @return the result of the audience conditions, or null if they could not be evaluated
+     */
+    @Nullable
+    static Boolean evaluate(String audienceId, @Nullable Audience audience, @Nullable Condition conditions,
+                            ProjectConfig config, Map<String, ?> attributes) {
+        // an audience evaluates the same for all rules and flags decided in one call, so reuse its result
+        if (attributes instanceof DecisionAttributes) {
+            Map<String, Boolean> audienceResults = ((DecisionAttributes) attributes).getAudienceResults();
+            if (audienceResults.containsKey(audienceId)) {
+                Boolean result = audienceResults.get(audienceId);
+                logger.debug("Audience \"{}\" already evaluated to {}.", audienceId, result);
+                return result;
+            }
+            Boolean result = evaluateAudience(audienceId, audience, conditions, config, attributes);
+            audienceResults.put(audienceId, result);
+            return result;
+        }
+        return evaluateAudience(audienceId, audience, conditions, config, attributes);
+    }
+
+    @Nullable
+    private static Boolean evaluateAudience(String audienceId, @Nullable Audience audience, @Nullable Condition conditions,
+                                            ProjectConfig config, Map<String, ?> attributes) {
+        if (audience == null) {
+            logger.error("Audience {} could not be found.", audienceId);
+            return null;
+        }
+        logger.debug("Starting to evaluate audience \"{}\" with conditions: {}.", audience.getId(), audience.getConditions());
+        Boolean result = conditions.evaluate(config, attributes);
+        logger.debug("Audience \"{}\" evaluated to {}.", audience.getId(), result);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ResolvedAudienceCondition condition = (ResolvedAudienceCondition) o;
+        return Objects.equals(audienceId, condition.audienceId) &&
+            Objects.equals(audience, condition.audience);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(audienceId, audience);
+    }
+
+    @Override
+    public String toString() {
+        return audienceId;
+    }
+}
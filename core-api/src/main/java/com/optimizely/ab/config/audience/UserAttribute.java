@@ -72,20 +72,55 @@ public class UserAttribute<T> implements Condition<T> {
 
     @Nullable
     public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes) {
+        if (!isCustomAttribute()) {
+            logger.warn("Audience condition \"{}\" uses an unknown condition type. You may need to upgrade to a newer release of the Optimizely SDK.", this);
+            return null; // unknown type
+        }
+
+        CompiledMatch matcher;
+        try {
+            matcher = MatchRegistry.getMatch(match).compile(value);
+        } catch (UnknownMatchTypeException e) {
+            logger.warn("Audience condition \"{}\" " + e.getMessage(), this);
+            return null;
+        }
+        return evaluateMatch(matcher, attributes);
+    }
+
+    /**
+     * Compile this condition into one that is bound to its matcher and condition value, so they
+     * are not looked up and checked on every evaluation.
+     * Conditions of an unknown type or match are returned as is and keep failing when they are evaluated.
+     *
+     * @return the compiled condition, or this condition if it cannot be compiled
+     */
+    public Condition<T> compile() {
+        if (!isCustomAttribute()) {
+            return this;
+        }
+
+        try {
+            return new CompiledUserAttribute<>(this, MatchRegistry.getMatch(match).compile(value));
+        } catch (UnknownMatchTypeException e) {
+            return this;
+        }
+    }
+
+    private boolean isCustomAttribute() {
+        return "custom_attribute".equals(type);
+    }
+
+    @Nullable
+    Boolean evaluateMatch(CompiledMatch matcher, Map<String, ?> attributes) {
         if (attributes == null) {
             attributes = Collections.emptyMap();
         }
         // Valid for primitive types, but needs to change when a value is an object or an array
         Object userAttributeValue = attributes.get(name);
 
-        if (!"custom_attribute".equals(type)) {
-            logger.warn("Audience condition \"{}\" uses an unknown condition type. You may need to upgrade to a newer release of the Optimizely SDK.", this);
-            return null; // unknown type
-        }
         // check user attribute value is equal
         try {
-            Match matcher = MatchRegistry.getMatch(match);
-            Boolean result = matcher.eval(value, userAttributeValue);
+            Boolean result = matcher.eval(userAttributeValue);
             if (result == null) {
                 throw new UnknownValueTypeException();
             }
@@ -110,7 +145,7 @@ public class UserAttribute<T> implements Condition<T> {
                         name);
                 }
             }
-        } catch (UnknownMatchTypeException | UnexpectedValueTypeException e) {
+        } catch (UnexpectedValueTypeException e) {
             logger.warn("Audience condition \"{}\" " + e.getMessage(), this);
         } catch (NullPointerException e) {
             logger.error("attribute or value null for match {}", match != null ? match : "legacy condition", e);
@@ -0,0 +1,29 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience.match;
+
+import javax.annotation.Nullable;
+
+/**
+ * CompiledMatch is a {@link Match} bound to the condition value of an audience condition.
+ * The condition value is validated and converted once, when the match is compiled, so
+ * evaluations only have to check the attribute value.
+ */
+public interface CompiledMatch {
+    @Nullable
+    Boolean eval(Object attributeValue) throws UnexpectedValueTypeException, UnknownValueTypeException;
+}
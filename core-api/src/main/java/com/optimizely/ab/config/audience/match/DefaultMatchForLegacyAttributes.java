@@ -33,4 +33,16 @@ class DefaultMatchForLegacyAttributes implements Match {
         }
         return conditionValue.toString().equals(attributeValue.toString());
     }
+
+    @Override
+    public CompiledMatch compile(Object conditionValue) {
+        if (!(conditionValue instanceof String)) {
+            return attributeValue -> {
+                throw new UnexpectedValueTypeException();
+            };
+        }
+
+        String value = (String) conditionValue;
+        return attributeValue -> attributeValue != null && value.equals(attributeValue.toString());
+    }
 }
@@ -45,4 +45,34 @@ class ExactMatch implements Match {
 
         return conditionValue.equals(attributeValue);
     }
+
+    @Override
+    public CompiledMatch compile(Object conditionValue) {
+        if (isValidNumber(conditionValue)) {
+            double value = ((Number) conditionValue).doubleValue();
+            return attributeValue -> {
+                if (isValidNumber(attributeValue)) {
+                    return Double.compare(((Number) attributeValue).doubleValue(), value) == 0;
+                }
+                throw new UnexpectedValueTypeException();
+            };
+        }
+
+        if (!(conditionValue instanceof String || conditionValue instanceof Boolean)) {
+            return attributeValue -> {
+                if (isValidNumber(attributeValue)) {
+                    return null;
+                }
+                throw new UnexpectedValueTypeException();
+            };
+        }
+
+        Class<?> valueClass = conditionValue.getClass();
+        return attributeValue -> {
+            if (attributeValue == null || attributeValue.getClass() != valueClass) {
+                return null;
+            }
+            return conditionValue.equals(attributeValue);
+        };
+    }
 }
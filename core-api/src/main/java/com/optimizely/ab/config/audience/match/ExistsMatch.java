@@ -26,4 +26,9 @@ class ExistsMatch implements Match {
     public Boolean eval(Object conditionValue, Object attributeValue) {
         return attributeValue != null;
     }
+
+    @Override
+    public CompiledMatch compile(Object conditionValue) {
+        return attributeValue -> attributeValue != null;
+    }
 }
@@ -26,5 +26,10 @@ class LEMatch implements Match {
     public Boolean eval(Object conditionValue, Object attributeValue) throws UnknownValueTypeException {
         return NumberComparator.compare(attributeValue, conditionValue) <= 0;
     }
+
+    @Override
+    public CompiledMatch compile(Object conditionValue) {
+        return NumberComparator.compile(conditionValue, result -> result <= 0);
+    }
 }
 
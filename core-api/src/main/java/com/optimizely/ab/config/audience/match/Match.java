@@ -21,4 +21,15 @@ import javax.annotation.Nullable;
 public interface Match {
     @Nullable
     Boolean eval(Object conditionValue, Object attributeValue) throws UnexpectedValueTypeException, UnknownValueTypeException;
+
+    /**
+     * compile binds this match to a condition value. Implementations can override it to convert the
+     * condition value once instead of on every evaluation.
+     *
+     * @param conditionValue the value of the audience condition
+     * @return a {@link CompiledMatch} that evaluates attribute values against the condition value
+     */
+    default CompiledMatch compile(Object conditionValue) {
+        return attributeValue -> eval(conditionValue, attributeValue);
+    }
 }
@@ -16,6 +16,8 @@
  */
 package com.optimizely.ab.config.audience.match;
 
+import java.util.function.IntPredicate;
+
 import static com.optimizely.ab.internal.AttributesUtil.isValidNumber;
 
 /**
@@ -38,4 +40,25 @@ public class NumberComparator {
     static int compareUnsafe(Object o1, Object o2) {
         return Double.compare(((Number) o1).doubleValue(), ((Number) o2).doubleValue());
     }
+
+    /**
+     * compile binds a numeric comparison to a condition value. The condition value is checked and
+     * converted to a double once; the predicate is applied to the result of comparing an attribute
+     * value with it.
+     */
+    static CompiledMatch compile(Object conditionValue, IntPredicate predicate) {
+        if (!isValidNumber(conditionValue)) {
+            return attributeValue -> {
+                throw new UnknownValueTypeException();
+            };
+        }
+
+        double value = ((Number) conditionValue).doubleValue();
+        return attributeValue -> {
+            if (!isValidNumber(attributeValue)) {
+                throw new UnknownValueTypeException();
+            }
+            return predicate.test(Double.compare(((Number) attributeValue).doubleValue(), value));
+        };
+    }
 }
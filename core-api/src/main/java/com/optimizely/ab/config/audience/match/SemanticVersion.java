@@ -22,23 +22,55 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import static com.optimizely.ab.internal.AttributesUtil.parseNumeric;
 import static com.optimizely.ab.internal.AttributesUtil.stringIsNullOrEmpty;
 
 /**
  * SemanticVersion implements the specification for the purpose of comparing two Versions.
+ *
+ * A SemanticVersion is split into its parts when it is created, so it can be compared with any
+ * number of user versions. The user versions are read in place, without splitting them.
  */
 public final class SemanticVersion {
 
     private static final Logger logger = LoggerFactory.getLogger(SemanticVersion.class);
     private static final String BUILD_SEPERATOR = "\\+";
     private static final String PRE_RELEASE_SEPERATOR = "-";
+    private static final String INVALID_SEMANTIC_VERSION = "Invalid Semantic Version.";
+    private static final long NOT_NUMERIC = Long.MIN_VALUE;
 
     private final String version;
 
+    // the parts of the version, null if it is not a valid semantic version
+    private final String[] parts;
+    // the numeric value of each part, or NOT_NUMERIC
+    private final long[] numericParts;
+    private final boolean preRelease;
+
     public SemanticVersion(String version) {
         this.version = version;
+
+        String[] parts = null;
+        long[] numericParts = null;
+        boolean preRelease = false;
+        if (!stringIsNullOrEmpty(version)) {
+            try {
+                parts = splitSemanticVersion();
+                numericParts = new long[parts.length];
+                for (int index = 0; index < parts.length; index++) {
+                    numericParts[index] = readNumeric(parts[index], 0, parts[index].length());
+                }
+                preRelease = isPreRelease();
+            } catch (Exception e) {
+                parts = null;
+                numericParts = null;
+            }
+        }
+        this.parts = parts;
+        this.numericParts = numericParts;
+        this.preRelease = preRelease;
     }
 
     /**
@@ -46,11 +78,21 @@ public final class SemanticVersion {
      * If the input values cannot be coerced then an {@link UnexpectedValueTypeException} is thrown.
      */
     public static int compare(Object o1, Object o2) throws UnexpectedValueTypeException {
-        if (o1 instanceof String && o2 instanceof String) {
-            SemanticVersion v1 = new SemanticVersion((String) o1);
-            SemanticVersion v2 = new SemanticVersion((String) o2);
+        if (o2 instanceof String) {
+            return compare(o1, new SemanticVersion((String) o2));
+        }
+
+        throw new UnexpectedValueTypeException();
+    }
+
+    /**
+     * compare coerces the input value into a SemanticVersion and compares it with a target version that was
+     * created up front. If the input value cannot be coerced then an {@link UnexpectedValueTypeException} is thrown.
+     */
+    static int compare(Object o1, SemanticVersion targetedVersion) throws UnexpectedValueTypeException {
+        if (o1 instanceof String) {
             try {
-                return v1.compare(v2);
+                return targetedVersion.compareUserVersion((String) o1);
             } catch (Exception e) {
                 logger.warn("Error comparing semantic versions", e);
             }
@@ -59,48 +101,196 @@ public final class SemanticVersion {
         throw new UnexpectedValueTypeException();
     }
 
+    /**
+     * compile binds a semantic version comparison to a condition value. The targeted version is created
+     * once; the predicate is applied to the result of comparing an attribute value with it.
+     */
+    static CompiledMatch compile(Object conditionValue, IntPredicate predicate) {
+        if (!(conditionValue instanceof String)) {
+            return attributeValue -> {
+                throw new UnexpectedValueTypeException();
+            };
+        }
+
+        SemanticVersion targetedVersion = new SemanticVersion((String) conditionValue);
+        return attributeValue -> predicate.test(compare(attributeValue, targetedVersion));
+    }
+
     public int compare(SemanticVersion targetedVersion) throws Exception {
 
-        if (targetedVersion == null || stringIsNullOrEmpty(targetedVersion.version)) {
+        if (targetedVersion == null) {
             return 0;
         }
 
-        String[] targetedVersionParts = targetedVersion.splitSemanticVersion();
-        String[] userVersionParts = splitSemanticVersion();
+        return targetedVersion.compareUserVersion(version);
+    }
+
+    /**
+     * compareUserVersion compares a user version with this targeted version. The user version is read in place,
+     * its parts are compared with the parts of this version while they are being validated.
+     *
+     * @return a negative number, zero or a positive number when the user version is lower, equal or higher
+     * @throws Exception if either version is not a valid semantic version
+     */
+    private int compareUserVersion(String userVersion) throws Exception {
 
-        for (int index = 0; index < targetedVersionParts.length; index++) {
+        if (stringIsNullOrEmpty(version)) {
+            return 0;
+        }
+        if (parts == null) {
+            throw new Exception(INVALID_SEMANTIC_VERSION);
+        }
 
-            if (userVersionParts.length <= index) {
-                return targetedVersion.isPreRelease() ? 1 : -1;
+        // find the separators
+        int length = userVersion.length();
+        int buildIndex = -1;
+        int preReleaseIndex = -1;
+        int buildCount = 0;
+        for (int index = 0; index < length; index++) {
+            char c = userVersion.charAt(index);
+            if (c == ' ') {
+                throw new Exception(INVALID_SEMANTIC_VERSION);
+            } else if (c == '+') {
+                if (buildCount++ > 0) {
+                    throw new Exception(INVALID_SEMANTIC_VERSION);
+                }
+                buildIndex = index;
+            } else if (c == '-' && preReleaseIndex < 0) {
+                preReleaseIndex = index;
             }
-            Integer targetVersionPartInt = parseNumeric(targetedVersionParts[index]);
-            Integer userVersionPartInt = parseNumeric(userVersionParts[index]);
+        }
 
-            if (userVersionPartInt == null) {
-                // Compare strings
-                int result = userVersionParts[index].compareTo(targetedVersionParts[index]);
-                if (result < 0) {
-                    return targetedVersion.isPreRelease() && !isPreRelease() ? 1 : -1;
-                } else if (result > 0) {
-                    return !targetedVersion.isPreRelease() && isPreRelease() ? -1 : 1;
+        // same rules as isPreRelease and isBuild
+        boolean userPreRelease = buildIndex < 0 ? preReleaseIndex > 0 : preReleaseIndex >= 0 && preReleaseIndex < buildIndex;
+        boolean userBuild = preReleaseIndex < 0 ? buildIndex > 0 : buildIndex >= 0 && buildIndex < preReleaseIndex;
+        int prefixEnd = userPreRelease ? preReleaseIndex : userBuild ? buildIndex : length;
+
+        int result = 0;
+        boolean decided = false;
+
+        // major.minor.patch
+        int partCount = 0;
+        int partStart = 0;
+        while (true) {
+            int partEnd = partStart;
+            while (partEnd < prefixEnd && userVersion.charAt(partEnd) != '.') {
+                partEnd++;
+            }
+            long userPart = readNumeric(userVersion, partStart, partEnd);
+            if (userPart == NOT_NUMERIC || partCount == 3) {
+                throw new Exception(INVALID_SEMANTIC_VERSION);
+            }
+            if (!decided && partCount < parts.length) {
+                long targetedPart = numericParts[partCount];
+                if (targetedPart == NOT_NUMERIC) {
+                    result = -1;
+                    decided = true;
+                } else if (userPart != targetedPart) {
+                    result = userPart < targetedPart ? -1 : 1;
+                    decided = true;
                 }
-            } else if (targetVersionPartInt != null) {
-                if (!userVersionPartInt.equals(targetVersionPartInt)) {
-                    return userVersionPartInt < targetVersionPartInt ? -1 : 1;
+            }
+            partCount++;
+            if (partEnd == prefixEnd) {
+                break;
+            }
+            partStart = partEnd + 1;
+        }
+
+        // pre-release or build
+        if (prefixEnd + 1 < length) {
+            if (!decided && partCount < parts.length) {
+                long userPart = readNumeric(userVersion, prefixEnd + 1, length);
+                long targetedPart = numericParts[partCount];
+                if (userPart == NOT_NUMERIC) {
+                    int compared = compareTo(userVersion, prefixEnd + 1, parts[partCount]);
+                    if (compared < 0) {
+                        result = preRelease && !userPreRelease ? 1 : -1;
+                        decided = true;
+                    } else if (compared > 0) {
+                        result = !preRelease && userPreRelease ? -1 : 1;
+                        decided = true;
+                    }
+                } else if (targetedPart == NOT_NUMERIC) {
+                    result = -1;
+                    decided = true;
+                } else if (userPart != targetedPart) {
+                    result = userPart < targetedPart ? -1 : 1;
+                    decided = true;
                 }
-            } else {
-                return -1;
             }
+            partCount++;
         }
 
-        if (!targetedVersion.isPreRelease() &&
-            isPreRelease()) {
+        if (decided) {
+            return result;
+        }
+        if (partCount < parts.length) {
+            return preRelease ? 1 : -1;
+        }
+        if (!preRelease && userPreRelease) {
             return -1;
         }
 
         return 0;
     }
 
+    /**
+     * readNumeric reads a region of a string as {@link Integer#parseInt(String)} would.
+     *
+     * @return the value, or NOT_NUMERIC if the region is not an integer
+     */
+    private static long readNumeric(String str, int start, int end) {
+        if (start >= end) {
+            return NOT_NUMERIC;
+        }
+
+        int index = start;
+        boolean negative = false;
+        long limit = -Integer.MAX_VALUE;
+        char first = str.charAt(index);
+        if (first < '0') {
+            if (first == '-') {
+                negative = true;
+                limit = Integer.MIN_VALUE;
+            } else if (first != '+') {
+                return NOT_NUMERIC;
+            }
+            if (++index == end) {
+                return NOT_NUMERIC;
+            }
+        }
+
+        long value = 0;
+        for (; index < end; index++) {
+            int digit = Character.digit(str.charAt(index), 10);
+            if (digit < 0) {
+                return NOT_NUMERIC;
+            }
+            value = value * 10 - digit;
+            if (value < limit) {
+                return NOT_NUMERIC;
+            }
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * compareTo compares the end of a string, from start, with another string as {@link String#compareTo(String)} would.
+     */
+    private static int compareTo(String str, int start, String other) {
+        int length = str.length() - start;
+        int limit = Math.min(length, other.length());
+        for (int index = 0; index < limit; index++) {
+            char c1 = str.charAt(start + index);
+            char c2 = other.charAt(index);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length - other.length();
+    }
+
     public boolean isPreRelease() {
         int buildIndex = version.indexOf("+");
         int preReleaseIndex = version.indexOf("-");
@@ -26,4 +26,9 @@ class SemanticVersionGTMatch implements Match {
     public Boolean eval(Object conditionValue, Object attributeValue) throws UnexpectedValueTypeException {
         return SemanticVersion.compare(attributeValue, conditionValue) > 0;
     }
+
+    @Override
+    public CompiledMatch compile(Object conditionValue) {
+        return SemanticVersion.compile(conditionValue, result -> result > 0);
+    }
 }
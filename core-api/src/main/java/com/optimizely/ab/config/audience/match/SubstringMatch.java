@@ -39,5 +39,17 @@ class SubstringMatch implements Match {
             return null;
         }
     }
+
+    @Override
+    public CompiledMatch compile(Object conditionValue) {
+        if (!(conditionValue instanceof String)) {
+            return attributeValue -> {
+                throw new UnexpectedValueTypeException();
+            };
+        }
+
+        String value = (String) conditionValue;
+        return attributeValue -> attributeValue instanceof String ? ((String) attributeValue).contains(value) : null;
+    }
 }
 
@@ -18,14 +18,20 @@ package com.optimizely.ab.event;
 
 import com.optimizely.ab.config.ProjectConfig;
 import com.optimizely.ab.event.internal.EventFactory;
+import com.optimizely.ab.event.internal.ImpressionEvent;
 import com.optimizely.ab.event.internal.UserEvent;
 import com.optimizely.ab.internal.PropertyUtils;
+import com.optimizely.ab.internal.VirtualThreads;
 import com.optimizely.ab.notification.NotificationCenter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import static com.optimizely.ab.internal.SafetyUtils.tryClose;
 
@@ -38,6 +44,34 @@ import static com.optimizely.ab.internal.SafetyUtils.tryClose;
  * the BlockingQueue and buffers them for either a configured batch size or for a
  * maximum duration before the resulting LogEvent is sent to the EventHandler
  * and NotificationCenter.
+ *
+ * The consumer takes queued events in runs of up to a batch, so the queue is not
+ * locked once per event. A {@link RingBufferBlockingQueue} can be configured to
+ * accept events without locking at all.
+ *
+ * A batch is flushed when it holds batchSize events or its estimated payload reaches
+ * maxPayloadBytes. With a maxBatchSize above batchSize the batch size adapts to the
+ * arrival rate: it doubles each time a batch fills before the flush interval and halves
+ * when the flush interval passes with the batch less than half full.
+ *
+ * With more than one shard, each shard has its own queue and consumer thread that
+ * batch and dispatch independently. Events are routed to a shard by their visitor id
+ * or by the thread that processes them, see {@link ShardRouting}. The EventHandler is
+ * then called from several threads.
+ *
+ * With virtual threads enabled on a runtime that has them, the consumers run on virtual threads, so an
+ * EventHandler blocking on I/O doesn't hold a platform thread.
+ *
+ * Events that don't fit in a full queue are handled by the {@link OverflowPolicy}, which drops the newest
+ * event by default and counts what it drops.
+ *
+ * With an {@link EventSpool}, events the queue does not accept, batches the EventHandler fails on and
+ * events still queued when close times out are spooled to disk instead of being dropped. The consumers
+ * dispatch spooled events again every flush interval and after every dispatched batch. A spooled event is
+ * removed once {@link EventHandler#dispatchEvent(LogEvent)} returns without throwing, unless a handler
+ * sharing the spool has taken it in the meantime. An asynchronous EventHandler such as the
+ * AsyncEventHandler returns before the request completes, so replayed events it fails to send are lost
+ * unless the handler is given the spool as well.
  */
 public class BatchEventProcessor implements EventProcessor, AutoCloseable {
 
@@ -46,36 +80,91 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
     public static final String CONFIG_BATCH_SIZE     = "event.processor.batch.size";
     public static final String CONFIG_BATCH_INTERVAL = "event.processor.batch.interval";
     public static final String CONFIG_CLOSE_TIMEOUT  = "event.processor.close.timeout";
+    public static final String CONFIG_SHARD_COUNT    = "event.processor.shard.count";
+    public static final String CONFIG_MAX_BATCH_SIZE = "event.processor.max.batch.size";
+    public static final String CONFIG_MAX_PAYLOAD_BYTES = "event.processor.max.payload.bytes";
+    public static final String CONFIG_VIRTUAL_THREADS = "event.processor.virtual.threads";
 
     public static final int DEFAULT_QUEUE_CAPACITY    = 1000;
     public static final int DEFAULT_EMPTY_COUNT = 2;
     public static final int DEFAULT_BATCH_SIZE        = 10;
     public static final long DEFAULT_BATCH_INTERVAL   = TimeUnit.SECONDS.toMillis(30);
     public static final long DEFAULT_TIMEOUT_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    public static final int DEFAULT_SHARD_COUNT       = 1;
+    public static final long DEFAULT_MAX_PAYLOAD_BYTES = 1024 * 1024;
+
+    // how long close waits for cancelled consumers to spool what they have left
+    private static final long SPOOL_ON_EXIT_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
 
     private static final Object SHUTDOWN_SIGNAL = new Object();
     private static final Object FLUSH_SIGNAL    = new Object();
 
-    private final BlockingQueue<Object> eventQueue;
+    private static final OverflowPolicy.Target<Object> OVERFLOW_TARGET = new OverflowPolicy.Target<Object>() {
+        @Override
+        public boolean isDroppable(Object element) {
+            return element instanceof UserEvent;
+        }
+
+        @Override
+        public boolean isSampleable(Object element) {
+            return element instanceof ImpressionEvent;
+        }
+
+        @Override
+        public LogEvent toLogEvent(Object element) {
+            return element instanceof UserEvent ? EventFactory.createLogEvent((UserEvent) element) : null;
+        }
+    };
+
+    /**
+     * ShardRouting decides which shard an event is processed by.
+     */
+    public enum ShardRouting {
+        /**
+         * Route by the hash of the visitor id, so the events of a visitor stay in order.
+         */
+        VISITOR_ID,
+        /**
+         * Route by the thread that processes the event, so request threads spread over the shards
+         * without hashing the visitor id.
+         */
+        PRODUCER_THREAD
+    }
+
+    private final List<BlockingQueue<Object>> eventQueues;
+    private final ShardRouting shardRouting;
     private final EventHandler eventHandler;
 
     final int batchSize;
+    final int maxBatchSize;
+    final long maxPayloadBytes;
     final long flushInterval;
     final long timeoutMillis;
     private final ExecutorService executor;
     private final NotificationCenter notificationCenter;
+    private final EventSpool eventSpool;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ReentrantLock spoolReplayLock = new ReentrantLock();
+    private volatile boolean spoolOnExit = false;
+    private volatile CountDownLatch consumersExited = new CountDownLatch(0);
 
-    private Future<?> future;
+    private List<Future<?>> futures = Collections.emptyList();
     private boolean isStarted = false;
 
-    private BatchEventProcessor(BlockingQueue<Object> eventQueue, EventHandler eventHandler, Integer batchSize, Long flushInterval, Long timeoutMillis, ExecutorService executor, NotificationCenter notificationCenter) {
+    private BatchEventProcessor(List<BlockingQueue<Object>> eventQueues, ShardRouting shardRouting, EventHandler eventHandler, Integer batchSize, Integer maxBatchSize, Long maxPayloadBytes, Long flushInterval, Long timeoutMillis, ExecutorService executor, NotificationCenter notificationCenter, EventSpool eventSpool, OverflowPolicy overflowPolicy) {
         this.eventHandler = eventHandler;
-        this.eventQueue = eventQueue;
+        this.eventQueues = eventQueues;
+        this.shardRouting = shardRouting;
         this.batchSize = batchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPayloadBytes = maxPayloadBytes;
         this.flushInterval = flushInterval;
         this.timeoutMillis = timeoutMillis;
         this.notificationCenter = notificationCenter;
         this.executor = executor;
+        this.eventSpool = eventSpool;
+        this.overflowPolicy = overflowPolicy;
     }
 
     public synchronized void start() {
@@ -85,27 +174,64 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
         }
 
         isStarted = true;
-        EventConsumer runnable = new EventConsumer();
-        future = executor.submit(runnable);
+        consumersExited = new CountDownLatch(eventQueues.size());
+        List<Future<?>> shardFutures = new ArrayList<>(eventQueues.size());
+        for (BlockingQueue<Object> eventQueue : eventQueues) {
+            EventConsumer runnable = new EventConsumer(eventQueue);
+            shardFutures.add(executor.submit(runnable));
+        }
+        futures = shardFutures;
     }
 
     @Override
     public void close() throws Exception {
         logger.info("Start close");
-        eventQueue.put(SHUTDOWN_SIGNAL);
+        for (BlockingQueue<Object> eventQueue : eventQueues) {
+            eventQueue.put(SHUTDOWN_SIGNAL);
+        }
         try {
-            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            for (Future<?> future : futures) {
+                // cancelled by an earlier close that timed out
+                if (future.isCancelled()) {
+                    continue;
+                }
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
         } catch (InterruptedException e) {
             logger.warn("Interrupted while awaiting termination.");
             Thread.currentThread().interrupt();
         } catch (TimeoutException e) {
             logger.error("Timeout exceeded attempting to close for {} ms", timeoutMillis);
+            if (eventSpool != null) {
+                // each consumer spools what it has left, so the queues keep a single consumer
+                spoolOnExit = true;
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                awaitSpoolOnExit();
+            }
         } finally {
             isStarted = false;
             tryClose(eventHandler);
         }
     }
 
+    /**
+     * Waits for the cancelled consumers to spool their batches and queues, so a spool closed right after
+     * close returns doesn't refuse them.
+     */
+    private void awaitSpoolOnExit() {
+        try {
+            if (!consumersExited.await(SPOOL_ON_EXIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Consumers did not exit within {} ms, events they hold may not be spooled.", SPOOL_ON_EXIT_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while awaiting the consumers to spool their events.");
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void process(UserEvent userEvent) {
         logger.debug("Received userEvent: {}", userEvent);
 
@@ -114,28 +240,75 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
             return;
         }
 
-        if (!eventQueue.offer(userEvent)) {
+        BlockingQueue<Object> eventQueue = eventQueues.get(shard(userEvent));
+        if (!overflowPolicy.offer(eventQueue, userEvent, OVERFLOW_TARGET)) {
             logger.warn("Payload not accepted by the queue. Current size: {}", eventQueue.size());
         }
     }
 
+    /**
+     * Returns the OverflowPolicy of the event queues, with its counters.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    private boolean spool(UserEvent userEvent) {
+        return eventSpool != null && eventSpool.append(EventFactory.createLogEvent(userEvent));
+    }
+
     public void flush() throws InterruptedException {
-        eventQueue.put(FLUSH_SIGNAL);
+        for (BlockingQueue<Object> eventQueue : eventQueues) {
+            eventQueue.put(FLUSH_SIGNAL);
+        }
+    }
+
+    int shard(UserEvent userEvent) {
+        int shardCount = eventQueues.size();
+        if (shardCount == 1) {
+            return 0;
+        }
+
+        int hash;
+        if (shardRouting == ShardRouting.PRODUCER_THREAD) {
+            hash = Long.hashCode(Thread.currentThread().getId());
+        } else {
+            String userId = userEvent.getUserContext().getUserId();
+            hash = userId == null ? 0 : userId.hashCode();
+        }
+        // spread the bits so close hashes do not land on the same shard
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, shardCount);
     }
 
     public class EventConsumer implements Runnable {
-        private LinkedList<UserEvent> currentBatch = new LinkedList<>();
+        private final BlockingQueue<Object> eventQueue;
+        // reused for every batch, the LogEvent copies the events it needs
+        private final ArrayList<UserEvent> currentBatch = new ArrayList<>(Math.max(batchSize, 1));
+        private long currentBatchBytes = 0;
+        private int targetBatchSize = batchSize;
         private long deadline = System.currentTimeMillis() + flushInterval;
+        private final List<Object> drainedItems = new ArrayList<>();
+
+        public EventConsumer() {
+            this(eventQueues.get(0));
+        }
+
+        public EventConsumer(BlockingQueue<Object> eventQueue) {
+            this.eventQueue = eventQueue;
+        }
 
         @Override
         public void run() {
             try {
                 int emptyCount = 0;
 
-                while (true) {
+                while (!spoolOnExit) {
                     if (System.currentTimeMillis() >= deadline) {
                         logger.debug("Deadline exceeded flushing current batch.");
+                        shrinkBatchSize();
                         flush();
+                        dispatchSpooled();
                         deadline = System.currentTimeMillis() + flushInterval;
                     }
 
@@ -150,52 +323,114 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
 
                     emptyCount = 0;
 
-                    if (item == SHUTDOWN_SIGNAL) {
-                        logger.info("Received shutdown signal.");
-                        break;
+                    // take the items queued behind this one as well, up to a batch
+                    drainedItems.add(item);
+                    eventQueue.drainTo(drainedItems, Math.max(targetBatchSize, 1) - 1);
+
+                    boolean shutdown = false;
+                    for (Object drainedItem : drainedItems) {
+                        if (drainedItem == SHUTDOWN_SIGNAL) {
+                            logger.info("Received shutdown signal.");
+                            shutdown = true;
+                            continue;
+                        }
+
+                        if (drainedItem == FLUSH_SIGNAL) {
+                            logger.debug("Received flush signal.");
+                            flush();
+                            continue;
+                        }
+
+                        // events taken along with the shutdown signal are still flushed on exit
+                        addToBatch((UserEvent) drainedItem);
                     }
+                    drainedItems.clear();
 
-                    if (item == FLUSH_SIGNAL) {
-                        logger.debug("Received flush signal.");
-                        flush();
-                        continue;
+                    if (shutdown) {
+                        break;
                     }
-
-                    addToBatch((UserEvent) item);
                 }
             } catch (InterruptedException e) {
                 logger.info("Interrupted while processing buffer.");
             } catch (Exception e) {
                 logger.error("Uncaught exception processing buffer.", e);
             } finally {
-                logger.info("Exiting processing loop. Attempting to flush pending events.");
-                flush();
+                try {
+                    if (spoolOnExit) {
+                        spoolRemaining();
+                    } else {
+                        logger.info("Exiting processing loop. Attempting to flush pending events.");
+                        flush();
+                    }
+                } finally {
+                    consumersExited.countDown();
+                }
+            }
+        }
+
+        /**
+         * Spools the current batch and the events left in this consumer's queue after close timed out.
+         */
+        private void spoolRemaining() {
+            int spooled = 0;
+            if (!currentBatch.isEmpty() && eventSpool.append(EventFactory.createLogEvent(currentBatch))) {
+                spooled += currentBatch.size();
+            }
+            currentBatch.clear();
+
+            eventQueue.drainTo(drainedItems);
+            for (Object item : drainedItems) {
+                if (item instanceof UserEvent && spool((UserEvent) item)) {
+                    spooled++;
+                }
             }
+            drainedItems.clear();
+            logger.info("Spooled {} events left in the queue.", spooled);
         }
 
         private void addToBatch(UserEvent userEvent) {
-            if (shouldSplit(userEvent)) {
+            int eventBytes = EventFactory.estimateSize(userEvent);
+            if (shouldSplit(userEvent) || (!currentBatch.isEmpty() && currentBatchBytes + eventBytes > maxPayloadBytes)) {
                 flush();
-                currentBatch = new LinkedList<>();
             }
 
             // Reset the deadline if starting a new batch.
             if (currentBatch.isEmpty()) {
                 deadline = System.currentTimeMillis() + flushInterval;
+                currentBatchBytes = EventFactory.estimateBatchSize(userEvent);
             }
 
             currentBatch.add(userEvent);
-            if (currentBatch.size() >= batchSize) {
+            currentBatchBytes += eventBytes;
+            if (currentBatch.size() >= targetBatchSize) {
+                growBatchSize();
+                flush();
+            } else if (currentBatchBytes >= maxPayloadBytes) {
+                logger.debug("Estimated payload of {} bytes reached maxPayloadBytes, flushing current batch.", currentBatchBytes);
                 flush();
             }
         }
 
+        private void growBatchSize() {
+            if (targetBatchSize < maxBatchSize) {
+                targetBatchSize = Math.min(maxBatchSize, Math.max(1, targetBatchSize * 2));
+                logger.debug("Batch filled before the flush interval, growing batch size to {}.", targetBatchSize);
+            }
+        }
+
+        private void shrinkBatchSize() {
+            if (targetBatchSize > batchSize && currentBatch.size() < targetBatchSize / 2) {
+                targetBatchSize = Math.max(batchSize, targetBatchSize / 2);
+                logger.debug("Batch not filled within the flush interval, shrinking batch size to {}.", targetBatchSize);
+            }
+        }
+
         private boolean shouldSplit(UserEvent userEvent) {
             if (currentBatch.isEmpty()) {
                 return false;
             }
 
-            ProjectConfig currentConfig = currentBatch.peekLast().getUserContext().getProjectConfig();
+            ProjectConfig currentConfig = currentBatch.get(currentBatch.size() - 1).getUserContext().getProjectConfig();
             ProjectConfig newConfig = userEvent.getUserContext().getProjectConfig();
 
             // Projects should match
@@ -212,11 +447,13 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
         }
 
         private void flush() {
-            if (currentBatch.isEmpty()) {
+            // after close timed out the EventHandler is closed, the batch is spooled on exit instead
+            if (currentBatch.isEmpty() || spoolOnExit) {
                 return;
             }
 
             LogEvent logEvent = EventFactory.createLogEvent(currentBatch);
+            currentBatch.clear();
 
             if (notificationCenter != null) {
                 notificationCenter.send(logEvent);
@@ -226,8 +463,41 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
                 eventHandler.dispatchEvent(logEvent);
             } catch (Exception e) {
                 logger.error("Error dispatching event: {}", logEvent, e);
+                if (eventSpool != null) {
+                    eventSpool.append(logEvent);
+                }
+                return;
+            }
+            dispatchSpooled();
+        }
+
+        private void dispatchSpooled() {
+            // one consumer replays at a time, so an event is not peeked and dispatched twice
+            if (eventSpool == null || spoolOnExit || !spoolReplayLock.tryLock()) {
+                return;
+            }
+
+            try {
+                for (int i = 0; i < Math.max(targetBatchSize, 1); i++) {
+                    EventSpool.SpooledEvent spooledEvent = eventSpool.peek();
+                    if (spooledEvent == null) {
+                        return;
+                    }
+
+                    LogEvent logEvent = spooledEvent.getLogEvent();
+                    try {
+                        eventHandler.dispatchEvent(logEvent);
+                    } catch (Exception e) {
+                        logger.error("Error dispatching spooled event: {}", logEvent, e);
+                        return;
+                    }
+                    if (!eventSpool.remove(spooledEvent)) {
+                        logger.debug("Spooled event was taken by another reader of the spool while dispatching.");
+                    }
+                }
+            } finally {
+                spoolReplayLock.unlock();
             }
-            currentBatch = new LinkedList<>();
         }
     }
 
@@ -236,13 +506,21 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
     }
 
     public static class Builder {
-        private BlockingQueue<Object> eventQueue = new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY);
+        private BlockingQueue<Object> eventQueue = null;
+        private Supplier<BlockingQueue<Object>> eventQueueSupplier = () -> new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY);
+        private Integer shardCount = PropertyUtils.getInteger(CONFIG_SHARD_COUNT, DEFAULT_SHARD_COUNT);
+        private ShardRouting shardRouting = ShardRouting.VISITOR_ID;
         private EventHandler eventHandler = null;
         private Integer batchSize = PropertyUtils.getInteger(CONFIG_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        private Integer maxBatchSize = PropertyUtils.getInteger(CONFIG_MAX_BATCH_SIZE);
+        private Long maxPayloadBytes = PropertyUtils.getLong(CONFIG_MAX_PAYLOAD_BYTES, DEFAULT_MAX_PAYLOAD_BYTES);
         private Long flushInterval = PropertyUtils.getLong(CONFIG_BATCH_INTERVAL, DEFAULT_BATCH_INTERVAL);
         private Long timeoutMillis = PropertyUtils.getLong(CONFIG_CLOSE_TIMEOUT, DEFAULT_TIMEOUT_INTERVAL);
         private ExecutorService executor = null;
         private NotificationCenter notificationCenter = null;
+        private EventSpool eventSpool = null;
+        private OverflowPolicy overflowPolicy = null;
+        private boolean virtualThreads = Boolean.parseBoolean(PropertyUtils.get(CONFIG_VIRTUAL_THREADS, "false"));
 
         /**
          * {@link EventHandler} implementation used to dispatch events to Optimizely.
@@ -254,12 +532,39 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
 
         /**
          * EventQueue is the underlying BlockingQueue used to buffer events before being added to the batch payload.
+         * Use a {@link RingBufferBlockingQueue} to accept events without locking.
          */
         public Builder withEventQueue(BlockingQueue<Object> eventQueue) {
             this.eventQueue = eventQueue;
             return this;
         }
 
+        /**
+         * EventQueueSupplier creates the BlockingQueue of each shard, when no EventQueue is configured.
+         * Use it to give every shard a {@link RingBufferBlockingQueue}.
+         */
+        public Builder withEventQueueSupplier(Supplier<BlockingQueue<Object>> eventQueueSupplier) {
+            this.eventQueueSupplier = eventQueueSupplier;
+            return this;
+        }
+
+        /**
+         * ShardCount is the number of queues and consumer threads that batch and dispatch events independently.
+         * An EventQueue can only be configured for a single shard.
+         */
+        public Builder withShardCount(Integer shardCount) {
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        /**
+         * ShardRouting decides which shard an event is processed by. Defaults to {@link ShardRouting#VISITOR_ID}.
+         */
+        public Builder withShardRouting(ShardRouting shardRouting) {
+            this.shardRouting = shardRouting;
+            return this;
+        }
+
         /**
          * BatchSize is the maximum number of events contained within a single event batch.
          */
@@ -268,6 +573,23 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
             return this;
         }
 
+        /**
+         * MaxBatchSize enables adaptive batching: the batch size grows from batchSize up to maxBatchSize
+         * while events arrive faster than batches are flushed, and shrinks back when they slow down.
+         */
+        public Builder withMaxBatchSize(Integer maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * MaxPayloadBytes is the estimated serialized size at which a batch is flushed, regardless of its event count.
+         */
+        public Builder withMaxPayloadBytes(Long maxPayloadBytes) {
+            this.maxPayloadBytes = maxPayloadBytes;
+            return this;
+        }
+
         /**
          * FlushInterval is the maximum duration, in milliseconds, that an event will remain in flight before
          * being flushed to the event dispatcher.
@@ -278,13 +600,23 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
         }
 
         /**
-         * ExecutorService used to execute the {@link EventConsumer} thread.
+         * ExecutorService used to execute the {@link EventConsumer} threads, one per shard.
+         * With more than one shard it must be a ThreadPoolExecutor that runs all consumers at once.
          */
         public Builder withExecutor(ExecutorService executor) {
             this.executor = executor;
             return this;
         }
 
+        /**
+         * Runs the {@link EventConsumer}s on virtual threads when no ExecutorService is configured.
+         * Falls back to platform threads on runtimes without virtual threads. Disabled by default.
+         */
+        public Builder withVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
         /**
          * Timeout is the maximum time to wait for the EventProcessor to close.
          */
@@ -301,6 +633,24 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
             return this;
         }
 
+        /**
+         * EventSpool used to keep events on disk when the queue is full or close times out.
+         * The spool is not closed with the BatchEventProcessor.
+         */
+        public Builder withEventSpool(EventSpool eventSpool) {
+            this.eventSpool = eventSpool;
+            return this;
+        }
+
+        /**
+         * OverflowPolicy applied when an event queue is full. Defaults to spilling to the EventSpool
+         * when one is configured, and to dropping the newest event otherwise.
+         */
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
         public BatchEventProcessor build() {
             return build(true);
         }
@@ -311,6 +661,20 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
                 batchSize = DEFAULT_BATCH_SIZE;
             }
 
+            if (maxBatchSize == null) {
+                maxBatchSize = batchSize;
+            }
+
+            if (maxBatchSize < batchSize) {
+                logger.warn("Invalid maxBatchSize of {}, Defaulting to batchSize {}", maxBatchSize, batchSize);
+                maxBatchSize = batchSize;
+            }
+
+            if (maxPayloadBytes < 1) {
+                logger.warn("Invalid maxPayloadBytes of {}, Defaulting to {}", maxPayloadBytes, DEFAULT_MAX_PAYLOAD_BYTES);
+                maxPayloadBytes = DEFAULT_MAX_PAYLOAD_BYTES;
+            }
+
             if (flushInterval < 0) {
                 logger.warn("Invalid flushInterval of {}, Defaulting to {}", flushInterval, DEFAULT_BATCH_INTERVAL);
                 flushInterval = DEFAULT_BATCH_INTERVAL;
@@ -321,20 +685,60 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
                 timeoutMillis = DEFAULT_TIMEOUT_INTERVAL;
             }
 
+            if (shardCount < 1) {
+                logger.warn("Invalid shardCount of {}, Defaulting to {}", shardCount, DEFAULT_SHARD_COUNT);
+                shardCount = DEFAULT_SHARD_COUNT;
+            }
+
             if (eventHandler == null) {
                 throw new IllegalArgumentException("EventHandler was not configured");
             }
 
+            if (eventQueue != null && shardCount > 1) {
+                throw new IllegalArgumentException("EventQueue can't be shared by shards, configure an EventQueueSupplier");
+            }
+
+            if (executor != null && shardCount > 1 && !runsConcurrently(executor, shardCount)) {
+                throw new IllegalArgumentException("ExecutorService can't run " + shardCount + " shard consumers at once");
+            }
+
+            if (shardRouting == null) {
+                shardRouting = ShardRouting.VISITOR_ID;
+            }
+
+            if (overflowPolicy == null) {
+                overflowPolicy = eventSpool != null ? OverflowPolicy.spillToDisk(eventSpool) : OverflowPolicy.dropNewest();
+            }
+
+            List<BlockingQueue<Object>> eventQueues = new ArrayList<>(shardCount);
+            if (eventQueue != null) {
+                eventQueues.add(eventQueue);
+            } else {
+                for (int i = 0; i < shardCount; i++) {
+                    eventQueues.add(eventQueueSupplier.get());
+                }
+            }
+
+            if (executor == null && virtualThreads) {
+                executor = VirtualThreads.newExecutor("optimizely-event-processor-", shardCount, shardCount);
+                if (executor == null) {
+                    logger.warn("Virtual threads are not supported by this runtime, using platform threads");
+                }
+            }
+
             if (executor == null) {
                 final ThreadFactory threadFactory = Executors.defaultThreadFactory();
-                executor = Executors.newSingleThreadExecutor(runnable -> {
+                ThreadFactory daemonThreadFactory = runnable -> {
                     Thread thread = threadFactory.newThread(runnable);
                     thread.setDaemon(true);
                     return thread;
-                });
+                };
+                executor = shardCount == 1 ?
+                    Executors.newSingleThreadExecutor(daemonThreadFactory) :
+                    Executors.newFixedThreadPool(shardCount, daemonThreadFactory);
             }
 
-            BatchEventProcessor batchEventProcessor = new BatchEventProcessor(eventQueue, eventHandler, batchSize, flushInterval, timeoutMillis, executor, notificationCenter);
+            BatchEventProcessor batchEventProcessor = new BatchEventProcessor(Collections.unmodifiableList(eventQueues), shardRouting, eventHandler, batchSize, maxBatchSize, maxPayloadBytes, flushInterval, timeoutMillis, executor, notificationCenter, eventSpool, overflowPolicy);
 
             if (shouldStart) {
                 batchEventProcessor.start();
@@ -342,5 +746,21 @@ public class BatchEventProcessor implements EventProcessor, AutoCloseable {
 
             return batchEventProcessor;
         }
+
+        /**
+         * The consumers never return while running, so each needs a thread of its own. A ThreadPoolExecutor
+         * only grows past its core size when the work queue refuses a task.
+         */
+        private static boolean runsConcurrently(ExecutorService executor, int tasks) {
+            if (!(executor instanceof ThreadPoolExecutor)) {
+                return false;
+            }
+
+            ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executor;
+            if (threadPoolExecutor.getCorePoolSize() >= tasks) {
+                return true;
+            }
+            return threadPoolExecutor.getQueue() instanceof SynchronousQueue && threadPoolExecutor.getMaximumPoolSize() >= tasks;
+        }
     }
 }
@@ -0,0 +1,482 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * EventSpool persists {@link LogEvent}s that could not be dispatched, so they survive endpoint outages and restarts.
+ *
+ * Events are appended to memory-mapped segment files in the spool directory and read back in order.
+ * Each segment starts with a header holding the position of the next unread record, and each record is
+ * stored with its length and checksum. When the spool is opened, the existing segments are scanned and
+ * every record up to the first torn or corrupt one is recovered. Segments are deleted once read.
+ *
+ * Disk usage is bounded by maxBytes, events appended beyond it are rejected.
+ */
+public class EventSpool implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EventSpool.class);
+
+    public static final long DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final int MAGIC = 0x4f505453;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final File directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long diskBytes;
+    private int count;
+    // the number of records taken off the head, identifies the head record for remove
+    private long headPosition;
+    private boolean closed;
+
+    public EventSpool(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_BYTES);
+    }
+
+    public EventSpool(File directory, long segmentBytes, long maxBytes) throws IOException {
+        if (segmentBytes <= HEADER_BYTES + RECORD_HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segmentBytes: " + segmentBytes);
+        }
+        if (maxBytes < segmentBytes) {
+            throw new IllegalArgumentException("maxBytes can't be less than segmentBytes");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spool directory " + directory);
+        }
+
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        recover();
+    }
+
+    /**
+     * Appends the event to the spool.
+     *
+     * @return false if the spool is closed, full or the event could not be written
+     */
+    public synchronized boolean append(LogEvent logEvent) {
+        if (closed) {
+            return false;
+        }
+
+        byte[] record;
+        try {
+            record = encode(logEvent);
+        } catch (IOException e) {
+            logger.error("Unable to encode event for the spool.", e);
+            return false;
+        }
+
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.remaining() < RECORD_HEADER_BYTES + record.length) {
+            long size = Math.max(segmentBytes, HEADER_BYTES + RECORD_HEADER_BYTES + (long) record.length);
+            if (size > Integer.MAX_VALUE || diskBytes + size > maxBytes) {
+                logger.warn("Event spool is full, dropping event. Spooled events: {}", count);
+                return false;
+            }
+
+            try {
+                tail = Segment.create(segmentFile(nextSequence++), (int) size);
+            } catch (IOException e) {
+                logger.error("Unable to create spool segment.", e);
+                return false;
+            }
+            segments.addLast(tail);
+            diskBytes += size;
+        }
+
+        tail.append(record);
+        count++;
+        return true;
+    }
+
+    /**
+     * Removes and returns the oldest spooled event, or null if the spool is empty.
+     */
+    public synchronized LogEvent poll() {
+        SpooledEvent spooledEvent = peek();
+        if (spooledEvent == null) {
+            return null;
+        }
+
+        remove(spooledEvent);
+        return spooledEvent.getLogEvent();
+    }
+
+    /**
+     * Returns the oldest spooled event without removing it, or null if the spool is empty.
+     * Call {@link #remove(SpooledEvent)} once the event has been delivered, so it is not lost if delivery fails.
+     */
+    public synchronized SpooledEvent peek() {
+        Segment head;
+        while ((head = readableHead()) != null) {
+            try {
+                return new SpooledEvent(decode(head.peek()), headPosition);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping spooled event that can't be decoded.", e);
+                skip(head);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a peeked event if it is still the oldest spooled event. A reader that polls the same spool
+     * between the peek and the remove takes the event itself, so the event is not removed a second time
+     * and the one behind it stays spooled.
+     *
+     * @return false if the event was already taken off the spool
+     */
+    public synchronized boolean remove(SpooledEvent spooledEvent) {
+        Segment head = readableHead();
+        if (head == null || spooledEvent.position != headPosition) {
+            return false;
+        }
+
+        skip(head);
+        return true;
+    }
+
+    /**
+     * Returns the number of spooled events.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns the number of bytes the segment files take on disk.
+     */
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        for (Segment segment : segments) {
+            segment.force();
+        }
+        segments.clear();
+    }
+
+    //======== Helper methods ========//
+
+    private void skip(Segment head) {
+        head.skip();
+        count--;
+        headPosition++;
+    }
+
+    /**
+     * Returns the oldest segment with an unread record, deleting the segments read before it.
+     */
+    private Segment readableHead() {
+        while (!closed && !segments.isEmpty()) {
+            Segment head = segments.peekFirst();
+            if (head.hasNext()) {
+                return head;
+            }
+
+            // the tail segment stays open for appends
+            if (head == segments.peekLast()) {
+                return null;
+            }
+
+            segments.removeFirst();
+            diskBytes -= head.size();
+            head.delete();
+        }
+        return null;
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            throw new IOException("Unable to list spool directory " + directory);
+        }
+        Arrays.sort(files);
+
+        for (File file : files) {
+            long sequence;
+            try {
+                sequence = Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+
+            Segment segment = Segment.open(file);
+            if (segment == null) {
+                logger.warn("Deleting unreadable spool segment {}", file);
+                if (!file.delete()) {
+                    logger.warn("Unable to delete spool segment {}", file);
+                }
+                continue;
+            }
+
+            segments.addLast(segment);
+            diskBytes += segment.size();
+            count += segment.unread;
+        }
+
+        if (count > 0) {
+            logger.info("Recovered {} spooled events from {}", count, directory);
+        }
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(LogEvent logEvent) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(logEvent.getRequestMethod().ordinal());
+        writeString(out, logEvent.getEndpointUrl());
+        Map<String, String> requestParams = logEvent.getRequestParams();
+        out.writeInt(requestParams.size());
+        for (Map.Entry<String, String> param : requestParams.entrySet()) {
+            writeString(out, param.getKey());
+            writeString(out, param.getValue());
+        }
+        byte[] body = logEvent.getBodyBytes();
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static LogEvent decode(byte[] record) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        try {
+            LogEvent.RequestMethod requestMethod = LogEvent.RequestMethod.values()[in.get()];
+            String endpointUrl = readString(in);
+            int paramCount = in.getInt();
+            Map<String, String> requestParams = paramCount == 0 ? Collections.emptyMap() : new HashMap<>();
+            for (int i = 0; i < paramCount; i++) {
+                requestParams.put(readString(in), readString(in));
+            }
+            byte[] body = new byte[in.getInt()];
+            in.get(body);
+            return LogEvent.fromBody(requestMethod, endpointUrl, requestParams, body);
+        } catch (BufferUnderflowException | NegativeArraySizeException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated spool record", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //======== Helper classes ========//
+
+    /**
+     * A spooled event returned by {@link #peek()}, along with its position in the spool.
+     */
+    public static final class SpooledEvent {
+        private final LogEvent logEvent;
+        private final long position;
+
+        private SpooledEvent(LogEvent logEvent, long position) {
+            this.logEvent = logEvent;
+            this.position = position;
+        }
+
+        public LogEvent getLogEvent() {
+            return logEvent;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file: a header with the magic number and the read position, followed by
+     * records of length, checksum and payload. A zero length marks the end of the written records.
+     */
+    private static class Segment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int readPosition;
+        private int writePosition;
+        private int unread;
+
+        private Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment create(File file, int size) throws IOException {
+            Segment segment = new Segment(file, map(file, size));
+            segment.buffer.putInt(0, MAGIC);
+            segment.readPosition = HEADER_BYTES;
+            segment.writePosition = HEADER_BYTES;
+            segment.buffer.putInt(4, HEADER_BYTES);
+            return segment;
+        }
+
+        static Segment open(File file) throws IOException {
+            long length = file.length();
+            if (length < HEADER_BYTES + RECORD_HEADER_BYTES || length > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            Segment segment = new Segment(file, map(file, (int) length));
+            MappedByteBuffer buffer = segment.buffer;
+            int readPosition = buffer.getInt(4);
+            if (buffer.getInt(0) != MAGIC || readPosition < HEADER_BYTES || readPosition > length) {
+                return null;
+            }
+
+            // scan for the end of the intact records, a crash may have torn the last one
+            int position = HEADER_BYTES;
+            int unread = 0;
+            while (position + RECORD_HEADER_BYTES <= length) {
+                int recordLength = buffer.getInt(position);
+                if (recordLength <= 0 || recordLength > length - position - RECORD_HEADER_BYTES) {
+                    break;
+                }
+                if (checksum(buffer, position + RECORD_HEADER_BYTES, recordLength) != buffer.getInt(position + 4)) {
+                    break;
+                }
+                if (position >= readPosition) {
+                    unread++;
+                }
+                position += RECORD_HEADER_BYTES + recordLength;
+            }
+
+            segment.readPosition = Math.min(readPosition, position);
+            segment.writePosition = position;
+            segment.unread = unread;
+            // clear a torn record so it can't be taken for one after the next append
+            if (position + 4 <= length) {
+                buffer.putInt(position, 0);
+            }
+            return segment;
+        }
+
+        private static MappedByteBuffer map(File file, int size) throws IOException {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                 FileChannel channel = randomAccessFile.getChannel()) {
+                // the mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private static int checksum(ByteBuffer buffer, int position, int length) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(position);
+            slice.limit(position + length);
+            CRC32 crc = new CRC32();
+            crc.update(slice);
+            return (int) crc.getValue();
+        }
+
+        int size() {
+            return buffer.capacity();
+        }
+
+        int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+
+        void append(byte[] record) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(writePosition + RECORD_HEADER_BYTES);
+            slice.put(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            buffer.putInt(writePosition + 4, (int) crc.getValue());
+            // the length is written last, so a record is only visible once complete
+            buffer.putInt(writePosition, record.length);
+            writePosition += RECORD_HEADER_BYTES + record.length;
+            unread++;
+        }
+
+        boolean hasNext() {
+            return readPosition < writePosition;
+        }
+
+        byte[] peek() {
+            int recordLength = buffer.getInt(readPosition);
+            byte[] record = new byte[recordLength];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(readPosition + RECORD_HEADER_BYTES);
+            slice.get(record);
+            return record;
+        }
+
+        void skip() {
+            readPosition += RECORD_HEADER_BYTES + buffer.getInt(readPosition);
+            buffer.putInt(4, readPosition);
+            unread--;
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void delete() {
+            if (!file.delete()) {
+                logger.warn("Unable to delete spool segment {}", file);
+            }
+        }
+    }
+}
@@ -17,9 +17,10 @@
 package com.optimizely.ab.event;
 
 import com.optimizely.ab.event.internal.payload.EventBatch;
-import com.optimizely.ab.event.internal.serializer.DefaultJsonSerializer;
-import com.optimizely.ab.event.internal.serializer.Serializer;
+import com.optimizely.ab.event.internal.serializer.EventBatchSerializer;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
 
@@ -28,6 +29,9 @@ import javax.annotation.concurrent.Immutable;
 
 /**
  * Represents Optimizely tracking and activation events.
+ *
+ * The body is serialized the first time it is requested and cached, so logging, notification
+ * listeners and the dispatcher all share one serialization of the {@link EventBatch}.
  */
 @Immutable
 public class LogEvent {
@@ -37,6 +41,9 @@ public class LogEvent {
     private final Map<String, String> requestParams;
     private final EventBatch eventBatch;
 
+    private volatile byte[] bodyBytes;
+    private volatile String body;
+
     public LogEvent(@Nonnull RequestMethod requestMethod,
                     @Nonnull String endpointUrl,
                     @Nonnull Map<String, String> requestParams,
@@ -47,6 +54,19 @@ public class LogEvent {
         this.eventBatch = eventBatch;
     }
 
+    /**
+     * Creates a LogEvent from an already serialized body, such as one read back from an {@link EventSpool}.
+     * Its {@link #getEventBatch()} is null.
+     */
+    static LogEvent fromBody(@Nonnull RequestMethod requestMethod,
+                             @Nonnull String endpointUrl,
+                             @Nonnull Map<String, String> requestParams,
+                             @Nonnull byte[] bodyBytes) {
+        LogEvent logEvent = new LogEvent(requestMethod, endpointUrl, requestParams, null);
+        logEvent.bodyBytes = bodyBytes;
+        return logEvent;
+    }
+
     //======== Getters ========//
 
     public RequestMethod getRequestMethod() {
@@ -62,12 +82,24 @@ public class LogEvent {
     }
 
     public String getBody() {
-        if (eventBatch == null) {
-            return "";
+        String body = this.body;
+        if (body == null) {
+            body = new String(getBodyBytes(), StandardCharsets.UTF_8);
+            this.body = body;
         }
+        return body;
+    }
 
-        Serializer serializer = DefaultJsonSerializer.getInstance();
-        return serializer.serialize(eventBatch);
+    /**
+     * Returns the body as UTF-8 encoded JSON. The returned array is shared and must not be modified.
+     */
+    public byte[] getBodyBytes() {
+        byte[] bodyBytes = this.bodyBytes;
+        if (bodyBytes == null) {
+            bodyBytes = eventBatch == null ? new byte[0] : EventBatchSerializer.serialize(eventBatch);
+            this.bodyBytes = bodyBytes;
+        }
+        return bodyBytes;
     }
 
     public EventBatch getEventBatch() {
@@ -94,7 +126,8 @@ public class LogEvent {
         return requestMethod == logEvent.requestMethod &&
             Objects.equals(endpointUrl, logEvent.endpointUrl) &&
             Objects.equals(requestParams, logEvent.requestParams) &&
-            Objects.equals(eventBatch, logEvent.eventBatch);
+            Objects.equals(eventBatch, logEvent.eventBatch) &&
+            (eventBatch != null || Arrays.equals(getBodyBytes(), logEvent.getBodyBytes()));
     }
 
     @Override
@@ -0,0 +1,317 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OverflowPolicy decides what happens to an event when the queue it is offered to is full.
+ *
+ * It is used by the {@link BatchEventProcessor} for its event queues and by the AsyncEventHandler for
+ * its dispatch queue. The built-in policies are:
+ * <ul>
+ *   <li>{@link #dropNewest()} drops the event that does not fit</li>
+ *   <li>{@link #dropOldest()} drops the oldest queued event to make room for the new one</li>
+ *   <li>{@link #block(long, TimeUnit)} waits for room, and drops the event once the timeout passes</li>
+ *   <li>{@link #sampleDown(int)} drops the event and then keeps only 1 in N impressions until the queue is half empty</li>
+ *   <li>{@link #spillToDisk(EventSpool)} appends the event to an {@link EventSpool}</li>
+ * </ul>
+ *
+ * Every policy counts the overflows it handles and what became of the events, so the tradeoff between
+ * memory, latency and loss can be checked per service. An instance keeps its own counters and should
+ * not be shared by the BatchEventProcessor and the AsyncEventHandler.
+ */
+public abstract class OverflowPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverflowPolicy.class);
+
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong sampledOutCount = new AtomicLong();
+
+    /**
+     * Target describes the elements of a queue to a policy.
+     *
+     * @param <E> the type of the queued elements
+     */
+    public interface Target<E> {
+        /**
+         * Returns whether a queued element may be dropped to make room. Control signals are not.
+         */
+        default boolean isDroppable(E element) {
+            return true;
+        }
+
+        /**
+         * Returns whether the element is an impression, which sampling may leave out.
+         */
+        default boolean isSampleable(E element) {
+            return false;
+        }
+
+        /**
+         * Returns the {@link LogEvent} to spill for the element, or null if it can't be spilled.
+         */
+        default LogEvent toLogEvent(E element) {
+            return null;
+        }
+    }
+
+    public static OverflowPolicy dropNewest() {
+        return new DropNewest();
+    }
+
+    /**
+     * Drops the head of the queue for the new event. With a {@link RingBufferBlockingQueue}, which only its
+     * consumer may take from, the new event is dropped instead.
+     */
+    public static OverflowPolicy dropOldest() {
+        return new DropOldest();
+    }
+
+    public static OverflowPolicy block(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout can't be negative");
+        }
+        return new Block(unit.toNanos(timeout));
+    }
+
+    public static OverflowPolicy sampleDown(int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be at least 1");
+        }
+        return new SampleDown(sampleRate);
+    }
+
+    /**
+     * Appends events that don't fit to the spool, and drops them when the spool is full.
+     * The spool is not closed with the policy.
+     */
+    public static OverflowPolicy spillToDisk(EventSpool eventSpool) {
+        if (eventSpool == null) {
+            throw new IllegalArgumentException("eventSpool can't be null");
+        }
+        return new SpillToDisk(eventSpool);
+    }
+
+    /**
+     * Offers the element to the queue and handles it by the policy when the queue is full.
+     *
+     * @return true if the element was queued or spilled, false if it was dropped
+     */
+    public final <E> boolean offer(BlockingQueue<E> queue, E element, Target<E> target) {
+        return admit(queue, element, target) && (queue.offer(element) || onFull(queue, element, target));
+    }
+
+    /**
+     * Returns whether the element should be offered to the queue at all, counting the elements left out.
+     */
+    public final <E> boolean admit(BlockingQueue<E> queue, E element, Target<E> target) {
+        if (sample(queue, element, target)) {
+            return true;
+        }
+
+        sampledOutCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns whether the element should be offered to the queue at all.
+     */
+    protected <E> boolean sample(BlockingQueue<E> queue, E element, Target<E> target) {
+        return true;
+    }
+
+    /**
+     * Handles an element the queue did not accept.
+     *
+     * @return true if the element was queued or spilled, false if it was dropped
+     */
+    public final <E> boolean onFull(BlockingQueue<E> queue, E element, Target<E> target) {
+        overflowCount.incrementAndGet();
+        return handleOverflow(queue, element, target);
+    }
+
+    /**
+     * Handles an element the queue did not accept. Implementations record the outcome with
+     * {@link #recordDropped()} or {@link #recordSpilled()}.
+     *
+     * @return true if the element was queued or spilled, false if it was dropped
+     */
+    protected abstract <E> boolean handleOverflow(BlockingQueue<E> queue, E element, Target<E> target);
+
+    protected final boolean recordDropped() {
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    protected final boolean recordSpilled() {
+        spilledCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the number of times an element did not fit in the queue.
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * Returns the number of elements dropped, new or queued.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of elements written to disk.
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /**
+     * Returns the number of elements left out by sampling.
+     */
+    public long getSampledOutCount() {
+        return sampledOutCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "overflowCount=" + overflowCount +
+            ", droppedCount=" + droppedCount +
+            ", spilledCount=" + spilledCount +
+            ", sampledOutCount=" + sampledOutCount +
+            '}';
+    }
+
+    private static class DropNewest extends OverflowPolicy {
+        @Override
+        protected <E> boolean handleOverflow(BlockingQueue<E> queue, E element, Target<E> target) {
+            return recordDropped();
+        }
+    }
+
+    private static class DropOldest extends OverflowPolicy {
+        // bounds the evictions a single offer attempts while other producers refill the queue
+        private static final int MAX_EVICTIONS = 4;
+
+        @Override
+        protected <E> boolean handleOverflow(BlockingQueue<E> queue, E element, Target<E> target) {
+            if (queue instanceof RingBufferBlockingQueue) {
+                return recordDropped();
+            }
+
+            for (int i = 0; i < MAX_EVICTIONS; i++) {
+                E oldest = queue.peek();
+                if (oldest != null) {
+                    if (!target.isDroppable(oldest)) {
+                        break;
+                    }
+                    if (queue.remove(oldest)) {
+                        recordDropped();
+                    }
+                }
+                if (queue.offer(element)) {
+                    return true;
+                }
+            }
+            return recordDropped();
+        }
+    }
+
+    private static class Block extends OverflowPolicy {
+        private final long timeoutNanos;
+
+        private Block(long timeoutNanos) {
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        @Override
+        protected <E> boolean handleOverflow(BlockingQueue<E> queue, E element, Target<E> target) {
+            try {
+                if (queue.offer(element, timeoutNanos, TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted while waiting for room in the queue.");
+                Thread.currentThread().interrupt();
+            }
+            return recordDropped();
+        }
+    }
+
+    private static class SampleDown extends OverflowPolicy {
+        private final int sampleRate;
+        private final AtomicLong sampleCounter = new AtomicLong();
+        private volatile boolean sampling = false;
+
+        private SampleDown(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        protected <E> boolean sample(BlockingQueue<E> queue, E element, Target<E> target) {
+            if (!sampling) {
+                return true;
+            }
+
+            if (queue.size() <= queue.remainingCapacity()) {
+                logger.info("Queue drained to half its capacity, no longer sampling impressions.");
+                sampling = false;
+                return true;
+            }
+
+            return !target.isSampleable(element) || sampleCounter.getAndIncrement() % sampleRate == 0;
+        }
+
+        @Override
+        protected <E> boolean handleOverflow(BlockingQueue<E> queue, E element, Target<E> target) {
+            if (!sampling) {
+                logger.warn("Queue is full, keeping 1 in {} impressions until it drains.", sampleRate);
+                sampling = true;
+            }
+            return recordDropped();
+        }
+    }
+
+    private static class SpillToDisk extends OverflowPolicy {
+        private final EventSpool eventSpool;
+
+        private SpillToDisk(EventSpool eventSpool) {
+            this.eventSpool = eventSpool;
+        }
+
+        @Override
+        protected <E> boolean handleOverflow(BlockingQueue<E> queue, E element, Target<E> target) {
+            LogEvent logEvent = target.toLogEvent(element);
+            if (logEvent != null && eventSpool.append(logEvent)) {
+                return recordSpilled();
+            }
+            return recordDropped();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RingBufferBlockingQueue is a bounded, lock-free {@link BlockingQueue} for many producers and a single consumer.
+ *
+ * Its slots are allocated up front. Producers claim a slot with a compare-and-set instead of taking a lock,
+ * so request threads do not contend with each other or with the consumer on a monitor. The consumer waits
+ * for events with the configured {@link WaitStrategy} and can take them in runs with {@link #drainTo(Collection, int)}.
+ *
+ * It can be passed to {@link BatchEventProcessor.Builder#withEventQueue(BlockingQueue)}. Only one thread may take
+ * elements from the queue at a time, which holds for the single consumer of the {@link BatchEventProcessor}.
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /**
+     * WaitStrategy is how threads wait for the queue: the consumer when it is empty, producers when it is full.
+     */
+    public enum WaitStrategy {
+        /**
+         * Park the waiting thread. Producers wake up a parked consumer. Uses the least CPU.
+         */
+        PARK,
+        /**
+         * Yield the waiting thread. Lower latency than parking, at the cost of CPU while idle.
+         */
+        YIELD,
+        /**
+         * Keep polling without giving up the core. The lowest latency, and a busy core while idle.
+         */
+        BUSY_SPIN
+    }
+
+    // producers waiting for a full queue are not woken up by the consumer, they retry after this
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] slots;
+    // the sequence of a slot is its index plus one once it is published, and its next index once it is taken
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param capacity     the number of slots, rounded up to a power of two of at least two
+     * @param waitStrategy how to wait when the queue is empty or full
+     */
+    public RingBufferBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        if (waitStrategy == null) {
+            throw new NullPointerException("waitStrategy");
+        }
+
+        // a published slot of a single slot ring would look free to the next producer
+        this.capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new Object[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int slot = 0; slot < this.capacity; slot++) {
+            sequences.set(slot, slot);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        while (true) {
+            long index = producerIndex.get();
+            int slot = (int) index & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == index) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    slots[slot] = e;
+                    sequences.set(slot, index + 1);
+                    signalConsumer();
+                    return true;
+                }
+            } else if (sequence < index) {
+                // the slot still holds the element from the previous lap
+                return false;
+            }
+            // another producer claimed the slot, try the next one
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            waitForSpace();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            waitForSpace();
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long index = consumerIndex.get();
+        int slot = (int) index & mask;
+        if (sequences.get(slot) != index + 1) {
+            return null;
+        }
+
+        E e = (E) slots[slot];
+        slots[slot] = null;
+        sequences.set(slot, index + capacity);
+        consumerIndex.set(index + 1);
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return awaitElement(false, 0L);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitElement(true, unit.toNanos(timeout));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long index = consumerIndex.get();
+        int slot = (int) index & mask;
+        if (sequences.get(slot) != index + 1) {
+            return null;
+        }
+        return (E) slots[slot];
+    }
+
+    @Override
+    public int size() {
+        long size = producerIndex.get() - consumerIndex.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a snapshot of the published elements, in order. The iterator does not support removal.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        List<E> elements = new ArrayList<>();
+        long end = producerIndex.get();
+        for (long index = consumerIndex.get(); index < end; index++) {
+            int slot = (int) index & mask;
+            if (sequences.get(slot) == index + 1) {
+                Object e = slots[slot];
+                if (e != null) {
+                    elements.add((E) e);
+                }
+            }
+        }
+        return Collections.unmodifiableList(elements).iterator();
+    }
+
+    private E awaitElement(boolean timed, long nanos) throws InterruptedException {
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        while (true) {
+            E e = poll();
+            if (e != null) {
+                return e;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            long remaining = 0L;
+            if (timed) {
+                remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+            }
+
+            switch (waitStrategy) {
+                case PARK:
+                    waitingConsumer = Thread.currentThread();
+                    // check again, a producer may have published before it could see the waiting consumer
+                    e = poll();
+                    if (e != null) {
+                        waitingConsumer = null;
+                        return e;
+                    }
+                    if (timed) {
+                        LockSupport.parkNanos(this, remaining);
+                    } else {
+                        LockSupport.park(this);
+                    }
+                    waitingConsumer = null;
+                    break;
+                case YIELD:
+                    Thread.yield();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void waitForSpace() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        switch (waitStrategy) {
+            case PARK:
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void signalConsumer() {
+        if (waitStrategy == WaitStrategy.PARK) {
+            Thread consumer = waitingConsumer;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+}
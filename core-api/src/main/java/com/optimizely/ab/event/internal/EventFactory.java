@@ -45,13 +45,20 @@ public class EventFactory {
     public static final String EVENT_ENDPOINT = "https://logx.optimizely.com/v1/events";  // Should be part of the datafile
     private static final String ACTIVATE_EVENT_KEY = "campaign_activated";
 
+    // Serialized bytes of the payload fields that do not depend on the event values.
+    private static final int BATCH_OVERHEAD_BYTES = 160;
+    private static final int VISITOR_OVERHEAD_BYTES = 170;
+    private static final int DECISION_OVERHEAD_BYTES = 100;
+    private static final int ATTRIBUTE_OVERHEAD_BYTES = 52;
+    private static final int ENTITY_ID_BYTES = 16;
+
     public static LogEvent createLogEvent(UserEvent userEvent) {
         return createLogEvent(Collections.singletonList(userEvent));
     }
 
     public static LogEvent createLogEvent(List<UserEvent> userEvents) {
-        EventBatch.Builder builder = new EventBatch.Builder();
         List<Visitor> visitors = new ArrayList<>(userEvents.size());
+        UserEvent lastUserEvent = null;
 
         for (UserEvent userEvent: userEvents) {
 
@@ -67,25 +74,139 @@ public class EventFactory {
                 visitors.add(createVisitor((ConversionEvent) userEvent));
             }
 
-            // This needs an interface.
-            UserContext userContext = userEvent.getUserContext();
-            ProjectConfig projectConfig = userContext.getProjectConfig();
-
-            builder
-                .setClientName(ClientEngineInfo.getClientEngine().getClientEngineValue())
-                .setClientVersion(BuildVersionInfo.VERSION)
-                .setAccountId(projectConfig.getAccountId())
-                .setAnonymizeIp(projectConfig.getAnonymizeIP())
-                .setProjectId(projectConfig.getProjectId())
-                .setRevision(projectConfig.getRevision());
+            lastUserEvent = userEvent;
         }
 
         if (visitors.isEmpty()) {
             return null;
         }
 
-        builder.setVisitors(visitors);
-        return new LogEvent(LogEvent.RequestMethod.POST, EVENT_ENDPOINT, Collections.emptyMap(), builder.build());
+        // The batch takes its project fields from the last event, a batch never mixes projects or revisions.
+        UserContext userContext = lastUserEvent.getUserContext();
+        ProjectConfig projectConfig = userContext.getProjectConfig();
+
+        EventBatch eventBatch = new EventBatch.Builder()
+            .setClientName(ClientEngineInfo.getClientEngine().getClientEngineValue())
+            .setClientVersion(BuildVersionInfo.VERSION)
+            .setAccountId(projectConfig.getAccountId())
+            .setAnonymizeIp(projectConfig.getAnonymizeIP())
+            .setProjectId(projectConfig.getProjectId())
+            .setRevision(projectConfig.getRevision())
+            .setVisitors(visitors)
+            .build();
+        return new LogEvent(LogEvent.RequestMethod.POST, EVENT_ENDPOINT, Collections.emptyMap(), eventBatch);
+    }
+
+    /**
+     * Estimates the serialized size, in bytes, of the batch fields of a {@link LogEvent} built from the given event,
+     * without its visitors.
+     */
+    public static int estimateBatchSize(UserEvent userEvent) {
+        ProjectConfig projectConfig = userEvent.getUserContext().getProjectConfig();
+        return BATCH_OVERHEAD_BYTES +
+            estimateValueSize(projectConfig.getAccountId()) +
+            estimateValueSize(projectConfig.getProjectId()) +
+            estimateValueSize(projectConfig.getRevision());
+    }
+
+    /**
+     * Estimates the serialized size, in bytes, that the visitor of the given event adds to a {@link LogEvent}.
+     * The estimate is computed from the event fields without building the payload, and errs on the large side,
+     * also for escaped and non-ASCII text.
+     */
+    public static int estimateSize(UserEvent userEvent) {
+        UserContext userContext = userEvent.getUserContext();
+        int size = VISITOR_OVERHEAD_BYTES + estimateValueSize(userContext.getUserId());
+
+        Map<String, ?> attributes = userContext.getAttributes();
+        if (attributes != null) {
+            for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+                size += ATTRIBUTE_OVERHEAD_BYTES + ENTITY_ID_BYTES + estimateValueSize(entry.getKey()) + estimateValueSize(entry.getValue());
+            }
+        }
+
+        Boolean botFiltering = userContext.getProjectConfig().getBotFiltering();
+        if (botFiltering != null) {
+            size += ATTRIBUTE_OVERHEAD_BYTES + 2 * estimateValueSize(ControlAttribute.BOT_FILTERING_ATTRIBUTE.toString()) + 5;
+        }
+
+        if (userEvent instanceof ImpressionEvent) {
+            ImpressionEvent impressionEvent = (ImpressionEvent) userEvent;
+            size += DECISION_OVERHEAD_BYTES +
+                2 * estimateValueSize(impressionEvent.getLayerId()) +
+                estimateValueSize(impressionEvent.getExperimentId()) +
+                estimateValueSize(impressionEvent.getVariationId()) +
+                2 * ACTIVATE_EVENT_KEY.length();
+        }
+
+        if (userEvent instanceof ConversionEvent) {
+            ConversionEvent conversionEvent = (ConversionEvent) userEvent;
+            size += estimateValueSize(conversionEvent.getEventId()) + 2 * estimateValueSize(conversionEvent.getEventKey());
+            if (conversionEvent.getRevenue() != null) {
+                size += 12 + estimateValueSize(conversionEvent.getRevenue());
+            }
+            if (conversionEvent.getValue() != null) {
+                size += 10 + estimateValueSize(conversionEvent.getValue());
+            }
+            if (conversionEvent.getTags() != null) {
+                size += 8 + estimateValueSize(conversionEvent.getTags());
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Bounds the UTF-8 size of a quoted JSON string: a non-ASCII char takes at most 3 bytes (a surrogate pair
+     * takes 4 for 2 chars), and a char some serializers escape to a unicode escape sequence takes 6.
+     */
+    private static int estimateStringSize(String string) {
+        int size = 2;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x20 || c == '<' || c == '>' || c == '&' || c == '=' || c == '\'' || c == 0x2028 || c == 0x2029) {
+                size += 6;
+            } else if (c == '"' || c == '\\') {
+                size += 2;
+            } else if (c < 0x80) {
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    private static int estimateValueSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+
+        if (value instanceof String) {
+            return estimateStringSize((String) value);
+        }
+
+        if (value instanceof Map) {
+            int size = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimateValueSize(String.valueOf(entry.getKey())) + estimateValueSize(entry.getValue()) + 2;
+            }
+            return size;
+        }
+
+        if (value instanceof Iterable) {
+            int size = 2;
+            for (Object element : (Iterable<?>) value) {
+                size += estimateValueSize(element) + 1;
+            }
+            return size;
+        }
+
+        if (value instanceof Number || value instanceof Boolean) {
+            return String.valueOf(value).length();
+        }
+
+        return estimateValueSize(String.valueOf(value));
     }
 
     private static Visitor createVisitor(ImpressionEvent impressionEvent) {
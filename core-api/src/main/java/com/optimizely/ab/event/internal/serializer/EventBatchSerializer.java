@@ -0,0 +1,452 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event.internal.serializer;
+
+import com.optimizely.ab.event.internal.payload.Attribute;
+import com.optimizely.ab.event.internal.payload.Decision;
+import com.optimizely.ab.event.internal.payload.Event;
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.optimizely.ab.event.internal.payload.Snapshot;
+import com.optimizely.ab.event.internal.payload.Visitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EventBatchSerializer writes an {@link EventBatch} as JSON straight to UTF-8 bytes.
+ *
+ * The payload classes are written field by field, without reflection or intermediate Strings,
+ * into a buffer that each thread reuses. Null fields are left out, as with the {@link JacksonSerializer}.
+ * Use {@link #serialize(EventBatch)} for a copy of the bytes or {@link #serialize(EventBatch, OutputStream)}
+ * to write them without copying.
+ */
+public final class EventBatchSerializer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // buffers grown past this are not kept for the next batch
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<EventBatchSerializer> LOCAL = ThreadLocal.withInitial(EventBatchSerializer::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count;
+    private boolean first;
+
+    private EventBatchSerializer() {
+    }
+
+    /**
+     * Serializes the batch to a new array of UTF-8 bytes.
+     */
+    public static byte[] serialize(EventBatch eventBatch) {
+        EventBatchSerializer serializer = LOCAL.get();
+        try {
+            serializer.writeEventBatch(eventBatch);
+            return Arrays.copyOf(serializer.buffer, serializer.count);
+        } finally {
+            serializer.reset();
+        }
+    }
+
+    /**
+     * Serializes the batch as UTF-8 bytes to the given stream.
+     */
+    public static void serialize(EventBatch eventBatch, OutputStream outputStream) throws IOException {
+        EventBatchSerializer serializer = LOCAL.get();
+        try {
+            serializer.writeEventBatch(eventBatch);
+            outputStream.write(serializer.buffer, 0, serializer.count);
+        } finally {
+            serializer.reset();
+        }
+    }
+
+    private void reset() {
+        count = 0;
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    //======== Payload ========//
+
+    private void writeEventBatch(EventBatch eventBatch) {
+        beginObject();
+        writeField("account_id", eventBatch.getAccountId());
+        if (eventBatch.getVisitors() != null) {
+            writeName("visitors");
+            beginArray();
+            for (Visitor visitor : eventBatch.getVisitors()) {
+                writeSeparator();
+                writeVisitor(visitor);
+            }
+            endArray();
+        }
+        writeField("enrich_decisions", eventBatch.getEnrichDecisions());
+        writeField("anonymize_ip", eventBatch.getAnonymizeIp());
+        writeField("client_name", eventBatch.getClientName());
+        writeField("client_version", eventBatch.getClientVersion());
+        writeField("project_id", eventBatch.getProjectId());
+        writeField("revision", eventBatch.getRevision());
+        endObject();
+    }
+
+    private void writeVisitor(Visitor visitor) {
+        if (visitor == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        beginObject();
+        writeField("visitor_id", visitor.getVisitorId());
+        writeField("session_id", visitor.getSessionId());
+        List<Attribute> attributes = visitor.getAttributes();
+        if (attributes != null) {
+            writeName("attributes");
+            beginArray();
+            for (Attribute attribute : attributes) {
+                writeSeparator();
+                writeAttribute(attribute);
+            }
+            endArray();
+        }
+        List<Snapshot> snapshots = visitor.getSnapshots();
+        if (snapshots != null) {
+            writeName("snapshots");
+            beginArray();
+            for (Snapshot snapshot : snapshots) {
+                writeSeparator();
+                writeSnapshot(snapshot);
+            }
+            endArray();
+        }
+        endObject();
+    }
+
+    private void writeAttribute(Attribute attribute) {
+        if (attribute == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        beginObject();
+        writeField("entity_id", attribute.getEntityId());
+        writeField("key", attribute.getKey());
+        writeField("type", attribute.getType());
+        if (attribute.getValue() != null) {
+            writeName("value");
+            writeValue(attribute.getValue());
+        }
+        endObject();
+    }
+
+    private void writeSnapshot(Snapshot snapshot) {
+        if (snapshot == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        beginObject();
+        List<Decision> decisions = snapshot.getDecisions();
+        if (decisions != null) {
+            writeName("decisions");
+            beginArray();
+            for (Decision decision : decisions) {
+                writeSeparator();
+                writeDecision(decision);
+            }
+            endArray();
+        }
+        List<Event> events = snapshot.getEvents();
+        if (events != null) {
+            writeName("events");
+            beginArray();
+            for (Event event : events) {
+                writeSeparator();
+                writeEvent(event);
+            }
+            endArray();
+        }
+        writeField("activation_timestamp", snapshot.getActivationTimestamp());
+        endObject();
+    }
+
+    private void writeDecision(Decision decision) {
+        if (decision == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        beginObject();
+        writeField("campaign_id", decision.getCampaignId());
+        writeField("experiment_id", decision.getExperimentId());
+        writeField("variation_id", decision.getVariationId());
+        writeField("is_campaign_holdback", decision.getIsCampaignHoldback());
+        endObject();
+    }
+
+    private void writeEvent(Event event) {
+        if (event == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        beginObject();
+        writeName("timestamp");
+        writeLong(event.getTimestamp());
+        writeField("uuid", event.getUuid());
+        writeField("entity_id", event.getEntityId());
+        writeField("key", event.getKey());
+        writeField("quantity", event.getQuantity());
+        writeField("revenue", event.getRevenue());
+        if (event.getTags() != null) {
+            writeName("tags");
+            writeValue(event.getTags());
+        }
+        writeField("type", event.getType());
+        writeField("value", event.getValue());
+        endObject();
+    }
+
+    //======== JSON ========//
+
+    private void beginObject() {
+        writeByte('{');
+        first = true;
+    }
+
+    private void endObject() {
+        writeByte('}');
+        first = false;
+    }
+
+    private void beginArray() {
+        writeByte('[');
+        first = true;
+    }
+
+    private void endArray() {
+        writeByte(']');
+        first = false;
+    }
+
+    private void writeSeparator() {
+        if (first) {
+            first = false;
+        } else {
+            writeByte(',');
+        }
+    }
+
+    private void writeName(String name) {
+        writeSeparator();
+        writeString(name);
+        writeByte(':');
+    }
+
+    private void writeField(String name, String value) {
+        if (value != null) {
+            writeName(name);
+            writeString(value);
+        }
+    }
+
+    private void writeField(String name, Boolean value) {
+        if (value != null) {
+            writeName(name);
+            writeBytes(value ? TRUE : FALSE);
+        }
+    }
+
+    private void writeField(String name, Number value) {
+        if (value != null) {
+            writeName(name);
+            writeNumber(value);
+        }
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeBytes(NULL);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else if (value instanceof Boolean) {
+            writeBytes((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeName(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue());
+            }
+            endObject();
+        } else if (value instanceof Iterable) {
+            beginArray();
+            for (Object element : (Iterable<?>) value) {
+                writeSeparator();
+                writeValue(element);
+            }
+            endArray();
+        } else if (value instanceof Object[]) {
+            writeValue(Arrays.asList((Object[]) value));
+        } else if (value instanceof Enum) {
+            writeString(((Enum<?>) value).name());
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    private void writeNumber(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            writeLong(number.longValue());
+        } else if (number instanceof Double || number instanceof Float) {
+            double value = number.doubleValue();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                // not valid JSON numbers, written as strings like Jackson does
+                writeString(number.toString());
+            } else {
+                writeAscii(number.toString());
+            }
+        } else {
+            writeAscii(number.toString());
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long limit = 10; digits < 19 && value >= limit; limit *= 10) {
+            digits++;
+        }
+
+        ensureCapacity(digits);
+        for (int i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+    }
+
+    private void writeString(String value) {
+        int length = value.length();
+        // escapes take at most six bytes per character
+        ensureCapacity(length * 6 + 2);
+        byte[] bytes = buffer;
+        int position = count;
+
+        bytes[position++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    bytes[position++] = (byte) c;
+                    continue;
+                }
+                bytes[position++] = '\\';
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        bytes[position++] = (byte) c;
+                        break;
+                    case '\b':
+                        bytes[position++] = 'b';
+                        break;
+                    case '\f':
+                        bytes[position++] = 'f';
+                        break;
+                    case '\n':
+                        bytes[position++] = 'n';
+                        break;
+                    case '\r':
+                        bytes[position++] = 'r';
+                        break;
+                    case '\t':
+                        bytes[position++] = 't';
+                        break;
+                    default:
+                        bytes[position++] = 'u';
+                        bytes[position++] = '0';
+                        bytes[position++] = '0';
+                        bytes[position++] = HEX[c >> 4];
+                        bytes[position++] = HEX[c & 0xF];
+                }
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates can't be encoded, replaced like String.getBytes does
+                bytes[position++] = '?';
+            } else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        bytes[position++] = '"';
+        count = position;
+    }
+
+    private void writeAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buffer[count++] = (byte) c;
+    }
+
+    private void ensureCapacity(int length) {
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+        }
+    }
+}
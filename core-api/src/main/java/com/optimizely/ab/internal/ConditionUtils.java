@@ -24,6 +24,7 @@ import com.optimizely.ab.config.audience.NotCondition;
 import com.optimizely.ab.config.audience.EmptyCondition;
 import com.optimizely.ab.config.audience.NullCondition;
 import com.optimizely.ab.config.audience.OrCondition;
+import com.optimizely.ab.config.audience.ResolvedAudienceCondition;
 import com.optimizely.ab.config.audience.UserAttribute;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
@@ -164,6 +165,89 @@ public class ConditionUtils {
         return condition;
     }
 
+    /**
+     * Link the audience references of an audience condition tree to their audiences.
+     * The tree is copied, the given condition is left untouched.
+     *
+     * @param condition          the audience conditions of an experiment
+     * @param resolvedAudiences  the linked audience condition of every audience in the project config, by audience id
+     * @return a copy of the condition where each {@link AudienceIdCondition} is replaced by a {@link ResolvedAudienceCondition}
+     */
+    static public Condition resolveAudiences(Condition condition, Map<String, ResolvedAudienceCondition> resolvedAudiences) {
+        if (condition instanceof AudienceIdCondition) {
+            return resolveAudience(((AudienceIdCondition) condition).getAudienceId(), resolvedAudiences);
+        } else if (condition instanceof AndCondition) {
+            List<Condition> conditions = ((AndCondition) condition).getConditions();
+            return new AndCondition(resolveAudiences(conditions, resolvedAudiences));
+        } else if (condition instanceof OrCondition) {
+            List<Condition> conditions = ((OrCondition) condition).getConditions();
+            return new OrCondition(resolveAudiences(conditions, resolvedAudiences));
+        } else if (condition instanceof NotCondition) {
+            Condition notCondition = ((NotCondition) condition).getCondition();
+            return new NotCondition(notCondition == null ? null : resolveAudiences(notCondition, resolvedAudiences));
+        }
+
+        return condition;
+    }
+
+    static private List<Condition> resolveAudiences(List<Condition> conditions, Map<String, ResolvedAudienceCondition> resolvedAudiences) {
+        if (conditions == null) {
+            return null;
+        }
+
+        List<Condition> resolvedConditions = new ArrayList<Condition>(conditions.size());
+        for (Condition condition : conditions) {
+            resolvedConditions.add(resolveAudiences(condition, resolvedAudiences));
+        }
+        return resolvedConditions;
+    }
+
+    /**
+     * Get the linked audience condition for an audience id.
+     *
+     * @param audienceId        the id of the audience
+     * @param resolvedAudiences the linked audience condition of every audience in the project config, by audience id
+     * @return the linked audience condition, or one without an audience if the id is not in the project config
+     */
+    static public ResolvedAudienceCondition resolveAudience(String audienceId, Map<String, ResolvedAudienceCondition> resolvedAudiences) {
+        ResolvedAudienceCondition resolvedAudience = resolvedAudiences.get(audienceId);
+        return resolvedAudience != null ? resolvedAudience : new ResolvedAudienceCondition(audienceId, null);
+    }
+
+    /**
+     * Compile the user attributes of an audience condition tree, see {@link UserAttribute#compile()}.
+     * The tree is copied, the given condition is left untouched.
+     *
+     * @param condition the conditions of an audience
+     * @return a copy of the condition where each {@link UserAttribute} is replaced by its compiled condition
+     */
+    static public Condition compileConditions(Condition condition) {
+        if (condition instanceof UserAttribute) {
+            return ((UserAttribute<?>) condition).compile();
+        } else if (condition instanceof AndCondition) {
+            return new AndCondition(compileConditions(((AndCondition) condition).getConditions()));
+        } else if (condition instanceof OrCondition) {
+            return new OrCondition(compileConditions(((OrCondition) condition).getConditions()));
+        } else if (condition instanceof NotCondition) {
+            Condition notCondition = ((NotCondition) condition).getCondition();
+            return new NotCondition(notCondition == null ? null : compileConditions(notCondition));
+        }
+
+        return condition;
+    }
+
+    static private List<Condition> compileConditions(List<Condition> conditions) {
+        if (conditions == null) {
+            return null;
+        }
+
+        List<Condition> compiledConditions = new ArrayList<Condition>(conditions.size());
+        for (Condition condition : conditions) {
+            compiledConditions.add(compileConditions(condition));
+        }
+        return compiledConditions;
+    }
+
     static public String operand(Object object) {
         if (object != null && object instanceof String) {
             String operand = (String) object;
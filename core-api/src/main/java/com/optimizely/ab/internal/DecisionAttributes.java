@@ -0,0 +1,81 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.internal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DecisionAttributes is the copy of a user's attributes that is passed down while deciding several flags
+ * for the same user, e.g. in {@link com.optimizely.ab.Optimizely#decideAll}.
+ *
+ * Along with the attributes it carries the values that only depend on the user, the bucketing id and the
+ * result of each audience, so they are resolved once per request instead of once per flag or rule.
+ *
+ * It is a snapshot of the attributes taken for a single request: it must not be modified once decisions
+ * have started, nor shared across threads. The public APIs copy any attributes they are given,
+ * DecisionAttributes included, so a snapshot never outlives its request.
+ */
+@NotThreadSafe
+public class DecisionAttributes extends HashMap<String, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String userId;
+    private transient String bucketingId;
+    private transient Map<String, Boolean> audienceResults;
+
+    public DecisionAttributes(@Nonnull String userId, @Nullable Map<String, ?> attributes) {
+        super(attributes == null ? 0 : attributes.size());
+        this.userId = userId;
+        if (attributes != null) {
+            putAll(attributes);
+        }
+    }
+
+    @Nonnull
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return the bucketing id resolved for the user, or null if it has not been resolved yet.
+     */
+    @Nullable
+    public String getBucketingId() {
+        return bucketingId;
+    }
+
+    public void setBucketingId(@Nonnull String bucketingId) {
+        this.bucketingId = bucketingId;
+    }
+
+    /**
+     * @return the results of the audiences evaluated for the user so far, keyed by audience id.
+     * A result can be null when the audience could not be evaluated.
+     */
+    @Nonnull
+    public Map<String, Boolean> getAudienceResults() {
+        if (audienceResults == null) {
+            audienceResults = new HashMap<>();
+        }
+        return audienceResults;
+    }
+}
@@ -91,15 +91,19 @@ public final class ExperimentUtils {
             return true;
         }
 
-        List<Condition> conditions = new ArrayList<>();
-        for (String audienceId : experimentAudienceIds) {
-            AudienceIdCondition condition = new AudienceIdCondition(audienceId);
-            conditions.add(condition);
+        // the implicit 'Or' of the audiences is linked when the project config is built
+        Condition implicitOr = projectConfig.getAudienceCondition(experiment);
+        if (implicitOr == null) {
+            List<Condition> conditions = new ArrayList<>();
+            for (String audienceId : experimentAudienceIds) {
+                AudienceIdCondition condition = new AudienceIdCondition(audienceId);
+                conditions.add(condition);
+            }
+
+            implicitOr = new OrCondition(conditions);
         }
 
-        OrCondition implicitOr = new OrCondition(conditions);
-
-        logger.debug("Evaluating audiences for {} \"{}\": {}.", loggingEntityType, loggingKey, conditions);
+        logger.debug("Evaluating audiences for {} \"{}\": {}.", loggingEntityType, loggingKey, experimentAudienceIds);
 
         Boolean result = implicitOr.evaluate(projectConfig, attributes);
 
@@ -118,6 +122,11 @@ public final class ExperimentUtils {
         Condition conditions = experiment.getAudienceConditions();
         if (conditions == null) return null;
 
+        Condition resolvedConditions = projectConfig.getAudienceCondition(experiment);
+        if (resolvedConditions != null) {
+            conditions = resolvedConditions;
+        }
+
         try {
             Boolean result = conditions.evaluate(projectConfig, attributes);
             logger.info("Audiences for {} \"{}\" collectively evaluated to {}.", loggingEntityType, loggingKey, result);
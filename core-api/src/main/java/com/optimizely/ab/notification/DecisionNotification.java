@@ -20,16 +20,19 @@ package com.optimizely.ab.notification;
 import com.optimizely.ab.OptimizelyRuntimeException;
 import com.optimizely.ab.bucketing.FeatureDecision;
 import com.optimizely.ab.config.Variation;
+import com.optimizely.ab.optimizelydecision.OptimizelyDecision;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * DecisionNotification encapsulates the arguments and responses when using the following methods:
  *
  * activate {@link com.optimizely.ab.Optimizely#activate}
+ * decideAll {@link com.optimizely.ab.Optimizely#decideAll}
  * getEnabledFeatures {@link com.optimizely.ab.Optimizely#getEnabledFeatures}
  * getFeatureVariableBoolean {@link com.optimizely.ab.Optimizely#getFeatureVariableBoolean}
  * getFeatureVariableDouble {@link com.optimizely.ab.Optimizely#getFeatureVariableDouble}
@@ -350,4 +353,70 @@ public final class DecisionNotification {
                 decisionInfo);
         }
     }
+
+    public static AllFeaturesDecisionNotificationBuilder newAllFeaturesDecisionNotificationBuilder() {
+        return new AllFeaturesDecisionNotificationBuilder();
+    }
+
+    public static class AllFeaturesDecisionNotificationBuilder {
+
+        public static final String FEATURE_DECISIONS = "featureDecisions";
+        public static final String FEATURE_ENABLED = "featureEnabled";
+        public static final String SOURCE = "source";
+        public static final String SOURCE_INFO = "sourceInfo";
+        public static final String VARIABLE_VALUES = "variableValues";
+
+        private Map<String, OptimizelyDecision> featureDecisions;
+        private String userId;
+        private Map<String, ?> attributes;
+        private Map<String, Object> decisionInfo;
+
+        protected AllFeaturesDecisionNotificationBuilder() {
+        }
+
+        public AllFeaturesDecisionNotificationBuilder withUserId(String userId) {
+            this.userId = userId;
+            return this;
+        }
+
+        public AllFeaturesDecisionNotificationBuilder withAttributes(Map<String, ?> attributes) {
+            this.attributes = attributes;
+            return this;
+        }
+
+        public AllFeaturesDecisionNotificationBuilder withFeatureDecisions(Map<String, OptimizelyDecision> featureDecisions) {
+            this.featureDecisions = featureDecisions;
+            return this;
+        }
+
+        public DecisionNotification build() {
+            if (featureDecisions == null) {
+                throw new OptimizelyRuntimeException("featureDecisions not set");
+            }
+
+            Map<String, Object> featureDecisionsInfo = new LinkedHashMap<>();
+            for (OptimizelyDecision featureDecision : featureDecisions.values()) {
+                SourceInfo sourceInfo = new RolloutSourceInfo();
+                if (FeatureDecision.DecisionSource.FEATURE_TEST.equals(featureDecision.getSource())) {
+                    sourceInfo = new FeatureTestSourceInfo(featureDecision.getExperimentKey(), featureDecision.getVariationKey());
+                }
+
+                Map<String, Object> featureDecisionInfo = new HashMap<>();
+                featureDecisionInfo.put(FEATURE_ENABLED, featureDecision.isEnabled());
+                featureDecisionInfo.put(SOURCE, featureDecision.getSource().toString());
+                featureDecisionInfo.put(SOURCE_INFO, sourceInfo.get());
+                featureDecisionInfo.put(VARIABLE_VALUES, featureDecision.getVariables().toMap());
+                featureDecisionsInfo.put(featureDecision.getFeatureKey(), featureDecisionInfo);
+            }
+
+            decisionInfo = new HashMap<>();
+            decisionInfo.put(FEATURE_DECISIONS, featureDecisionsInfo);
+
+            return new DecisionNotification(
+                NotificationCenter.DecisionNotificationType.ALL_FEATURES.toString(),
+                userId,
+                attributes,
+                decisionInfo);
+        }
+    }
 }
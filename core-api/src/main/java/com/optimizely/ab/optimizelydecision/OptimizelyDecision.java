@@ -0,0 +1,126 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.optimizelydecision;
+
+import com.optimizely.ab.bucketing.FeatureDecision;
+import com.optimizely.ab.optimizelyjson.OptimizelyJSON;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * OptimizelyDecision is the decision made for one feature flag by {@link com.optimizely.ab.Optimizely#decideAll}:
+ * whether the flag is enabled for the user and the values of all of its variables.
+ */
+@Immutable
+public class OptimizelyDecision {
+
+    private final String featureKey;
+    private final boolean enabled;
+    private final OptimizelyJSON variables;
+    @Nullable
+    private final String experimentKey;
+    @Nullable
+    private final String variationKey;
+    private final FeatureDecision.DecisionSource source;
+
+    public OptimizelyDecision(@Nonnull String featureKey,
+                              boolean enabled,
+                              @Nonnull OptimizelyJSON variables,
+                              @Nullable String experimentKey,
+                              @Nullable String variationKey,
+                              @Nonnull FeatureDecision.DecisionSource source) {
+        this.featureKey = featureKey;
+        this.enabled = enabled;
+        this.variables = variables;
+        this.experimentKey = experimentKey;
+        this.variationKey = variationKey;
+        this.source = source;
+    }
+
+    @Nonnull
+    public String getFeatureKey() {
+        return featureKey;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the values of all variables of the feature, the default values if the feature is not enabled.
+     */
+    @Nonnull
+    public OptimizelyJSON getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the key of the experiment or rollout rule the user was bucketed into, null if none.
+     */
+    @Nullable
+    public String getExperimentKey() {
+        return experimentKey;
+    }
+
+    /**
+     * @return the key of the variation the user was bucketed into, null if none.
+     */
+    @Nullable
+    public String getVariationKey() {
+        return variationKey;
+    }
+
+    @Nonnull
+    public FeatureDecision.DecisionSource getSource() {
+        return source;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) return false;
+        if (obj == this) return true;
+        OptimizelyDecision optimizelyDecision = (OptimizelyDecision) obj;
+        return featureKey.equals(optimizelyDecision.getFeatureKey()) &&
+            enabled == optimizelyDecision.isEnabled() &&
+            variables.toString().equals(optimizelyDecision.getVariables().toString()) &&
+            (experimentKey == null ? optimizelyDecision.getExperimentKey() == null : experimentKey.equals(optimizelyDecision.getExperimentKey())) &&
+            (variationKey == null ? optimizelyDecision.getVariationKey() == null : variationKey.equals(optimizelyDecision.getVariationKey())) &&
+            source == optimizelyDecision.getSource();
+    }
+
+    @Override
+    public int hashCode() {
+        int result = featureKey.hashCode();
+        result = 31 * result + (enabled ? 1 : 0);
+        result = 31 * result + (variationKey != null ? variationKey.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "OptimizelyDecision{" +
+            "featureKey='" + featureKey + '\'' +
+            ", enabled=" + enabled +
+            ", variables=" + variables +
+            ", experimentKey='" + experimentKey + '\'' +
+            ", variationKey='" + variationKey + '\'' +
+            ", source=" + source +
+            '}';
+    }
+}
@@ -24,6 +24,7 @@ import com.optimizely.ab.bucketing.Bucketer;
 import com.optimizely.ab.bucketing.DecisionService;
 import com.optimizely.ab.bucketing.FeatureDecision;
 import com.optimizely.ab.config.*;
+import com.optimizely.ab.config.audience.Audience;
 import com.optimizely.ab.error.NoOpErrorHandler;
 import com.optimizely.ab.error.RaiseExceptionErrorHandler;
 import com.optimizely.ab.event.BatchEventProcessor;
@@ -32,8 +33,10 @@ import com.optimizely.ab.event.EventProcessor;
 import com.optimizely.ab.event.LogEvent;
 import com.optimizely.ab.event.internal.UserEventFactory;
 import com.optimizely.ab.internal.ControlAttribute;
+import com.optimizely.ab.internal.DecisionAttributes;
 import com.optimizely.ab.internal.LogbackVerifier;
 import com.optimizely.ab.notification.*;
+import com.optimizely.ab.optimizelydecision.OptimizelyDecision;
 import com.optimizely.ab.optimizelyjson.OptimizelyJSON;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.junit.Before;
@@ -1877,6 +1880,35 @@ public class OptimizelyTest {
         assertTrue(optimizely.notificationCenter.removeNotificationListener(notificationId));
     }
 
+    /**
+     * Verify that {@link Optimizely#isFeatureEnabled(String, String, Map)} copies {@link DecisionAttributes}
+     * it is given, so audience results cached by an earlier call are not reused.
+     */
+    @Test
+    public void isFeatureEnabledCopiesDecisionAttributes() throws Exception {
+        assumeTrue(datafileVersion >= Integer.parseInt(ProjectConfig.Version.V4.toString()));
+
+        final String validFeatureKey = "integer_single_variable_feature";
+        Optimizely optimizely = optimizelyBuilder.build();
+
+        Map<String, String> testUserAttributes = new HashMap<>();
+        testUserAttributes.put(ATTRIBUTE_HOUSE_KEY, AUDIENCE_GRYFFINDOR_VALUE);
+        DecisionAttributes decisionAttributes = new DecisionAttributes(genericUserId, testUserAttributes);
+        for (Audience audience : optimizely.getProjectConfig().getAudiences()) {
+            decisionAttributes.getAudienceResults().put(audience.getId(), false);
+        }
+        for (Audience audience : optimizely.getProjectConfig().getTypedAudiences()) {
+            decisionAttributes.getAudienceResults().put(audience.getId(), false);
+        }
+
+        List<Map<String, ?>> notifiedAttributes = new ArrayList<>();
+        optimizely.addDecisionNotificationHandler(decisionNotification -> notifiedAttributes.add(decisionNotification.getAttributes()));
+
+        assertTrue(optimizely.isFeatureEnabled(validFeatureKey, genericUserId, decisionAttributes));
+        assertEquals(1, notifiedAttributes.size());
+        assertNotSame(decisionAttributes, notifiedAttributes.get(0));
+    }
+
     /**
      * Verify that the {@link Optimizely#isFeatureEnabled(String, String, Map<String, String>)}
      * notification listener of isFeatureEnabled is called when feature is in rollout and featureEnabled is true
@@ -3482,6 +3514,81 @@ public class OptimizelyTest {
         assertTrue(featureFlags.isEmpty());
     }
 
+    /**
+     * Verify {@link Optimizely#decideAll(String, Map)} returns a decision for every feature flag
+     * in datafile order, with the same enabled state as {@link Optimizely#isFeatureEnabled(String, String, Map)}.
+     */
+    @Test
+    public void decideAllWithValidUserId() throws Exception {
+        assumeTrue(datafileVersion >= Integer.parseInt(ProjectConfig.Version.V4.toString()));
+
+        Optimizely optimizely = optimizelyBuilder.build();
+        Map<String, OptimizelyDecision> decisions = optimizely.decideAll(genericUserId, Collections.emptyMap());
+
+        List<String> featureKeys = new ArrayList<>();
+        for (FeatureFlag featureFlag : validProjectConfig.getFeatureFlags()) {
+            featureKeys.add(featureFlag.getKey());
+        }
+        assertEquals(featureKeys, new ArrayList<>(decisions.keySet()));
+
+        OptimizelyDecision decision = decisions.get(FEATURE_MULTI_VARIATE_FEATURE_KEY);
+        assertEquals(FEATURE_MULTI_VARIATE_FEATURE_KEY, decision.getFeatureKey());
+        assertEquals(optimizely.getAllFeatureVariables(FEATURE_MULTI_VARIATE_FEATURE_KEY, genericUserId).toMap(),
+            decision.getVariables().toMap());
+
+        eventHandler.expectImpression("1786133852", "1619235542", genericUserId);
+    }
+
+    /**
+     * Verify {@link Optimizely#decideAll(String, Map)} sends a single notification
+     * holding the decisions of all feature flags.
+     */
+    @Test
+    public void decideAllWithListenerSendsSingleNotification() throws Exception {
+        assumeTrue(datafileVersion >= Integer.parseInt(ProjectConfig.Version.V4.toString()));
+
+        Optimizely optimizely = optimizelyBuilder.build();
+        final List<DecisionNotification> notifications = new ArrayList<>();
+        int notificationId = optimizely.addDecisionNotificationHandler(notifications::add);
+
+        Map<String, OptimizelyDecision> decisions = optimizely.decideAll(genericUserId, Collections.emptyMap());
+
+        assertEquals(1, notifications.size());
+        DecisionNotification decisionNotification = notifications.get(0);
+        assertEquals(NotificationCenter.DecisionNotificationType.ALL_FEATURES.toString(), decisionNotification.getType());
+        assertEquals(genericUserId, decisionNotification.getUserId());
+
+        Map<String, ?> featureDecisions = (Map<String, ?>) decisionNotification.getDecisionInfo()
+            .get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.FEATURE_DECISIONS);
+        assertEquals(decisions.keySet(), featureDecisions.keySet());
+        for (OptimizelyDecision decision : decisions.values()) {
+            Map<String, ?> featureDecisionInfo = (Map<String, ?>) featureDecisions.get(decision.getFeatureKey());
+            assertEquals(decision.isEnabled(),
+                featureDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.FEATURE_ENABLED));
+        }
+
+        eventHandler.expectImpression("1786133852", "1619235542", genericUserId);
+        assertTrue(optimizely.notificationCenter.removeNotificationListener(notificationId));
+    }
+
+    /**
+     * Verify {@link Optimizely#decideAll(String, Map)} returns an empty map when the userId is null.
+     */
+    @SuppressFBWarnings("NP_NONNULL_PARAM_VIOLATION")
+    @Test
+    public void decideAllWithNullUserID() throws Exception {
+        assumeTrue(datafileVersion >= Integer.parseInt(ProjectConfig.Version.V4.toString()));
+        String userID = null;
+        Optimizely optimizely = optimizelyBuilder.build();
+        Map<String, OptimizelyDecision> decisions = optimizely.decideAll(userID, Collections.emptyMap());
+        assertTrue(decisions.isEmpty());
+
+        logbackVerifier.expectMessage(
+            Level.ERROR,
+            "The user ID parameter must be nonnull."
+        );
+    }
+
     /**
      * Verify {@link Optimizely#getFeatureVariableString(String, String, String)}
      * calls through to {@link Optimizely#getFeatureVariableString(String, String, String, Map)}
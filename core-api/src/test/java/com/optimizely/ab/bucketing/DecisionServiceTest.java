@@ -19,6 +19,7 @@ import com.optimizely.ab.config.Experiment;
 import com.optimizely.ab.config.FeatureFlag;
 import com.optimizely.ab.config.ProjectConfig;
 import com.optimizely.ab.config.DatafileProjectConfigTestUtils;
+import com.optimizely.ab.config.DecisionPlan;
 import com.optimizely.ab.config.Rollout;
 import com.optimizely.ab.config.TrafficAllocation;
 import com.optimizely.ab.config.ValidProjectConfigV4;
@@ -34,6 +35,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -304,7 +306,7 @@ public class DecisionServiceTest {
         assertNull(featureDecision.decisionSource);
 
         verify(emptyFeatureFlag, times(1)).getExperimentIds();
-        verify(emptyFeatureFlag, times(1)).getRolloutId();
+        verify(emptyFeatureFlag, times(2)).getRolloutId();
         verify(emptyFeatureFlag, times(3)).getKey();
     }
 
@@ -329,7 +331,8 @@ public class DecisionServiceTest {
             any(FeatureFlag.class),
             anyString(),
             anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionPlan.class)
         );
 
         // try to get a variation back from the decision service for the feature flag
@@ -346,8 +349,50 @@ public class DecisionServiceTest {
             "The user \"" + genericUserId + "\" was not bucketed into a rollout for feature flag \"" +
                 FEATURE_MULTI_VARIATE_FEATURE_KEY + "\".");
 
-        verify(spyFeatureFlag, times(2)).getExperimentIds();
-        verify(spyFeatureFlag, times(1)).getKey();
+        // the flag is resolved against the datafile once, for the experiments and the rollout alike
+        verify(spyFeatureFlag, times(1)).getExperimentIds();
+        verify(spyFeatureFlag, times(2)).getKey();
+    }
+
+    /**
+     * Verify that {@link DecisionService#getVariationForFeature(FeatureFlag, String, Map, ProjectConfig)}
+     * skips experiment ids of the {@link FeatureFlag} that are not in the datafile.
+     */
+    @Test
+    public void getVariationForFeatureSkipsExperimentsMissingFromDatafile() {
+        Experiment experiment = ValidProjectConfigV4.EXPERIMENT_MUTEX_GROUP_EXPERIMENT_2;
+        FeatureFlag featureFlag = new FeatureFlag(
+            "missingExperimentFeatureId",
+            "missing_experiment_feature",
+            "",
+            Arrays.asList("missingExperimentId", experiment.getId()),
+            Collections.emptyList()
+        );
+
+        doReturn(ValidProjectConfigV4.VARIATION_MUTEX_GROUP_EXP_2_VAR_1).when(decisionService).getVariation(
+            eq(experiment),
+            anyString(),
+            anyMapOf(String.class, String.class),
+            any(ProjectConfig.class)
+        );
+
+        FeatureDecision featureDecision = decisionService.getVariationForFeature(
+            featureFlag,
+            genericUserId,
+            Collections.<String, String>emptyMap(),
+            v4ProjectConfig
+        );
+        assertEquals(experiment, featureDecision.experiment);
+        assertEquals(ValidProjectConfigV4.VARIATION_MUTEX_GROUP_EXP_2_VAR_1, featureDecision.variation);
+        assertEquals(FeatureDecision.DecisionSource.FEATURE_TEST, featureDecision.decisionSource);
+
+        // the missing experiment is never handed to getVariation
+        verify(decisionService, times(1)).getVariation(
+            any(Experiment.class),
+            anyString(),
+            anyMapOf(String.class, String.class),
+            any(ProjectConfig.class)
+        );
     }
 
     /**
@@ -382,7 +427,7 @@ public class DecisionServiceTest {
         assertEquals(ValidProjectConfigV4.VARIATION_MUTEX_GROUP_EXP_2_VAR_1, featureDecision.variation);
         assertEquals(FeatureDecision.DecisionSource.FEATURE_TEST, featureDecision.decisionSource);
 
-        verify(spyFeatureFlag, times(2)).getExperimentIds();
+        verify(spyFeatureFlag, times(1)).getExperimentIds();
         verify(spyFeatureFlag, never()).getKey();
     }
 
@@ -418,7 +463,8 @@ public class DecisionServiceTest {
             eq(featureFlag),
             anyString(),
             anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionPlan.class)
         );
 
         // make sure we get the right variation back
@@ -436,7 +482,8 @@ public class DecisionServiceTest {
             any(FeatureFlag.class),
             anyString(),
             anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionPlan.class)
         );
 
         // make sure we ask for experiment bucketing once
@@ -478,7 +525,8 @@ public class DecisionServiceTest {
             eq(featureFlag),
             anyString(),
             anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionPlan.class)
         );
 
         // make sure we get the right variation back
@@ -496,7 +544,8 @@ public class DecisionServiceTest {
             any(FeatureFlag.class),
             anyString(),
             anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionPlan.class)
         );
 
         // make sure we ask for experiment bucketing once
@@ -120,9 +120,29 @@ public class MurmurHash3Test {
             doString(s);
             doString(middle);
             doString(s, pre, post);
+            doSaltedString(middle, s.substring(0, pre));
+            doSaltedString(s.substring(pre), middle);
         }
 
     }
+
+    private void doSaltedString(String s, String salt) {
+        int hash1 = MurmurHash3.murmurhash3_x86_32(s + salt, 0, s.length() + salt.length(), 123456789);
+        int hash2 = MurmurHash3.murmurhash3_x86_32(s, salt, 123456789);
+        assertEquals(hash1, hash2);
+    }
+
+    @Test
+    public void testSaltedStringHash() {
+        doSaltedString("", "");
+        doSaltedString("user", "");
+        doSaltedString("", "1886780721");
+        doSaltedString("test_user", "1886780721");
+        doSaltedString("\u2345\u1234", "7722370027");
+        // a surrogate pair split between the two segments
+        doSaltedString("user\uD83D", "\uDE00123");
+        doSaltedString("user\uD83D", "");
+    }
 }
 
 
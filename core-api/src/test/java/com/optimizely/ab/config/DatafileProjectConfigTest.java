@@ -18,9 +18,11 @@ package com.optimizely.ab.config;
 
 import ch.qos.logback.classic.Level;
 import com.optimizely.ab.config.audience.AndCondition;
+import com.optimizely.ab.config.audience.AudienceIdCondition;
 import com.optimizely.ab.config.audience.Condition;
 import com.optimizely.ab.config.audience.NotCondition;
 import com.optimizely.ab.config.audience.OrCondition;
+import com.optimizely.ab.config.audience.ResolvedAudienceCondition;
 import com.optimizely.ab.config.audience.UserAttribute;
 
 import java.util.ArrayList;
@@ -170,4 +172,159 @@ public class DatafileProjectConfigTest {
             " has reserved prefix $opt_; using attribute ID instead of reserved attribute name.");
     }
 
+    /**
+     * Asserts that {@link DatafileProjectConfig#getDecisionPlan(FeatureFlag)} resolves the feature test
+     * experiments and the rollout rules of a feature flag in priority order.
+     */
+    @Test
+    public void getDecisionPlanResolvesExperimentsAndRolloutRules() {
+        ProjectConfig projectConfig = DatafileProjectConfigTestUtils.validProjectConfigV4();
+        FeatureFlag featureFlag = projectConfig.getFeatureKeyMapping().get(ValidProjectConfigV4.FEATURE_MULTI_VARIATE_FEATURE_KEY);
+
+        DecisionPlan decisionPlan = projectConfig.getDecisionPlan(featureFlag);
+        assertNotNull(decisionPlan);
+        assertSame(featureFlag, decisionPlan.getFeatureFlag());
+
+        List<Experiment> expectedExperiments = new ArrayList<Experiment>();
+        for (String experimentId : featureFlag.getExperimentIds()) {
+            expectedExperiments.add(projectConfig.getExperimentIdMapping().get(experimentId));
+        }
+        assertEquals(expectedExperiments, decisionPlan.getExperiments());
+
+        Rollout rollout = projectConfig.getRolloutIdMapping().get(featureFlag.getRolloutId());
+        assertSame(rollout, decisionPlan.getRollout());
+        assertEquals(rollout.getExperiments(), decisionPlan.getRolloutRules());
+    }
+
+    /**
+     * Asserts that {@link DatafileProjectConfig#getDecisionPlan(FeatureFlag)} has an empty rollout for
+     * feature flags that are not used in a rollout.
+     */
+    @Test
+    public void getDecisionPlanWithoutRollout() {
+        ProjectConfig projectConfig = DatafileProjectConfigTestUtils.validProjectConfigV4();
+        FeatureFlag featureFlag = projectConfig.getFeatureKeyMapping().get(ValidProjectConfigV4.FEATURE_MUTEX_GROUP_FEATURE_KEY);
+
+        DecisionPlan decisionPlan = projectConfig.getDecisionPlan(featureFlag);
+        assertNotNull(decisionPlan);
+        assertEquals(2, decisionPlan.getExperiments().size());
+        assertNull(decisionPlan.getRollout());
+        assertTrue(decisionPlan.getRolloutRules().isEmpty());
+    }
+
+    /**
+     * Asserts that {@link DatafileProjectConfig#getDecisionPlan(FeatureFlag)} returns null for feature flags
+     * that are not part of the project config.
+     */
+    @Test
+    public void getDecisionPlanForUnknownFeatureFlag() {
+        ProjectConfig projectConfig = DatafileProjectConfigTestUtils.validProjectConfigV4();
+        FeatureFlag featureFlag = projectConfig.getFeatureKeyMapping().get(ValidProjectConfigV4.FEATURE_MULTI_VARIATE_FEATURE_KEY);
+        FeatureFlag copiedFeatureFlag = new FeatureFlag(
+            featureFlag.getId(),
+            featureFlag.getKey(),
+            featureFlag.getRolloutId(),
+            featureFlag.getExperimentIds(),
+            featureFlag.getVariables()
+        );
+
+        assertNull(projectConfig.getDecisionPlan(copiedFeatureFlag));
+        assertNull(projectConfig.getDecisionPlan(null));
+    }
+
+    /**
+     * Asserts that {@link DatafileProjectConfig#getAudienceCondition(Experiment)} links every audience reference
+     * of the experiments and rollout rules to the audience of the project config.
+     */
+    @Test
+    public void getAudienceConditionLinksAudiences() {
+        ProjectConfig projectConfig = DatafileProjectConfigTestUtils.validProjectConfigV4();
+        List<Experiment> experiments = new ArrayList<Experiment>(projectConfig.getExperiments());
+        for (Rollout rollout : projectConfig.getRollouts()) {
+            experiments.addAll(rollout.getExperiments());
+        }
+
+        int resolvedCount = 0;
+        for (Experiment experiment : experiments) {
+            Condition audienceCondition = projectConfig.getAudienceCondition(experiment);
+            assertNotNull(audienceCondition);
+
+            List<String> expectedAudienceIds = new ArrayList<String>();
+            if (experiment.getAudienceConditions() != null) {
+                collectAudienceIds(experiment.getAudienceConditions(), expectedAudienceIds);
+            } else {
+                expectedAudienceIds.addAll(experiment.getAudienceIds());
+            }
+
+            List<ResolvedAudienceCondition> resolvedConditions = new ArrayList<ResolvedAudienceCondition>();
+            collectResolvedAudienceConditions(audienceCondition, resolvedConditions);
+            List<String> resolvedAudienceIds = new ArrayList<String>();
+            for (ResolvedAudienceCondition resolvedCondition : resolvedConditions) {
+                assertSame(projectConfig.getAudienceIdMapping().get(resolvedCondition.getAudienceId()), resolvedCondition.getAudience());
+                resolvedAudienceIds.add(resolvedCondition.getAudienceId());
+            }
+            // the audiences may be reordered by cost
+            Collections.sort(expectedAudienceIds);
+            Collections.sort(resolvedAudienceIds);
+            assertEquals(expectedAudienceIds, resolvedAudienceIds);
+            resolvedCount += resolvedConditions.size();
+        }
+        assertTrue(resolvedCount > 0);
+    }
+
+    /**
+     * Asserts that {@link DatafileProjectConfig#getAudienceCondition(Experiment)} returns null for experiments
+     * that are not part of the project config.
+     */
+    @Test
+    public void getAudienceConditionForUnknownExperiment() {
+        ProjectConfig projectConfig = DatafileProjectConfigTestUtils.validProjectConfigV4();
+        Experiment experiment = projectConfig.getExperiments().get(0);
+        Experiment copiedExperiment = new Experiment(
+            experiment.getId(),
+            experiment.getKey(),
+            experiment.getStatus(),
+            experiment.getLayerId(),
+            experiment.getAudienceIds(),
+            experiment.getAudienceConditions(),
+            experiment.getVariations(),
+            experiment.getUserIdToVariationKeyMap(),
+            experiment.getTrafficAllocation()
+        );
+
+        assertNull(projectConfig.getAudienceCondition(copiedExperiment));
+    }
+
+    private static void collectAudienceIds(Condition condition, List<String> audienceIds) {
+        if (condition instanceof AudienceIdCondition) {
+            audienceIds.add(((AudienceIdCondition) condition).getAudienceId());
+        } else if (condition instanceof AndCondition) {
+            for (Object child : ((AndCondition) condition).getConditions()) {
+                collectAudienceIds((Condition) child, audienceIds);
+            }
+        } else if (condition instanceof OrCondition) {
+            for (Object child : ((OrCondition) condition).getConditions()) {
+                collectAudienceIds((Condition) child, audienceIds);
+            }
+        } else if (condition instanceof NotCondition) {
+            collectAudienceIds(((NotCondition) condition).getCondition(), audienceIds);
+        }
+    }
+
+    private static void collectResolvedAudienceConditions(Condition condition, List<ResolvedAudienceCondition> resolvedConditions) {
+        assertFalse(condition instanceof AudienceIdCondition);
+        if (condition instanceof ResolvedAudienceCondition) {
+            resolvedConditions.add((ResolvedAudienceCondition) condition);
+        } else if (condition instanceof AndCondition) {
+            for (Object child : ((AndCondition) condition).getConditions()) {
+                collectResolvedAudienceConditions((Condition) child, resolvedConditions);
+            }
+        } else if (condition instanceof OrCondition) {
+            for (Object child : ((OrCondition) condition).getConditions()) {
+                collectResolvedAudienceConditions((Condition) child, resolvedConditions);
+            }
+        } else if (condition instanceof NotCondition) {
+            collectResolvedAudienceConditions(((NotCondition) condition).getCondition(), resolvedConditions);
+        }
+    }
 }
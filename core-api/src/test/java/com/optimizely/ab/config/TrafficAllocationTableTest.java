@@ -0,0 +1,107 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link TrafficAllocationTable}.
+ */
+public class TrafficAllocationTableTest {
+
+    @Test
+    public void bucketToEntityWithoutAllocations() {
+        assertNull(TrafficAllocationTable.of(null).bucketToEntity(0));
+        assertNull(TrafficAllocationTable.of(Collections.<TrafficAllocation>emptyList()).bucketToEntity(5000));
+    }
+
+    @Test
+    public void bucketToEntityUsesFirstRangeAboveBucketValue() {
+        TrafficAllocationTable table = TrafficAllocationTable.of(Arrays.asList(
+            new TrafficAllocation("1", 2500),
+            new TrafficAllocation("2", 5000),
+            new TrafficAllocation("3", 10000)
+        ));
+
+        assertEquals(3, table.size());
+        assertEquals("1", table.bucketToEntity(0));
+        assertEquals("1", table.bucketToEntity(2499));
+        assertEquals("2", table.bucketToEntity(2500));
+        assertEquals("2", table.bucketToEntity(4999));
+        assertEquals("3", table.bucketToEntity(5000));
+        assertEquals("3", table.bucketToEntity(9999));
+        assertNull(table.bucketToEntity(10000));
+    }
+
+    @Test
+    public void bucketToEntityReturnsNullForDeallocatedSpace() {
+        TrafficAllocationTable table = TrafficAllocationTable.of(Arrays.asList(
+            new TrafficAllocation("1", 3000),
+            new TrafficAllocation("", 6000),
+            new TrafficAllocation("2", 9000)
+        ));
+
+        assertEquals("1", table.bucketToEntity(2999));
+        assertNull(table.bucketToEntity(3000));
+        assertNull(table.bucketToEntity(5999));
+        assertEquals("2", table.bucketToEntity(6000));
+        assertNull(table.bucketToEntity(9000));
+    }
+
+    /**
+     * The binary search has to return the same entity as a first-match scan over the allocations,
+     * including for duplicate and out of order end of range values.
+     */
+    @Test
+    public void bucketToEntityMatchesLinearScan() {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            int size = random.nextInt(40);
+            List<TrafficAllocation> trafficAllocations = new ArrayList<TrafficAllocation>(size);
+            for (int i = 0; i < size; i++) {
+                String entityId = random.nextInt(5) == 0 ? "" : Integer.toString(i);
+                trafficAllocations.add(new TrafficAllocation(entityId, random.nextInt(10001)));
+            }
+            if (random.nextBoolean()) {
+                Collections.sort(trafficAllocations, (a, b) -> Integer.compare(a.getEndOfRange(), b.getEndOfRange()));
+            }
+
+            TrafficAllocationTable table = TrafficAllocationTable.of(trafficAllocations);
+            for (int bucketValue = 0; bucketValue <= 10000; bucketValue += 1 + random.nextInt(50)) {
+                assertEquals(linearScan(trafficAllocations, bucketValue), table.bucketToEntity(bucketValue));
+            }
+        }
+    }
+
+    private static String linearScan(List<TrafficAllocation> trafficAllocations, int bucketValue) {
+        for (TrafficAllocation trafficAllocation : trafficAllocations) {
+            if (bucketValue < trafficAllocation.getEndOfRange()) {
+                return trafficAllocation.getEntityId().isEmpty() ? null : trafficAllocation.getEntityId();
+            }
+        }
+        return null;
+    }
+}
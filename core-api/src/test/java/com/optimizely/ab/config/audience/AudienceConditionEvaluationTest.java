@@ -17,6 +17,8 @@
 package com.optimizely.ab.config.audience;
 
 import ch.qos.logback.classic.Level;
+import com.optimizely.ab.config.ProjectConfig;
+import com.optimizely.ab.internal.DecisionAttributes;
 import com.optimizely.ab.internal.LogbackVerifier;
 import org.junit.Before;
 import org.junit.Rule;
@@ -35,6 +37,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -1451,4 +1456,71 @@ public class AudienceConditionEvaluationTest {
         assertNull(nullValueAttribute.evaluate(null, Collections.singletonMap(attributeName, attributeValue)));
         assertNull(nullValueAttribute.evaluate(null, (Collections.singletonMap(attributeName, ""))));
     }
+
+    /**
+     * Verify that {@link AudienceIdCondition#evaluate(com.optimizely.ab.config.ProjectConfig, java.util.Map)}
+     * evaluates an audience once for {@link DecisionAttributes} and reuses the result, null included.
+     */
+    @Test
+    public void audienceIdConditionReusesResultForDecisionAttributes() {
+        Condition audienceCondition = mock(Condition.class);
+        when(audienceCondition.evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class))).thenReturn(true);
+        Condition nullAudienceCondition = mock(Condition.class);
+        when(nullAudienceCondition.evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class))).thenReturn(null);
+
+        Map<String, Audience> audienceIdMapping = new HashMap<>();
+        audienceIdMapping.put("1", new Audience("1", "audience", audienceCondition));
+        audienceIdMapping.put("2", new Audience("2", "null audience", nullAudienceCondition));
+        ProjectConfig projectConfig = mock(ProjectConfig.class);
+        when(projectConfig.getAudienceIdMapping()).thenReturn(audienceIdMapping);
+
+        DecisionAttributes decisionAttributes = new DecisionAttributes("userId", testUserAttributes);
+        AudienceIdCondition firstRule = new AudienceIdCondition("1");
+        AudienceIdCondition secondRule = new AudienceIdCondition("1");
+        AudienceIdCondition nullRule = new AudienceIdCondition("2");
+
+        assertTrue(firstRule.evaluate(projectConfig, decisionAttributes));
+        assertTrue(secondRule.evaluate(projectConfig, decisionAttributes));
+        assertNull(nullRule.evaluate(projectConfig, decisionAttributes));
+        assertNull(nullRule.evaluate(projectConfig, decisionAttributes));
+        verify(audienceCondition, times(1)).evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class));
+        verify(nullAudienceCondition, times(1)).evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class));
+
+        // plain attribute maps are not cached
+        assertTrue(firstRule.evaluate(projectConfig, testUserAttributes));
+        assertTrue(firstRule.evaluate(projectConfig, testUserAttributes));
+        verify(audienceCondition, times(3)).evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class));
+    }
+
+    /**
+     * Verify that {@link UserAttribute#compile()} returns a condition that evaluates and logs like the user attribute.
+     */
+    @Test
+    public void compiledUserAttributeEvaluatesLikeUserAttribute() {
+        UserAttribute<?> userAttribute = new UserAttribute("num_size", "custom_attribute", "gt", 2);
+        Condition<?> compiled = userAttribute.compile();
+
+        assertTrue(compiled instanceof CompiledUserAttribute);
+        assertEquals(userAttribute.toString(), compiled.toString());
+        assertTrue(compiled.evaluate(null, testTypedUserAttributes));
+        assertFalse(compiled.evaluate(null, Collections.singletonMap("num_size", 1)));
+        assertNull(compiled.evaluate(null, null));
+        logbackVerifier.expectMessage(Level.DEBUG,
+            "Audience condition \"{name='num_size', type='custom_attribute', match='gt', value=2}\" evaluated to UNKNOWN because no value was passed for user attribute \"num_size\"");
+        assertNull(compiled.evaluate(null, Collections.singletonMap("num_size", "3")));
+        logbackVerifier.expectMessage(Level.WARN,
+            "Audience condition \"{name='num_size', type='custom_attribute', match='gt', value=2}\" evaluated to UNKNOWN because a value of type \"java.lang.String\" was passed for user attribute \"num_size\"");
+    }
+
+    /**
+     * Verify that {@link UserAttribute#compile()} leaves conditions with an unknown type or match as they are.
+     */
+    @Test
+    public void userAttributeWithUnknownTypeOrMatchIsNotCompiled() {
+        UserAttribute<?> unknownType = new UserAttribute("browser_type", "unknown_dimension", null, "chrome");
+        UserAttribute<?> unknownMatch = new UserAttribute("browser_type", "custom_attribute", "blah", "chrome");
+
+        assertSame(unknownType, unknownType.compile());
+        assertSame(unknownMatch, unknownMatch.compile());
+    }
 }
@@ -0,0 +1,155 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConditionOptimizerTest {
+
+    private static final UserAttribute EXISTS = new UserAttribute("a", "custom_attribute", "exists", null);
+    private static final UserAttribute EXACT = new UserAttribute("b", "custom_attribute", "exact", "x");
+    private static final UserAttribute SUBSTRING = new UserAttribute("b", "custom_attribute", "substring", "x");
+    private static final UserAttribute SEMVER = new UserAttribute("c", "custom_attribute", "semver_ge", "1.2.3");
+
+    @Test
+    public void orderByCost() {
+        Condition condition = ConditionOptimizer.optimize(new OrCondition(Arrays.asList(SEMVER, SUBSTRING, EXACT, EXISTS)));
+
+        assertEquals(new OrCondition(Arrays.asList(EXISTS, EXACT, SUBSTRING, SEMVER)), condition);
+    }
+
+    @Test
+    public void keepOrderOfSameCost() {
+        UserAttribute otherExact = new UserAttribute("d", "custom_attribute", "exact", "y");
+        Condition condition = ConditionOptimizer.optimize(new AndCondition(Arrays.asList(SEMVER, otherExact, EXACT)));
+
+        assertEquals(new AndCondition(Arrays.asList(otherExact, EXACT, SEMVER)), condition);
+    }
+
+    @Test
+    public void orderAudiencesByTheCostOfTheirConditions() {
+        ResolvedAudienceCondition semverAudience = new ResolvedAudienceCondition("1", null, SEMVER);
+        ResolvedAudienceCondition existsAudience = new ResolvedAudienceCondition("2", null, EXISTS);
+        Condition condition = ConditionOptimizer.optimize(new OrCondition(Arrays.asList(semverAudience, existsAudience)));
+
+        assertEquals(new OrCondition(Arrays.asList(existsAudience, semverAudience)), condition);
+    }
+
+    @Test
+    public void foldConstants() {
+        assertSame(EXACT, ConditionOptimizer.optimize(new AndCondition(Arrays.asList(new EmptyCondition(), EXACT))));
+        assertSame(EXACT, ConditionOptimizer.optimize(new OrCondition(Arrays.asList(new OrCondition(Collections.emptyList()), EXACT))));
+        assertTrue(ConditionOptimizer.optimize(new OrCondition(Arrays.asList(EXACT, new EmptyCondition()))) instanceof EmptyCondition);
+        assertTrue(ConditionOptimizer.optimize(new AndCondition(Arrays.asList(new NullCondition(), new EmptyCondition()))) instanceof NullCondition);
+        assertSame(EXACT, ConditionOptimizer.optimize(new NotCondition(new NotCondition(EXACT))));
+        assertTrue(ConditionOptimizer.optimize(new NotCondition(new OrCondition(Collections.emptyList()))) instanceof EmptyCondition);
+
+        Condition alwaysFalse = ConditionOptimizer.optimize(new AndCondition(Arrays.asList(EXACT, new NotCondition(new EmptyCondition()))));
+        assertFalse(alwaysFalse.evaluate(null, Collections.singletonMap("b", "x")));
+    }
+
+    @Test
+    public void keepNullLast() {
+        Condition condition = ConditionOptimizer.optimize(new AndCondition(Arrays.asList(new NullCondition(), SEMVER, new NullCondition(), EXISTS)));
+
+        List<Condition> conditions = ((AndCondition<?>) condition).getConditions();
+        assertEquals(3, conditions.size());
+        assertSame(EXISTS, conditions.get(0));
+        assertSame(SEMVER, conditions.get(1));
+        assertTrue(conditions.get(2) instanceof NullCondition);
+    }
+
+    @Test
+    public void keepConditionsWithoutChildren() {
+        AndCondition andCondition = new AndCondition(null);
+        NotCondition notCondition = new NotCondition(null);
+
+        assertSame(andCondition, ConditionOptimizer.optimize(andCondition));
+        assertSame(notCondition, ConditionOptimizer.optimize(notCondition));
+        assertNull(ConditionOptimizer.optimize(new OrCondition(Arrays.asList(andCondition, notCondition))).evaluate(null, null));
+    }
+
+    /**
+     * Optimized random trees evaluate to the same result as the trees they were optimized from.
+     */
+    @Test
+    public void optimizedTreesEvaluateTheSame() {
+        Random random = new Random(7);
+        List<Map<String, Object>> attributes = new ArrayList<>();
+        for (Object a : Arrays.asList(null, 1)) {
+            for (Object b : Arrays.asList(null, "x", "xy", 2)) {
+                for (Object c : Arrays.asList(null, "1.2.2", "1.2.3", "bad version")) {
+                    Map<String, Object> attributeMap = new HashMap<>();
+                    attributeMap.put("a", a);
+                    attributeMap.put("b", b);
+                    attributeMap.put("c", c);
+                    attributes.add(attributeMap);
+                }
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Condition condition = randomCondition(random, 4);
+            Condition optimized = ConditionOptimizer.optimize(condition);
+            for (Map<String, Object> attributeMap : attributes) {
+                assertEquals(condition + " with " + attributeMap,
+                    condition.evaluate(null, attributeMap), optimized.evaluate(null, attributeMap));
+            }
+        }
+    }
+
+    private static Condition randomCondition(Random random, int depth) {
+        int type = random.nextInt(depth > 0 ? 9 : 6);
+        switch (type) {
+            case 0:
+                return new EmptyCondition();
+            case 1:
+                return new NullCondition();
+            case 2:
+                return EXISTS;
+            case 3:
+                return EXACT.compile();
+            case 4:
+                return SUBSTRING;
+            case 5:
+                return SEMVER.compile();
+            case 6:
+                return new NotCondition(randomCondition(random, depth - 1));
+            default:
+                List<Condition> conditions = new ArrayList<>();
+                int size = random.nextInt(4);
+                for (int i = 0; i < size; i++) {
+                    conditions.add(randomCondition(random, depth - 1));
+                }
+                return type == 7 ? new AndCondition(conditions) : new OrCondition(conditions);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience;
+
+import com.optimizely.ab.config.ProjectConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RequiredAttributesConditionTest {
+
+    private static final Condition EXISTS = new UserAttribute("a", "custom_attribute", "exists", null).compile();
+    private static final Condition EXACT = new UserAttribute("b", "custom_attribute", "exact", "x").compile();
+    private static final Condition SEMVER = new UserAttribute("c", "custom_attribute", "semver_ge", "1.2.3").compile();
+
+    @Test
+    public void guardUserAttribute() {
+        Condition condition = RequiredAttributesCondition.guard(EXACT);
+
+        assertTrue(condition instanceof RequiredAttributesCondition);
+        assertEquals(Collections.singleton("b"), ((RequiredAttributesCondition<?>) condition).getAttributeNames());
+        assertEquals(EXACT.toString(), condition.toString());
+        assertNull(condition.evaluate(null, Collections.singletonMap("c", "x")));
+        assertNull(condition.evaluate(null, null));
+        assertTrue(condition.evaluate(null, Collections.singletonMap("b", "x")));
+    }
+
+    @Test
+    public void skipConditionWhenAttributeIsMissing() {
+        Condition other = mock(Condition.class);
+        when(other.evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class))).thenReturn(true);
+        Condition condition = RequiredAttributesCondition.guard(new AndCondition(Arrays.asList(EXISTS, other)));
+
+        assertEquals(Collections.singleton("a"), ((RequiredAttributesCondition<?>) condition).getAttributeNames());
+        assertFalse(condition.evaluate(null, Collections.singletonMap("b", "x")));
+        verify(other, never()).evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class));
+
+        assertTrue(condition.evaluate(null, Collections.singletonMap("a", 1)));
+        verify(other, times(1)).evaluate(any(ProjectConfig.class), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void combineAttributesOfChildren() {
+        // a missing 'b' makes EXACT null, which only decides the 'and' together with the other children
+        assertEquals(Collections.singleton("a"),
+            requiredAttributes(new AndCondition(Arrays.asList(EXISTS, EXACT))));
+        assertEquals(Collections.singleton("b"),
+            requiredAttributes(new AndCondition(Arrays.asList(EXACT, new NotCondition(EXACT)))));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")),
+            requiredAttributes(new AndCondition(Arrays.asList(EXISTS, EXACT,
+                new UserAttribute("b", "custom_attribute", "exists", null).compile()))));
+        // 'or' needs every child to be decided by the attribute
+        assertEquals(Collections.emptySet(),
+            requiredAttributes(new OrCondition(Arrays.asList(EXISTS, EXACT))));
+        assertEquals(Collections.singleton("b"),
+            requiredAttributes(new OrCondition(Arrays.asList(EXACT, new NotCondition(EXACT)))));
+        assertEquals(Collections.singleton("a"),
+            requiredAttributes(new NotCondition(EXISTS)));
+        assertEquals(Collections.singleton("a"),
+            requiredAttributes(new ResolvedAudienceCondition("1", null, RequiredAttributesCondition.guard(EXISTS))));
+    }
+
+    @Test
+    public void keepConditionsThatCannotBeGuarded() {
+        Condition unsupportedValue = new UserAttribute("b", "custom_attribute", "exact", Collections.emptyList()).compile();
+        Condition unknownMatch = new UserAttribute("b", "custom_attribute", "unknown", "x").compile();
+        Condition mock = mock(Condition.class);
+
+        assertSame(unsupportedValue, RequiredAttributesCondition.guard(unsupportedValue));
+        assertSame(unknownMatch, RequiredAttributesCondition.guard(unknownMatch));
+        assertSame(mock, RequiredAttributesCondition.guard(mock));
+    }
+
+    /**
+     * Guarded random trees evaluate to the same result as the trees they guard.
+     */
+    @Test
+    public void guardedTreesEvaluateTheSame() {
+        Random random = new Random(11);
+        List<Map<String, Object>> attributes = new ArrayList<>();
+        for (Object a : Arrays.asList(null, 1, "missing")) {
+            for (Object b : Arrays.asList(null, "x", 2, "missing")) {
+                for (Object c : Arrays.asList("1.2.3", "bad version", "missing")) {
+                    Map<String, Object> attributeMap = new HashMap<>();
+                    putUnlessMissing(attributeMap, "a", a);
+                    putUnlessMissing(attributeMap, "b", b);
+                    putUnlessMissing(attributeMap, "c", c);
+                    attributes.add(attributeMap);
+                }
+            }
+        }
+
+        int guarded = 0;
+        for (int i = 0; i < 500; i++) {
+            Condition condition = randomCondition(random, 4);
+            Condition guardedCondition = RequiredAttributesCondition.guard(condition);
+            if (guardedCondition != condition) {
+                guarded++;
+            }
+            for (Map<String, Object> attributeMap : attributes) {
+                assertEquals(condition + " with " + attributeMap,
+                    condition.evaluate(null, attributeMap), guardedCondition.evaluate(null, attributeMap));
+            }
+        }
+        assertTrue(guarded > 0);
+    }
+
+    private static Set<String> requiredAttributes(Condition condition) {
+        Condition guarded = RequiredAttributesCondition.guard(condition);
+        return guarded instanceof RequiredAttributesCondition ?
+            ((RequiredAttributesCondition<?>) guarded).getAttributeNames() : Collections.<String>emptySet();
+    }
+
+    private static void putUnlessMissing(Map<String, Object> attributes, String name, Object value) {
+        if (!"missing".equals(value)) {
+            attributes.put(name, value);
+        }
+    }
+
+    private static Condition randomCondition(Random random, int depth) {
+        int type = random.nextInt(depth > 0 ? 8 : 5);
+        switch (type) {
+            case 0:
+                return new EmptyCondition();
+            case 1:
+                return new NullCondition();
+            case 2:
+                return EXISTS;
+            case 3:
+                return EXACT;
+            case 4:
+                return SEMVER;
+            case 5:
+                return new NotCondition(randomCondition(random, depth - 1));
+            default:
+                List<Condition> conditions = new ArrayList<>();
+                int size = random.nextInt(4);
+                for (int i = 0; i < size; i++) {
+                    conditions.add(randomCondition(random, depth - 1));
+                }
+                return type == 6 ? new AndCondition(conditions) : new OrCondition(conditions);
+        }
+    }
+}
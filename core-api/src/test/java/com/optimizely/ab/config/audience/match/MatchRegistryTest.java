@@ -18,6 +18,11 @@ package com.optimizely.ab.config.audience.match;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
 import static com.optimizely.ab.config.audience.match.MatchRegistry.*;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.*;
@@ -58,4 +63,46 @@ public class MatchRegistryTest {
         MatchRegistry.register("test-matcher", new TestMatcher());
         assertThat(MatchRegistry.getMatch("test-matcher"), instanceOf(TestMatcher.class));
     }
+
+    @Test
+    public void testCompileDefaultsToEval() throws Exception {
+        Match match = (conditionValue, attributeValue) -> conditionValue.equals(attributeValue) ? true : null;
+        CompiledMatch compiledMatch = match.compile("value");
+
+        assertTrue(compiledMatch.eval("value"));
+        assertNull(compiledMatch.eval("other"));
+    }
+
+    @Test
+    public void testCompiledMatchersAgreeWithEval() throws Exception {
+        List<String> names = Arrays.asList(EXACT, EXISTS, GREATER_THAN, GREATER_THAN_EQ, LEGACY, LESS_THAN, LESS_THAN_EQ,
+            SEMVER_EQ, SEMVER_GE, SEMVER_GT, SEMVER_LE, SEMVER_LT, SUBSTRING);
+        List<Object> values = Arrays.asList(null, "", "a", "abc", "2.0", "2.0.1", "2.0.0-beta", "2.0.0+build", "2 .0",
+            true, false, 0, 1, 2L, 1.0, 2.5, 2.5f, Math.pow(2, 54), Double.NaN, Double.POSITIVE_INFINITY,
+            Collections.emptyList());
+
+        for (String name : names) {
+            Match match = MatchRegistry.getMatch(name);
+            for (Object conditionValue : values) {
+                CompiledMatch compiledMatch = match.compile(conditionValue);
+                for (Object attributeValue : values) {
+                    String expected = evalResult(() -> match.eval(conditionValue, attributeValue));
+                    String actual = evalResult(() -> compiledMatch.eval(attributeValue));
+                    assertEquals(name + " " + conditionValue + " " + attributeValue, expected, actual);
+                }
+            }
+        }
+    }
+
+    private interface Evaluation {
+        Boolean eval() throws Exception;
+    }
+
+    private static String evalResult(Evaluation evaluation) {
+        try {
+            return Objects.toString(evaluation.eval());
+        } catch (Exception e) {
+            return e.getClass().getSimpleName();
+        }
+    }
 }
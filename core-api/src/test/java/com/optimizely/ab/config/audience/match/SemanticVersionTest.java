@@ -20,6 +20,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.Random;
+
+import static com.optimizely.ab.internal.AttributesUtil.parseNumeric;
 import static org.junit.Assert.*;
 
 public class SemanticVersionTest {
@@ -165,4 +168,111 @@ public class SemanticVersionTest {
         assertTrue(SemanticVersion.compare("3.7.1-prerelease-prerelease+rc", "3.7.1-prerelease+build") > 0);
         assertTrue(SemanticVersion.compare("3.7.1-beta.2", "3.7.1-beta.1") > 0);
     }
+
+    @Test
+    public void testCompareReusesTargetedVersion() throws Exception {
+        SemanticVersion targetedVersion = new SemanticVersion("3.7.1-beta");
+        assertTrue(new SemanticVersion("3.7.1").compare(targetedVersion) > 0);
+        assertTrue(new SemanticVersion("3.7.1-alpha").compare(targetedVersion) < 0);
+        assertEquals(0, new SemanticVersion("3.7.1-beta").compare(targetedVersion));
+        assertTrue(new SemanticVersion("3.7.0+build").compare(targetedVersion) < 0);
+    }
+
+    @Test
+    public void testCompareWithEmptyTargetedVersion() throws Exception {
+        assertEquals(0, new SemanticVersion("not a version").compare(new SemanticVersion("")));
+        assertEquals(0, new SemanticVersion("3.7.1").compare(null));
+    }
+
+    @Test
+    public void testCompareInvalidUserVersion() throws Exception {
+        SemanticVersion targetedVersion = new SemanticVersion("3.7.1");
+        for (String userVersion : new String[]{"", "3.7.1.2", "3.7.", ".7.1", "3 .7", "3.7.1+a+b", "a.7.1", "-beta+1", "99999999999"}) {
+            try {
+                new SemanticVersion(userVersion).compare(targetedVersion);
+                fail(userVersion + " is not a valid semantic version");
+            } catch (Exception e) {
+                assertEquals("Invalid Semantic Version.", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testCompareInvalidTargetedVersion() throws Exception {
+        thrown.expect(UnexpectedValueTypeException.class);
+        SemanticVersion.compare("3.7.1", "3.7.1.2");
+    }
+
+    /**
+     * Compare random versions with a reference comparison that splits both versions with
+     * {@link SemanticVersion#splitSemanticVersion()}.
+     */
+    @Test
+    public void testCompareAgreesWithSplitVersions() {
+        Random random = new Random(42);
+        String alphabet = "0123456789..--+ab ";
+        String[] versions = new String[2000];
+        for (int i = 0; i < versions.length; i++) {
+            StringBuilder version = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                version.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            versions[i] = version.toString();
+        }
+
+        for (int i = 0; i + 1 < versions.length; i += 2) {
+            for (String[] pair : new String[][]{{versions[i], versions[i + 1]}, {versions[i], versions[i]},
+                {versions[i], "1.2.3"}, {"1.2.3-beta", versions[i]}}) {
+                String expected;
+                try {
+                    expected = Integer.toString(Integer.signum(splitCompare(pair[0], pair[1])));
+                } catch (Exception e) {
+                    expected = "invalid";
+                }
+                String actual;
+                try {
+                    actual = Integer.toString(Integer.signum(new SemanticVersion(pair[0]).compare(new SemanticVersion(pair[1]))));
+                } catch (Exception e) {
+                    actual = "invalid";
+                }
+                assertEquals("'" + pair[0] + "' to '" + pair[1] + "'", expected, actual);
+            }
+        }
+    }
+
+    private static int splitCompare(String userVersion, String targetedVersion) throws Exception {
+        if (targetedVersion.isEmpty()) {
+            return 0;
+        }
+        SemanticVersion user = new SemanticVersion(userVersion);
+        SemanticVersion targeted = new SemanticVersion(targetedVersion);
+        String[] targetedVersionParts = targeted.splitSemanticVersion();
+        String[] userVersionParts = user.splitSemanticVersion();
+
+        for (int index = 0; index < targetedVersionParts.length; index++) {
+            if (userVersionParts.length <= index) {
+                return targeted.isPreRelease() ? 1 : -1;
+            }
+            Integer targetVersionPartInt = parseNumeric(targetedVersionParts[index]);
+            Integer userVersionPartInt = parseNumeric(userVersionParts[index]);
+
+            if (userVersionPartInt == null) {
+                int result = userVersionParts[index].compareTo(targetedVersionParts[index]);
+                if (result < 0) {
+                    return targeted.isPreRelease() && !user.isPreRelease() ? 1 : -1;
+                } else if (result > 0) {
+                    return !targeted.isPreRelease() && user.isPreRelease() ? -1 : 1;
+                }
+            } else if (targetVersionPartInt != null) {
+                if (!userVersionPartInt.equals(targetVersionPartInt)) {
+                    return userVersionPartInt < targetVersionPartInt ? -1 : 1;
+                }
+            } else {
+                return -1;
+            }
+        }
+
+        return !targeted.isPreRelease() && user.isPreRelease() ? -1 : 0;
+    }
 }
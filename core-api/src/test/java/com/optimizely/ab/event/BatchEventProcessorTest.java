@@ -19,16 +19,22 @@ package com.optimizely.ab.event;
 import com.optimizely.ab.EventHandlerRule;
 import com.optimizely.ab.config.ProjectConfig;
 import com.optimizely.ab.event.internal.*;
+import com.optimizely.ab.event.internal.payload.Visitor;
 import com.optimizely.ab.notification.NotificationCenter;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -52,6 +58,9 @@ public class BatchEventProcessorTest {
     @Rule
     public EventHandlerRule eventHandlerRule = new EventHandlerRule();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private BlockingQueue<Object> eventQueue;
     private BatchEventProcessor eventProcessor;
     private NotificationCenter notificationCenter;
@@ -83,6 +92,24 @@ public class BatchEventProcessorTest {
         eventHandlerRule.expectConversion(EVENT_NAME, USER_ID);
     }
 
+    @Test
+    public void testVirtualThreads() throws Exception {
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withFlushInterval(MAX_DURATION_MS)
+            .withEventHandler(eventHandlerRule)
+            .withVirtualThreads(true)
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        // falls back to platform threads on runtimes without virtual threads
+        eventProcessor.process(buildConversionEvent(EVENT_NAME));
+        eventProcessor.close();
+
+        assertEquals(0, eventQueue.size());
+        eventHandlerRule.expectConversion(EVENT_NAME, USER_ID);
+    }
+
     @Test
     public void testFlushMaxBatchSize() throws Exception {
         CountDownLatch countDownLatch = new CountDownLatch(1);
@@ -130,6 +157,31 @@ public class BatchEventProcessorTest {
         eventHandlerRule.expectCalls(1);
     }
 
+    @Test
+    public void testFlushMaxBatchSizeWithRingBuffer() throws Exception {
+        eventQueue = new RingBufferBlockingQueue<>(100, RingBufferBlockingQueue.WaitStrategy.PARK);
+        CountDownLatch countDownLatch = new CountDownLatch(2);
+        setEventProcessor(logEvent -> {
+            assertEquals(MAX_BATCH_SIZE, logEvent.getEventBatch().getVisitors().size());
+            eventHandlerRule.dispatchEvent(logEvent);
+            countDownLatch.countDown();
+        });
+
+        for (int i = 0; i < MAX_BATCH_SIZE * 2; i++) {
+            String eventName = EVENT_NAME + i;
+            UserEvent userEvent = buildConversionEvent(eventName);
+            eventProcessor.process(userEvent);
+            eventHandlerRule.expectConversion(eventName, USER_ID);
+        }
+
+        if (!countDownLatch.await(MAX_DURATION_MS * 3, TimeUnit.MILLISECONDS)) {
+            fail("Exceeded timeout waiting for events to flush.");
+        }
+
+        assertEquals(0, eventQueue.size());
+        eventHandlerRule.expectCalls(2);
+    }
+
     @Test
     public void testFlush() throws Exception {
         setEventProcessor(logEvent -> eventHandlerRule.dispatchEvent(logEvent));
@@ -292,6 +344,364 @@ public class BatchEventProcessorTest {
         assertEquals(eventProcessor.timeoutMillis, BatchEventProcessor.DEFAULT_TIMEOUT_INTERVAL);
     }
 
+    @Test
+    public void testFlushOnMaxPayloadBytes() throws Exception {
+        UserEvent sample = buildConversionEvent(EVENT_NAME);
+        long maxPayloadBytes = EventFactory.estimateBatchSize(sample) + 3L * EventFactory.estimateSize(sample);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        CountDownLatch countDownLatch = new CountDownLatch(2);
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withBatchSize(MAX_BATCH_SIZE)
+            .withMaxPayloadBytes(maxPayloadBytes)
+            .withFlushInterval(MAX_DURATION_MS)
+            .withEventHandler(logEvent -> {
+                batchSizes.add(logEvent.getEventBatch().getVisitors().size());
+                countDownLatch.countDown();
+            })
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        for (int i = 0; i < 6; i++) {
+            eventProcessor.process(buildConversionEvent(EVENT_NAME));
+        }
+
+        if (!countDownLatch.await(MAX_DURATION_MS / 2, TimeUnit.MILLISECONDS)) {
+            fail("Exceeded timeout waiting for events to flush.");
+        }
+
+        assertEquals(Arrays.asList(3, 3), batchSizes);
+    }
+
+    @Test
+    public void testAdaptiveBatchSize() throws Exception {
+        long flushInterval = 100;
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withBatchSize(2)
+            .withMaxBatchSize(8)
+            .withFlushInterval(flushInterval)
+            .withEventHandler(logEvent -> batchSizes.add(logEvent.getEventBatch().getVisitors().size()))
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        // full batches grow the batch size
+        for (int i = 0; i < 2 + 4 + 8; i++) {
+            eventProcessor.process(buildConversionEvent(EVENT_NAME));
+        }
+        awaitBatches(batchSizes, 3);
+        assertEquals(Arrays.asList(2, 4, 8), batchSizes);
+
+        // idle flush intervals shrink it back
+        Thread.sleep(flushInterval * 4);
+        batchSizes.clear();
+        for (int i = 0; i < 3; i++) {
+            eventProcessor.process(buildConversionEvent(EVENT_NAME));
+        }
+        awaitBatches(batchSizes, 2);
+        assertEquals(Arrays.asList(2, 1), batchSizes);
+    }
+
+    private static void awaitBatches(List<Integer> batchSizes, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + MAX_DURATION_MS;
+        while (batchSizes.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Exceeded timeout waiting for events to flush.");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitEmpty(EventSpool eventSpool) throws InterruptedException {
+        // a spooled event is removed after dispatchEvent returns
+        long deadline = System.currentTimeMillis() + MAX_DURATION_MS;
+        while (!eventSpool.isEmpty()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Exceeded timeout waiting for the spool to empty.");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testInvalidMaxBatchSizeUsesBatchSize() {
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withBatchSize(MAX_BATCH_SIZE)
+            .withMaxBatchSize(1)
+            .withMaxPayloadBytes(-1L)
+            .withEventHandler(new NoopEventHandler())
+            .build();
+
+        assertEquals(MAX_BATCH_SIZE, eventProcessor.maxBatchSize);
+        assertEquals(BatchEventProcessor.DEFAULT_MAX_PAYLOAD_BYTES, eventProcessor.maxPayloadBytes);
+    }
+
+    @Test
+    public void testSpoolWhenQueueIsFull() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        CountDownLatch countDownLatch = new CountDownLatch(3);
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(new ArrayBlockingQueue<>(1))
+            .withBatchSize(MAX_BATCH_SIZE)
+            .withFlushInterval(MAX_DURATION_MS)
+            .withEventHandler(logEvent -> countDownLatch.countDown())
+            .withEventSpool(eventSpool)
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build(false);
+
+        for (int i = 0; i < 3; i++) {
+            eventProcessor.process(buildConversionEvent(EVENT_NAME + i));
+        }
+        assertEquals(2, eventSpool.size());
+        assertEquals(2, eventProcessor.getOverflowPolicy().getSpilledCount());
+
+        // the spooled events are dispatched after the queued one
+        eventProcessor.start();
+        eventProcessor.flush();
+        if (!countDownLatch.await(MAX_DURATION_MS * 3, TimeUnit.MILLISECONDS)) {
+            fail("Exceeded timeout waiting for spooled events to dispatch.");
+        }
+        awaitEmpty(eventSpool);
+        eventSpool.close();
+    }
+
+    @Test
+    public void testOverflowPolicy() throws Exception {
+        BlockingQueue<Object> eventQueue = new ArrayBlockingQueue<>(2);
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withEventHandler(logEvent -> {})
+            .withOverflowPolicy(OverflowPolicy.dropOldest())
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build(false);
+
+        eventProcessor.process(buildConversionEvent(EVENT_NAME + 0));
+        eventProcessor.flush();
+        eventProcessor.process(buildConversionEvent(EVENT_NAME + 1));
+        // the flush signal at the head of the queue is not dropped
+        eventProcessor.process(buildConversionEvent(EVENT_NAME + 2));
+
+        assertEquals(2, eventQueue.size());
+        eventQueue.poll();
+        assertEquals(EVENT_NAME + 1, ((ConversionEvent) eventQueue.poll()).getEventKey());
+        assertEquals(2, eventProcessor.getOverflowPolicy().getOverflowCount());
+        assertEquals(2, eventProcessor.getOverflowPolicy().getDroppedCount());
+    }
+
+    @Test
+    public void testSpoolOnCloseTimeout() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch dispatchStarted = new CountDownLatch(1);
+        AtomicInteger dispatchCount = new AtomicInteger();
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withBatchSize(1)
+            .withFlushInterval(MAX_DURATION_MS)
+            .withEventHandler(logEvent -> {
+                dispatchCount.incrementAndGet();
+                dispatchStarted.countDown();
+                Thread.sleep(TIMEOUT_MS * 10);
+            })
+            .withExecutor(executor)
+            .withEventSpool(eventSpool)
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        eventProcessor.process(buildConversionEvent(EVENT_NAME + 0));
+        assertTrue(dispatchStarted.await(MAX_DURATION_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i < 4; i++) {
+            eventProcessor.process(buildConversionEvent(EVENT_NAME + i));
+        }
+        eventProcessor.close();
+
+        // the consumer spools the interrupted batch and its queue, then exits
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(MAX_DURATION_MS, TimeUnit.MILLISECONDS));
+        assertEquals(1, dispatchCount.get());
+        assertEquals(4, eventSpool.size());
+        assertTrue(eventQueue.isEmpty());
+        eventSpool.close();
+    }
+
+    @Test
+    public void testSpoolClosedRightAfterCloseTimeout() throws Exception {
+        File spoolDirectory = temporaryFolder.newFolder("spool");
+        EventSpool eventSpool = new EventSpool(spoolDirectory);
+        CountDownLatch dispatchStarted = new CountDownLatch(1);
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withBatchSize(1)
+            .withFlushInterval(MAX_DURATION_MS)
+            .withEventHandler(logEvent -> {
+                dispatchStarted.countDown();
+                Thread.sleep(TIMEOUT_MS * 10);
+            })
+            .withEventSpool(eventSpool)
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        eventProcessor.process(buildConversionEvent(EVENT_NAME + 0));
+        assertTrue(dispatchStarted.await(MAX_DURATION_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i < 4; i++) {
+            eventProcessor.process(buildConversionEvent(EVENT_NAME + i));
+        }
+
+        // close returns once the consumer has spooled, so the spool can be closed right away
+        eventProcessor.close();
+        eventSpool.close();
+
+        EventSpool reopenedSpool = new EventSpool(spoolDirectory);
+        assertEquals(4, reopenedSpool.size());
+        reopenedSpool.close();
+    }
+
+    @Test
+    public void testSpoolFailedBatch() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        AtomicInteger dispatchCount = new AtomicInteger();
+        CountDownLatch countDownLatch = new CountDownLatch(2);
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withBatchSize(1)
+            .withFlushInterval(MAX_DURATION_MS)
+            .withEventHandler(logEvent -> {
+                if (dispatchCount.incrementAndGet() == 1) {
+                    throw new IllegalStateException("endpoint unavailable");
+                }
+                countDownLatch.countDown();
+            })
+            .withEventSpool(eventSpool)
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        eventProcessor.process(buildConversionEvent(EVENT_NAME + 0));
+        eventProcessor.process(buildConversionEvent(EVENT_NAME + 1));
+
+        if (!countDownLatch.await(MAX_DURATION_MS * 3, TimeUnit.MILLISECONDS)) {
+            fail("Exceeded timeout waiting for spooled events to dispatch.");
+        }
+        assertEquals(3, dispatchCount.get());
+        awaitEmpty(eventSpool);
+        eventSpool.close();
+    }
+
+    @Test
+    public void testShardedFlushKeepsVisitorOnOneShard() throws Exception {
+        int shardCount = 4;
+        int visitorCount = 20;
+        int eventsPerVisitor = 5;
+        Map<String, String> visitorThreads = new ConcurrentHashMap<>();
+        AtomicInteger visitorMismatches = new AtomicInteger();
+        CountDownLatch countDownLatch = new CountDownLatch(visitorCount * eventsPerVisitor);
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueueSupplier(() -> new RingBufferBlockingQueue<>(100, RingBufferBlockingQueue.WaitStrategy.PARK))
+            .withShardCount(shardCount)
+            .withBatchSize(MAX_BATCH_SIZE)
+            .withFlushInterval(MAX_DURATION_MS)
+            .withEventHandler(logEvent -> {
+                for (Visitor visitor : logEvent.getEventBatch().getVisitors()) {
+                    String thread = Thread.currentThread().getName();
+                    String previous = visitorThreads.putIfAbsent(visitor.getVisitorId(), thread);
+                    if (previous != null && !previous.equals(thread)) {
+                        visitorMismatches.incrementAndGet();
+                    }
+                    countDownLatch.countDown();
+                }
+            })
+            .withNotificationCenter(notificationCenter)
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        for (int i = 0; i < eventsPerVisitor; i++) {
+            for (int v = 0; v < visitorCount; v++) {
+                eventProcessor.process(UserEventFactory.createConversionEvent(projectConfig, USER_ID + v, EVENT_ID, EVENT_NAME,
+                    Collections.emptyMap(), Collections.emptyMap()));
+            }
+        }
+        eventProcessor.flush();
+
+        if (!countDownLatch.await(MAX_DURATION_MS * 3, TimeUnit.MILLISECONDS)) {
+            fail("Exceeded timeout waiting for events to flush.");
+        }
+
+        assertEquals(visitorCount, visitorThreads.size());
+        assertEquals(0, visitorMismatches.get());
+    }
+
+    @Test
+    public void testShardByProducerThread() throws Exception {
+        eventProcessor = BatchEventProcessor.builder()
+            .withShardCount(3)
+            .withShardRouting(BatchEventProcessor.ShardRouting.PRODUCER_THREAD)
+            .withEventHandler(new NoopEventHandler())
+            .build();
+
+        UserEvent first = buildConversionEvent(EVENT_NAME);
+        UserEvent second = UserEventFactory.createConversionEvent(projectConfig, "otherUser", EVENT_ID, EVENT_NAME,
+            Collections.emptyMap(), Collections.emptyMap());
+        assertEquals(eventProcessor.shard(first), eventProcessor.shard(second));
+    }
+
+    @Test
+    public void testSingleShardUsesFirstQueue() {
+        setEventProcessor(new NoopEventHandler());
+        assertEquals(0, eventProcessor.shard(buildConversionEvent(EVENT_NAME)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSharedEventQueueWithShards() {
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withShardCount(2)
+            .withEventHandler(new NoopEventHandler())
+            .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleThreadExecutorWithShards() {
+        eventProcessor = BatchEventProcessor.builder()
+            .withShardCount(2)
+            .withExecutor(Executors.newSingleThreadExecutor())
+            .withEventHandler(new NoopEventHandler())
+            .build();
+    }
+
+    @Test
+    public void testExecutorWithShards() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CountDownLatch countDownLatch = new CountDownLatch(3);
+        eventProcessor = BatchEventProcessor.builder()
+            .withShardCount(3)
+            .withShardRouting(BatchEventProcessor.ShardRouting.VISITOR_ID)
+            .withBatchSize(1)
+            .withExecutor(executor)
+            .withEventHandler(logEvent -> countDownLatch.countDown())
+            .withTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        for (int v = 0; v < 3; v++) {
+            eventProcessor.process(UserEventFactory.createConversionEvent(projectConfig, USER_ID + v, EVENT_ID, EVENT_NAME,
+                Collections.emptyMap(), Collections.emptyMap()));
+        }
+        assertTrue(countDownLatch.await(MAX_DURATION_MS, TimeUnit.MILLISECONDS));
+        eventProcessor.close();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testInvalidShardCountUsesDefault() throws Exception {
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventQueue(eventQueue)
+            .withShardCount(0)
+            .withEventHandler(new NoopEventHandler())
+            .build();
+
+        assertEquals(0, eventProcessor.shard(buildConversionEvent(EVENT_NAME)));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testDefaultEventHandler() {
         eventProcessor = BatchEventProcessor.builder().build();
@@ -0,0 +1,224 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class EventSpoolTest {
+
+    private static final long SEGMENT_BYTES = 1024;
+    private static final long MAX_BYTES = SEGMENT_BYTES * 8;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private EventSpool eventSpool;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("spool");
+        eventSpool = new EventSpool(directory, SEGMENT_BYTES, MAX_BYTES);
+    }
+
+    @After
+    public void tearDown() {
+        eventSpool.close();
+    }
+
+    @Test
+    public void testAppendAndPollInOrder() {
+        assertNull(eventSpool.poll());
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(eventSpool.append(createLogEvent("revision" + i)));
+        }
+        assertEquals(20, eventSpool.size());
+
+        for (int i = 0; i < 20; i++) {
+            LogEvent logEvent = eventSpool.poll();
+            assertEquals(createLogEvent("revision" + i).getBody(), logEvent.getBody());
+            assertEquals(LogEvent.RequestMethod.POST, logEvent.getRequestMethod());
+            assertEquals("https://logx.optimizely.com/v1/events", logEvent.getEndpointUrl());
+            assertEquals(Collections.singletonMap("key", "value"), logEvent.getRequestParams());
+            assertNull(logEvent.getEventBatch());
+        }
+        assertNull(eventSpool.poll());
+        assertTrue(eventSpool.isEmpty());
+    }
+
+    @Test
+    public void testPeekDoesNotRemove() {
+        assertNull(eventSpool.peek());
+
+        assertTrue(eventSpool.append(createLogEvent("revision0")));
+        assertTrue(eventSpool.append(createLogEvent("revision1")));
+
+        EventSpool.SpooledEvent spooledEvent = eventSpool.peek();
+        assertEquals(createLogEvent("revision0").getBody(), spooledEvent.getLogEvent().getBody());
+        assertEquals(createLogEvent("revision0").getBody(), eventSpool.peek().getLogEvent().getBody());
+        assertEquals(2, eventSpool.size());
+
+        assertTrue(eventSpool.remove(spooledEvent));
+        assertFalse(eventSpool.remove(spooledEvent));
+        assertEquals(createLogEvent("revision1").getBody(), eventSpool.peek().getLogEvent().getBody());
+        assertEquals(1, eventSpool.size());
+    }
+
+    @Test
+    public void testRemoveAfterPollKeepsNextEvent() {
+        assertTrue(eventSpool.append(createLogEvent("revision0")));
+        assertTrue(eventSpool.append(createLogEvent("revision1")));
+
+        // another reader polls the peeked event before it is removed
+        EventSpool.SpooledEvent spooledEvent = eventSpool.peek();
+        assertEquals(createLogEvent("revision0").getBody(), eventSpool.poll().getBody());
+
+        assertFalse(eventSpool.remove(spooledEvent));
+        assertEquals(1, eventSpool.size());
+        assertEquals(createLogEvent("revision1").getBody(), eventSpool.poll().getBody());
+    }
+
+    @Test
+    public void testReadSegmentsAreDeleted() {
+        for (int i = 0; i < 20; i++) {
+            eventSpool.append(createLogEvent("revision" + i));
+        }
+        assertTrue(directory.list().length > 1);
+
+        while (eventSpool.poll() != null) {
+        }
+        assertEquals(1, directory.list().length);
+        assertEquals(SEGMENT_BYTES, eventSpool.getDiskBytes());
+    }
+
+    @Test
+    public void testDiskUsageIsBounded() {
+        int appended = 0;
+        while (eventSpool.append(createLogEvent("revision" + appended))) {
+            appended++;
+        }
+        assertTrue(appended > 0);
+        assertEquals(appended, eventSpool.size());
+        assertTrue(eventSpool.getDiskBytes() <= MAX_BYTES);
+
+        // reading frees the segments for new events
+        for (int i = 0; i < appended; i++) {
+            assertNotNull(eventSpool.poll());
+        }
+        assertTrue(eventSpool.append(createLogEvent("revision")));
+    }
+
+    @Test
+    public void testEventLargerThanSegment() {
+        StringBuilder revision = new StringBuilder();
+        for (int i = 0; i < SEGMENT_BYTES; i++) {
+            revision.append('r');
+        }
+        assertTrue(eventSpool.append(createLogEvent(revision.toString())));
+        assertEquals(createLogEvent(revision.toString()).getBody(), eventSpool.poll().getBody());
+    }
+
+    @Test
+    public void testRecoverUnreadEvents() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            eventSpool.append(createLogEvent("revision" + i));
+        }
+        for (int i = 0; i < 4; i++) {
+            eventSpool.poll();
+        }
+        eventSpool.close();
+
+        eventSpool = new EventSpool(directory, SEGMENT_BYTES, MAX_BYTES);
+        assertEquals(6, eventSpool.size());
+        for (int i = 4; i < 10; i++) {
+            assertEquals(createLogEvent("revision" + i).getBody(), eventSpool.poll().getBody());
+        }
+        assertNull(eventSpool.poll());
+
+        // appends continue after the recovered events
+        eventSpool.append(createLogEvent("revision10"));
+        assertEquals(createLogEvent("revision10").getBody(), eventSpool.poll().getBody());
+    }
+
+    @Test
+    public void testRecoverIgnoresTornRecord() throws Exception {
+        eventSpool.append(createLogEvent("revision0"));
+        eventSpool.append(createLogEvent("revision1"));
+        eventSpool.close();
+
+        // corrupt the last byte of the second record, as an interrupted write would
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            int secondRecord = 8 + 8 + readInt(file, 8);
+            long lastByte = secondRecord + 8 + readInt(file, secondRecord) - 1;
+            file.seek(lastByte);
+            int value = file.read();
+            file.seek(lastByte);
+            file.write(value ^ 0xff);
+        }
+
+        eventSpool = new EventSpool(directory, SEGMENT_BYTES, MAX_BYTES);
+        assertEquals(1, eventSpool.size());
+        assertEquals(createLogEvent("revision0").getBody(), eventSpool.poll().getBody());
+        assertNull(eventSpool.poll());
+
+        eventSpool.append(createLogEvent("revision2"));
+        assertEquals(createLogEvent("revision2").getBody(), eventSpool.poll().getBody());
+    }
+
+    @Test
+    public void testClosedSpoolRejectsEvents() {
+        eventSpool.append(createLogEvent("revision"));
+        eventSpool.close();
+
+        assertFalse(eventSpool.append(createLogEvent("revision")));
+        assertNull(eventSpool.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxBytes() throws Exception {
+        new EventSpool(directory, SEGMENT_BYTES, SEGMENT_BYTES - 1);
+    }
+
+    private static int readInt(RandomAccessFile file, long position) throws Exception {
+        file.seek(position);
+        return file.readInt();
+    }
+
+    private static LogEvent createLogEvent(String revision) {
+        EventBatch eventBatch = new EventBatch.Builder()
+            .setAccountId("accountId")
+            .setProjectId("projectId")
+            .setRevision(revision)
+            .setVisitors(Collections.emptyList())
+            .build();
+        return new LogEvent(LogEvent.RequestMethod.POST, "https://logx.optimizely.com/v1/events",
+            Collections.singletonMap("key", "value"), eventBatch);
+    }
+}
@@ -20,6 +20,7 @@ import com.optimizely.ab.event.internal.payload.EventBatch;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
 
@@ -59,6 +60,24 @@ public class LogEventTest {
         assertEquals("{}", logEvent.getBody());
     }
 
+    @Test
+    public void testGetBodyIsSerializedOnce() {
+        assertSame(logEvent.getBody(), logEvent.getBody());
+        assertSame(logEvent.getBodyBytes(), logEvent.getBodyBytes());
+    }
+
+    @Test
+    public void testGetBodyBytes() {
+        assertArrayEquals("{}".getBytes(StandardCharsets.UTF_8), logEvent.getBodyBytes());
+    }
+
+    @Test
+    public void testGetBodyWithoutEventBatch() {
+        LogEvent getEvent = new LogEvent(LogEvent.RequestMethod.GET, ENDPOINT_URL, REQUEST_PARAMS, null);
+        assertEquals("", getEvent.getBody());
+        assertEquals(0, getEvent.getBodyBytes().length);
+    }
+
     @Test
     public void testGetEventBatch() {
         assertEquals(EVENT_BATCH, logEvent.getEventBatch());
@@ -0,0 +1,195 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OverflowPolicyTest {
+
+    private static final String SIGNAL = "signal";
+
+    private static final OverflowPolicy.Target<String> TARGET = new OverflowPolicy.Target<String>() {
+        @Override
+        public boolean isDroppable(String element) {
+            return !SIGNAL.equals(element);
+        }
+
+        @Override
+        public boolean isSampleable(String element) {
+            return element.startsWith("impression");
+        }
+
+        @Override
+        public LogEvent toLogEvent(String element) {
+            return new LogEvent(LogEvent.RequestMethod.POST, "https://logx.optimizely.com/v1/events",
+                Collections.singletonMap("element", element), new EventBatch());
+        }
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void dropNewest() {
+        OverflowPolicy overflowPolicy = OverflowPolicy.dropNewest();
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(2);
+
+        assertTrue(overflowPolicy.offer(queue, "a", TARGET));
+        assertTrue(overflowPolicy.offer(queue, "b", TARGET));
+        assertFalse(overflowPolicy.offer(queue, "c", TARGET));
+
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(queue.toArray()));
+        assertEquals(1, overflowPolicy.getOverflowCount());
+        assertEquals(1, overflowPolicy.getDroppedCount());
+    }
+
+    @Test
+    public void dropOldest() {
+        OverflowPolicy overflowPolicy = OverflowPolicy.dropOldest();
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(2);
+
+        for (String element : Arrays.asList("a", "b", "c")) {
+            assertTrue(overflowPolicy.offer(queue, element, TARGET));
+        }
+
+        assertEquals(Arrays.asList("b", "c"), Arrays.asList(queue.toArray()));
+        assertEquals(1, overflowPolicy.getOverflowCount());
+        assertEquals(1, overflowPolicy.getDroppedCount());
+    }
+
+    @Test
+    public void dropOldestKeepsSignals() {
+        OverflowPolicy overflowPolicy = OverflowPolicy.dropOldest();
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(2);
+        queue.add(SIGNAL);
+        queue.add("a");
+
+        assertFalse(overflowPolicy.offer(queue, "b", TARGET));
+
+        assertEquals(Arrays.asList(SIGNAL, "a"), Arrays.asList(queue.toArray()));
+        assertEquals(1, overflowPolicy.getDroppedCount());
+    }
+
+    @Test
+    public void dropOldestDropsNewestFromRingBuffer() {
+        OverflowPolicy overflowPolicy = OverflowPolicy.dropOldest();
+        BlockingQueue<String> queue = new RingBufferBlockingQueue<>(2, RingBufferBlockingQueue.WaitStrategy.PARK);
+
+        for (String element : Arrays.asList("a", "b")) {
+            assertTrue(overflowPolicy.offer(queue, element, TARGET));
+        }
+        assertFalse(overflowPolicy.offer(queue, "c", TARGET));
+
+        assertEquals("a", queue.poll());
+        assertEquals(1, overflowPolicy.getDroppedCount());
+    }
+
+    @Test
+    public void block() throws Exception {
+        OverflowPolicy overflowPolicy = OverflowPolicy.block(2, TimeUnit.SECONDS);
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(1);
+        queue.add("a");
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+
+        assertTrue(overflowPolicy.offer(queue, "b", TARGET));
+        consumer.join();
+        assertEquals("b", queue.peek());
+        assertEquals(1, overflowPolicy.getOverflowCount());
+        assertEquals(0, overflowPolicy.getDroppedCount());
+    }
+
+    @Test
+    public void blockTimesOut() {
+        OverflowPolicy overflowPolicy = OverflowPolicy.block(20, TimeUnit.MILLISECONDS);
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(1);
+        queue.add("a");
+
+        long start = System.nanoTime();
+        assertFalse(overflowPolicy.offer(queue, "b", TARGET));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(1, overflowPolicy.getDroppedCount());
+    }
+
+    @Test
+    public void sampleDown() {
+        OverflowPolicy overflowPolicy = OverflowPolicy.sampleDown(2);
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(overflowPolicy.offer(queue, "impression" + i, TARGET));
+        }
+
+        // the overflow starts sampling
+        assertFalse(overflowPolicy.offer(queue, "impression4", TARGET));
+        queue.poll();
+
+        // 1 in 2 impressions is kept while the queue is more than half full, conversions are all offered
+        assertTrue(overflowPolicy.offer(queue, "impression5", TARGET));
+        assertFalse(overflowPolicy.offer(queue, "impression6", TARGET));
+        assertFalse(overflowPolicy.offer(queue, "conversion", TARGET));
+        assertEquals(2, overflowPolicy.getOverflowCount());
+        assertEquals(2, overflowPolicy.getDroppedCount());
+        assertEquals(1, overflowPolicy.getSampledOutCount());
+
+        // sampling ends once the queue is half empty
+        queue.poll();
+        queue.poll();
+        assertTrue(overflowPolicy.offer(queue, "impression7", TARGET));
+        assertTrue(overflowPolicy.offer(queue, "impression8", TARGET));
+        assertEquals(1, overflowPolicy.getSampledOutCount());
+    }
+
+    @Test
+    public void spillToDisk() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        OverflowPolicy overflowPolicy = OverflowPolicy.spillToDisk(eventSpool);
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(1);
+
+        assertTrue(overflowPolicy.offer(queue, "a", TARGET));
+        assertTrue(overflowPolicy.offer(queue, "b", TARGET));
+
+        assertEquals(1, eventSpool.size());
+        assertEquals("b", eventSpool.poll().getRequestParams().get("element"));
+        assertEquals(1, overflowPolicy.getSpilledCount());
+        assertEquals(0, overflowPolicy.getDroppedCount());
+        eventSpool.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSampleRate() {
+        OverflowPolicy.sampleDown(0);
+    }
+}
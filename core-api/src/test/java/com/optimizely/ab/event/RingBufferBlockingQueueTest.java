@@ -0,0 +1,158 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.event.RingBufferBlockingQueue.WaitStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RingBufferBlockingQueueTest {
+
+    @Test
+    public void testCapacityIsRoundedUp() {
+        assertEquals(2, new RingBufferBlockingQueue<>(1, WaitStrategy.PARK).capacity());
+        assertEquals(8, new RingBufferBlockingQueue<>(5, WaitStrategy.PARK).capacity());
+        assertEquals(1024, new RingBufferBlockingQueue<>(1000, WaitStrategy.PARK).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RingBufferBlockingQueue<>(0, WaitStrategy.PARK);
+    }
+
+    @Test
+    public void testOfferAndPollInOrder() {
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(4, WaitStrategy.PARK);
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(i));
+            }
+            assertFalse(queue.offer(4));
+            assertEquals(4, queue.size());
+            assertEquals(0, queue.remainingCapacity());
+            assertEquals(Arrays.asList(0, 1, 2, 3), new ArrayList<>(queue));
+            assertEquals(Integer.valueOf(0), queue.peek());
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(i), queue.poll());
+            }
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void testDrainTo() {
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(8, WaitStrategy.YIELD);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(i);
+        }
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, queue.drainTo(drained, 3));
+        assertEquals(Arrays.asList(0, 1, 2), drained);
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testTimedWaitExpires() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(1, waitStrategy);
+            assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+            queue.put(1);
+            queue.put(2);
+            assertFalse(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+            assertEquals(Integer.valueOf(1), queue.take());
+        }
+    }
+
+    @Test
+    public void testTakeWakesUpOnOffer() throws Exception {
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(2, WaitStrategy.PARK);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch taken = new CountDownLatch(1);
+            executor.submit(() -> {
+                assertEquals(Integer.valueOf(7), queue.take());
+                taken.countDown();
+                return null;
+            });
+            Thread.sleep(50);
+            queue.offer(7);
+            assertTrue(taken.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testManyProducersOneConsumer() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            int producers = 4;
+            int perProducer = 20000;
+            RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(64, waitStrategy);
+            ExecutorService executor = Executors.newFixedThreadPool(producers);
+            try {
+                for (int p = 0; p < producers; p++) {
+                    int producer = p;
+                    executor.submit(() -> {
+                        for (int i = 0; i < perProducer; i++) {
+                            queue.put(producer * perProducer + i);
+                        }
+                        return null;
+                    });
+                }
+
+                int[] lastByProducer = new int[producers];
+                Arrays.fill(lastByProducer, -1);
+                boolean[] seen = new boolean[producers * perProducer];
+                List<Integer> drained = new ArrayList<>();
+                int received = 0;
+                while (received < seen.length) {
+                    Integer first = queue.poll(5, TimeUnit.SECONDS);
+                    assertNotNull("timed out waiting for elements with " + waitStrategy, first);
+                    drained.add(first);
+                    queue.drainTo(drained, 16);
+                    for (Integer value : drained) {
+                        assertFalse(seen[value]);
+                        seen[value] = true;
+                        // elements of one producer keep their order
+                        int producer = value / perProducer;
+                        assertTrue(value > lastByProducer[producer]);
+                        lastByProducer[producer] = value;
+                        received++;
+                    }
+                    drained.clear();
+                }
+                assertEquals(0, queue.size());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
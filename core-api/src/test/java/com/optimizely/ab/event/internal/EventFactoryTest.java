@@ -34,6 +34,7 @@ import org.junit.runners.Parameterized;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV2;
@@ -1026,6 +1027,62 @@ public class EventFactoryTest {
         assertEquals(conversion.getClientVersion(), BuildVersionInfo.VERSION);
     }
 
+    /**
+     * Verify that a {@link LogEvent} does not hold on to the list of events it was built from, so batches can reuse it.
+     */
+    @Test
+    public void createLogEventCopiesEventList() {
+        EventType eventType = validProjectConfig.getEventTypes().get(0);
+        List<UserEvent> userEvents = new ArrayList<>();
+        userEvents.add(UserEventFactory.createConversionEvent(validProjectConfig, userId, eventType.getId(), eventType.getKey(),
+            Collections.emptyMap(), Collections.emptyMap()));
+
+        LogEvent logEvent = EventFactory.createLogEvent(userEvents);
+        userEvents.clear();
+
+        assertEquals(1, logEvent.getEventBatch().getVisitors().size());
+        assertEquals(userId, logEvent.getEventBatch().getVisitors().get(0).getVisitorId());
+        assertEquals(validProjectConfig.getProjectId(), logEvent.getEventBatch().getProjectId());
+    }
+
+    /**
+     * Verify that the estimated size of an event covers its serialized payload without overshooting by much.
+     */
+    @Test
+    public void estimateSizeCoversSerializedPayload() {
+        Experiment activatedExperiment = validProjectConfig.getExperiments().get(0);
+        Variation bucketedVariation = activatedExperiment.getVariations().get(0);
+        Attribute attribute = validProjectConfig.getAttributes().get(0);
+        EventType eventType = validProjectConfig.getEventTypes().get(0);
+
+        Map<String, Object> attributeMap = Collections.singletonMap(attribute.getKey(), "value");
+        Map<String, Object> eventTagMap = new HashMap<>();
+        eventTagMap.put(ReservedEventKey.REVENUE.toString(), 5000L);
+        eventTagMap.put(ReservedEventKey.VALUE.toString(), 12.3);
+        eventTagMap.put("description", "a long description of the conversion, \"quoted\" and all");
+        eventTagMap.put("items", Arrays.asList("one", "two", 3, true));
+        eventTagMap.put("localized", "\u6d4b\u8bd5\u4e8b\u4ef6 \ud83d\ude80\ud83d\ude80 <&>");
+        eventTagMap.put("nested", Collections.singletonMap("key", Collections.singletonMap("inner", null)));
+
+        List<UserEvent> userEvents = Arrays.asList(
+            UserEventFactory.createImpressionEvent(validProjectConfig, activatedExperiment, bucketedVariation, userId, attributeMap),
+            UserEventFactory.createConversionEvent(validProjectConfig, userId, eventType.getId(), eventType.getKey(), attributeMap, eventTagMap));
+
+        for (UserEvent userEvent : userEvents) {
+            int serializedSize = EventFactory.createLogEvent(userEvent).getBody().getBytes(StandardCharsets.UTF_8).length;
+            int estimatedSize = EventFactory.estimateBatchSize(userEvent) + EventFactory.estimateSize(userEvent);
+            assertTrue("estimated " + estimatedSize + " for " + serializedSize, estimatedSize >= serializedSize);
+            assertTrue("estimated " + estimatedSize + " for " + serializedSize, estimatedSize <= serializedSize * 1.5);
+        }
+
+        int serializedSize = EventFactory.createLogEvent(userEvents).getBody().getBytes(StandardCharsets.UTF_8).length;
+        int estimatedSize = EventFactory.estimateBatchSize(userEvents.get(0));
+        for (UserEvent userEvent : userEvents) {
+            estimatedSize += EventFactory.estimateSize(userEvent);
+        }
+        assertTrue("estimated " + estimatedSize + " for " + serializedSize, estimatedSize >= serializedSize);
+    }
+
 
     private com.optimizely.ab.event.internal.payload.Attribute getBotFilteringAttribute() {
         return new com.optimizely.ab.event.internal.payload.Attribute.Builder()
@@ -0,0 +1,193 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event.internal.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.optimizely.ab.event.internal.payload.Attribute;
+import com.optimizely.ab.event.internal.payload.Event;
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.optimizely.ab.event.internal.payload.Snapshot;
+import com.optimizely.ab.event.internal.payload.Visitor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversion;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversionJson;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversionWithSessionId;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversionWithSessionIdJson;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpression;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpressionJson;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpressionWithSessionId;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpressionWithSessionIdJson;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class EventBatchSerializerTest {
+
+    private ObjectMapper mapper =
+        new ObjectMapper().setPropertyNamingStrategy(
+            PropertyNamingStrategy.SNAKE_CASE);
+
+    @Test
+    public void serializeImpression() throws IOException {
+        EventBatch impression = generateImpression();
+        // can't compare JSON strings since orders could vary so compare objects instead
+        EventBatch actual = mapper.readValue(EventBatchSerializer.serialize(impression), EventBatch.class);
+        EventBatch expected = mapper.readValue(generateImpressionJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void serializeImpressionWithSessionId() throws IOException {
+        EventBatch impression = generateImpressionWithSessionId();
+        EventBatch actual = mapper.readValue(EventBatchSerializer.serialize(impression), EventBatch.class);
+        EventBatch expected = mapper.readValue(generateImpressionWithSessionIdJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void serializeConversion() throws IOException {
+        EventBatch conversion = generateConversion();
+        EventBatch actual = mapper.readValue(EventBatchSerializer.serialize(conversion), EventBatch.class);
+        EventBatch expected = mapper.readValue(generateConversionJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void serializeConversionWithSessionId() throws IOException {
+        EventBatch conversion = generateConversionWithSessionId();
+        EventBatch actual = mapper.readValue(EventBatchSerializer.serialize(conversion), EventBatch.class);
+        EventBatch expected = mapper.readValue(generateConversionWithSessionIdJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void serializeEmptyBatch() {
+        assertEquals("{}", new String(EventBatchSerializer.serialize(new EventBatch()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void serializeMatchesJacksonSerializer() throws IOException {
+        EventBatch eventBatch = generateTaggedConversion();
+        String expected = new JacksonSerializer().serialize(eventBatch);
+        byte[] actual = EventBatchSerializer.serialize(eventBatch);
+
+        assertEquals(mapper.readTree(expected), mapper.readTree(actual));
+    }
+
+    @Test
+    public void serializeToStream() throws IOException {
+        EventBatch eventBatch = generateTaggedConversion();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        EventBatchSerializer.serialize(eventBatch, outputStream);
+
+        assertArrayEquals(EventBatchSerializer.serialize(eventBatch), outputStream.toByteArray());
+    }
+
+    @Test
+    public void serializeLargeBatchReusesBuffer() throws IOException {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 300000; i++) {
+            value.append("\u00e9\n");
+        }
+        EventBatch large = generateConversion();
+        large.getVisitors().get(0).setAttributes(Collections.singletonList(new Attribute.Builder()
+            .setEntityId("1")
+            .setKey("large")
+            .setType("custom")
+            .setValue(value.toString())
+            .build()));
+
+        EventBatch actual = mapper.readValue(EventBatchSerializer.serialize(large), EventBatch.class);
+        assertEquals(value.toString(), actual.getVisitors().get(0).getAttributes().get(0).getValue());
+
+        EventBatch impression = generateImpression();
+        assertThat(mapper.readValue(EventBatchSerializer.serialize(impression), EventBatch.class),
+            is(mapper.readValue(generateImpressionJson(), EventBatch.class)));
+    }
+
+    private static EventBatch generateTaggedConversion() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("list", Arrays.asList(1, "two", 3.5, false, null));
+        nested.put("empty", Collections.emptyMap());
+
+        Map<String, Object> tags = new LinkedHashMap<>();
+        tags.put("revenue", 5000L);
+        tags.put("value", 12.3);
+        tags.put("float", 1.5f);
+        tags.put("big", new BigDecimal("12345678901234567890.123"));
+        tags.put("huge", new BigInteger("123456789012345678901234567890"));
+        tags.put("negative", Long.MIN_VALUE);
+        tags.put("nested", nested);
+        tags.put("text", "quote \" backslash \\ tab \t control \u0001 unicode \u00e9\u4e2d\ud83d\ude00");
+
+        Event event = new Event.Builder()
+            .setTimestamp(-12345)
+            .setUuid("uuid")
+            .setEntityId("7")
+            .setKey("event \"key\"")
+            .setType("event \"key\"")
+            .setRevenue(5000L)
+            .setValue(12.3)
+            .setTags(tags)
+            .build();
+
+        Snapshot snapshot = new Snapshot.Builder()
+            .setEvents(Collections.singletonList(event))
+            .build();
+
+        Attribute attribute = new Attribute.Builder()
+            .setEntityId("6")
+            .setKey("\u00fcber")
+            .setType("custom")
+            .setValue(true)
+            .build();
+
+        Visitor visitor = new Visitor.Builder()
+            .setVisitorId("visitor \u2603")
+            .setAttributes(Collections.singletonList(attribute))
+            .setSnapshots(Collections.singletonList(snapshot))
+            .build();
+
+        return new EventBatch.Builder()
+            .setClientVersion("0.1.1")
+            .setAccountId("3")
+            .setVisitors(Collections.singletonList(visitor))
+            .setAnonymizeIp(true)
+            .setProjectId("1")
+            .setRevision("1")
+            .build();
+    }
+}
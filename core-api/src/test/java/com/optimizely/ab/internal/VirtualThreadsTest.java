@@ -0,0 +1,130 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.internal;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadsTest {
+
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void newExecutorWithoutVirtualThreads() {
+        assumeFalse(VirtualThreads.isSupported());
+        assertNull(VirtualThreads.newExecutor("test-", 1, 1));
+    }
+
+    @Test
+    public void tasksRunOnNamedVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        executor = VirtualThreads.newExecutor("test-", 1, 1);
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        executor.submit(() -> thread.set(Thread.currentThread())).get(5, TimeUnit.SECONDS);
+
+        assertTrue(thread.get().getName().startsWith("test-"));
+        assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread.get()));
+    }
+
+    @Test
+    public void tasksAreBounded() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        executor = VirtualThreads.newExecutor("test-", 2, 2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> await(release));
+        }
+        try {
+            executor.execute(() -> { });
+            fail("task over the bound was accepted");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        release.countDown();
+        CountDownLatch ran = new CountDownLatch(1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ran.getCount() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                executor.execute(ran::countDown);
+            } catch (RejectedExecutionException e) {
+                Thread.sleep(10);
+            }
+        }
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void concurrencyIsBounded() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        executor = VirtualThreads.newExecutor("test-", 10, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicBoolean exceeded = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                if (running.incrementAndGet() > 2) {
+                    exceeded.set(true);
+                }
+                sleep(20);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(exceeded.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -21,11 +21,14 @@ import com.optimizely.ab.OptimizelyRuntimeException;
 import com.optimizely.ab.bucketing.FeatureDecision;
 import com.optimizely.ab.config.FeatureVariable;
 import com.optimizely.ab.config.Variation;
+import com.optimizely.ab.optimizelydecision.OptimizelyDecision;
+import com.optimizely.ab.optimizelyjson.OptimizelyJSON;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -206,4 +209,46 @@ public class DecisionNotificationTest {
             .withVariableKey(FEATURE_VARIABLE_KEY)
             .build();
     }
+
+    @Test
+    public void testAllFeaturesDecisionInfo() {
+        Map<String, Object> variableValues = Collections.singletonMap(FEATURE_VARIABLE_KEY, "value");
+        Map<String, OptimizelyDecision> featureDecisions = new LinkedHashMap<>();
+        featureDecisions.put(FEATURE_KEY, new OptimizelyDecision(FEATURE_KEY, true, new OptimizelyJSON(variableValues),
+            FEATURE_TEST, FEATURE_TEST_VARIATION, FeatureDecision.DecisionSource.FEATURE_TEST));
+        featureDecisions.put("rolloutFeatureKey", new OptimizelyDecision("rolloutFeatureKey", false,
+            new OptimizelyJSON(Collections.<String, Object>emptyMap()), null, null, FeatureDecision.DecisionSource.ROLLOUT));
+
+        DecisionNotification allFeaturesDecisionNotification = DecisionNotification.newAllFeaturesDecisionNotificationBuilder()
+            .withUserId(USER_ID)
+            .withAttributes(USER_ATTRIBUTES)
+            .withFeatureDecisions(featureDecisions)
+            .build();
+
+        assertEquals(NotificationCenter.DecisionNotificationType.ALL_FEATURES.toString(), allFeaturesDecisionNotification.getType());
+        assertEquals(USER_ID, allFeaturesDecisionNotification.getUserId());
+        assertEquals(USER_ATTRIBUTES, allFeaturesDecisionNotification.getAttributes());
+
+        Map<String, ?> actualFeatureDecisionsInfo = (Map<String, ?>) allFeaturesDecisionNotification.getDecisionInfo()
+            .get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.FEATURE_DECISIONS);
+        assertEquals(2, actualFeatureDecisionsInfo.size());
+
+        Map<String, ?> actualFeatureTestDecisionInfo = (Map<String, ?>) actualFeatureDecisionsInfo.get(FEATURE_KEY);
+        assertTrue((Boolean) actualFeatureTestDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.FEATURE_ENABLED));
+        assertEquals(FeatureDecision.DecisionSource.FEATURE_TEST.toString(), actualFeatureTestDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.SOURCE));
+        assertEquals(featureTestSourceInfo.get(), actualFeatureTestDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.SOURCE_INFO));
+        assertEquals(variableValues, actualFeatureTestDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.VARIABLE_VALUES));
+
+        Map<String, ?> actualRolloutDecisionInfo = (Map<String, ?>) actualFeatureDecisionsInfo.get("rolloutFeatureKey");
+        assertFalse((Boolean) actualRolloutDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.FEATURE_ENABLED));
+        assertEquals(FeatureDecision.DecisionSource.ROLLOUT.toString(), actualRolloutDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.SOURCE));
+        assertEquals(rolloutSourceInfo.get(), actualRolloutDecisionInfo.get(DecisionNotification.AllFeaturesDecisionNotificationBuilder.SOURCE_INFO));
+    }
+
+    @Test(expected = OptimizelyRuntimeException.class)
+    public void nullFeatureDecisionsFailsAllFeaturesNotificationBuild() {
+        DecisionNotification.newAllFeaturesDecisionNotificationBuilder()
+            .withUserId(USER_ID)
+            .build();
+    }
 }
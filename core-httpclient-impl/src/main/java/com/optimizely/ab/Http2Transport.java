@@ -0,0 +1,204 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link HttpTransport} that sends requests over HTTP/2 with the Apache HttpClient 5 multiplexing client,
+ * so the {@link OptimizelyHttpClient} keeps its HttpClient 4 API.
+ *
+ * All requests to a host share a single connection: TLS connections negotiate HTTP/2 with ALPN, plain
+ * connections use h2c with prior knowledge. Requests are sent as concurrent streams, at most
+ * maxConcurrentStreams at a time so the server's stream limit is not exceeded, and request and response
+ * bodies are buffered in memory.
+ *
+ * It requires the org.apache.httpcomponents.client5:httpclient5 dependency, which is optional for this module.
+ */
+final class Http2Transport implements HttpTransport {
+
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+
+    // connection specific headers are not allowed in HTTP/2, and the content length is set from the body
+    private static final Set<String> EXCLUDED_HEADERS = new HashSet<>(Arrays.asList(
+        "connection", "content-length", "host", "keep-alive", "proxy-connection", "te", "transfer-encoding", "upgrade"));
+
+    // the stream flow-control window, so a large datafile is not throttled by the 64KB default
+    private static final int INITIAL_WINDOW_SIZE = 1024 * 1024;
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final Semaphore streams;
+    private final long streamRequestTimeoutMillis;
+    private final long responseTimeoutMillis;
+
+    private Http2Transport(CloseableHttpAsyncClient httpClient, int maxConcurrentStreams, RequestConfig requestConfig) {
+        this.httpClient = httpClient;
+        this.streams = new Semaphore(maxConcurrentStreams);
+        this.streamRequestTimeoutMillis = requestConfig.getConnectionRequestTimeout();
+        this.responseTimeoutMillis = (long) requestConfig.getConnectTimeout() + requestConfig.getSocketTimeout();
+    }
+
+    static Http2Transport create(int maxConcurrentStreams, RequestConfig requestConfig) {
+        CloseableHttpAsyncClient httpClient = HttpAsyncClients.customHttp2()
+            .setH2Config(H2Config.custom()
+                .setPushEnabled(false)
+                .setInitialWindowSize(INITIAL_WINDOW_SIZE)
+                .build())
+            .setIOReactorConfig(IOReactorConfig.custom()
+                .setIoThreadCount(1)
+                .setSoTimeout(Timeout.ofMilliseconds(requestConfig.getSocketTimeout()))
+                .build())
+            .setDefaultRequestConfig(org.apache.hc.client5.http.config.RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(requestConfig.getConnectTimeout()))
+                .setResponseTimeout(Timeout.ofMilliseconds(requestConfig.getSocketTimeout()))
+                .build())
+            .disableCookieManagement()
+            .useSystemProperties()
+            .build();
+        httpClient.start();
+
+        return new Http2Transport(httpClient, maxConcurrentStreams, requestConfig);
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+        SimpleHttpRequest http2Request = toHttp2Request(request);
+
+        try {
+            if (!streams.tryAcquire(streamRequestTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ConnectionPoolTimeoutException("Timeout waiting for an HTTP/2 stream");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for an HTTP/2 stream");
+        }
+
+        Future<SimpleHttpResponse> future = null;
+        try {
+            future = httpClient.execute(http2Request, null);
+            return toResponse(future.get(responseTimeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new ClientProtocolException(cause);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new InterruptedIOException("Timeout waiting for an HTTP/2 response");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for an HTTP/2 response");
+        } finally {
+            streams.release();
+        }
+    }
+
+    private static SimpleHttpRequest toHttp2Request(HttpUriRequest request) throws IOException {
+        URI uri = request.getURI();
+        if (!uri.isAbsolute()) {
+            throw new ClientProtocolException("URI does not specify a valid host name: " + uri);
+        }
+
+        SimpleHttpRequest http2Request = SimpleHttpRequest.create(request.getMethod(), uri);
+        for (Header header : request.getAllHeaders()) {
+            if (!EXCLUDED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                http2Request.addHeader(header.getName(), header.getValue());
+            }
+        }
+
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                ContentType contentType = entity.getContentType() != null ? ContentType.parse(entity.getContentType().getValue()) : null;
+                http2Request.setBody(EntityUtils.toByteArray(entity), contentType);
+            }
+        }
+        return http2Request;
+    }
+
+    private static CloseableHttpResponse toResponse(SimpleHttpResponse http2Response) {
+        Http2Response response = new Http2Response(http2Response.getCode(), http2Response.getReasonPhrase());
+        for (org.apache.hc.core5.http.Header header : http2Response.getHeaders()) {
+            response.addHeader(header.getName(), header.getValue());
+        }
+
+        byte[] body = http2Response.getBodyBytes();
+        if (body != null) {
+            ByteArrayEntity entity = new ByteArrayEntity(body);
+            if (http2Response.getContentType() != null) {
+                entity.setContentType(http2Response.getContentType().toString());
+            }
+            response.setEntity(entity);
+        }
+        return response;
+    }
+
+    @Override
+    public void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+
+    /**
+     * Buffered response, which holds no connection to release on close.
+     */
+    private static final class Http2Response extends BasicHttpResponse implements CloseableHttpResponse {
+
+        Http2Response(int code, String reasonPhrase) {
+            super(new BasicStatusLine(HTTP_2, code, reasonPhrase));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
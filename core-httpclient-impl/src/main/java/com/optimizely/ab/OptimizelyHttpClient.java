@@ -24,6 +24,8 @@ import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -36,32 +38,77 @@ import java.io.IOException;
  */
 public class OptimizelyHttpClient implements Closeable {
 
-    private final CloseableHttpClient httpClient;
+    private static final Logger logger = LoggerFactory.getLogger(OptimizelyHttpClient.class);
+
+    private final HttpTransport transport;
 
     OptimizelyHttpClient(CloseableHttpClient httpClient) {
-        this.httpClient = httpClient;
+        this(new HttpClientTransport(httpClient));
+    }
+
+    OptimizelyHttpClient(HttpTransport transport) {
+        this.transport = transport;
     }
 
     @VisibleForTesting
     HttpClient getHttpClient() {
-        return httpClient;
+        return transport instanceof HttpClientTransport ? ((HttpClientTransport) transport).httpClient : null;
+    }
+
+    @VisibleForTesting
+    HttpTransport getTransport() {
+        return transport;
     }
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Returns true when requests are sent over HTTP/2. Response bodies are then buffered in full,
+     * so the client can't read a response that never ends, such as an event stream.
+     */
+    public boolean isHttp2() {
+        return transport instanceof Http2Transport;
+    }
+
     @Override
     public void close() throws IOException {
-        this.httpClient.close();
+        this.transport.close();
     }
 
     public <T> T execute(final HttpUriRequest request, final ResponseHandler<? extends T> responseHandler) throws IOException {
-        return httpClient.execute(request, responseHandler);
+        return transport.execute(request, responseHandler);
     }
 
     public CloseableHttpResponse execute(final HttpUriRequest request) throws IOException {
-        return httpClient.execute(request);
+        return transport.execute(request);
+    }
+
+    /**
+     * HTTP/1.1 transport backed by a pooling HttpClient.
+     */
+    private static final class HttpClientTransport implements HttpTransport {
+        private final CloseableHttpClient httpClient;
+
+        HttpClientTransport(CloseableHttpClient httpClient) {
+            this.httpClient = httpClient;
+        }
+
+        @Override
+        public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+            return httpClient.execute(request);
+        }
+
+        @Override
+        public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException {
+            return httpClient.execute(request, responseHandler);
+        }
+
+        @Override
+        public void close() throws IOException {
+            httpClient.close();
+        }
     }
 
     public static class Builder {
@@ -73,6 +120,12 @@ public class OptimizelyHttpClient implements Closeable {
         private int maxPerRoute = 20;
         // Defines period of inactivity in milliseconds after which persistent connections must be re-validated prior to being leased to the consumer.
         private int validateAfterInactivity = 5000;
+        // Sends requests as multiplexed HTTP/2 streams over a single connection per host instead of the HTTP/1.1 pool.
+        private boolean http2 = false;
+        // The maximum number of HTTP/2 streams in flight, 100 is the minimum servers should allow.
+        int maxConcurrentStreams = 100;
+        // A class of the optional httpclient5 dependency, HTTP/2 falls back to the HTTP/1.1 pool without it.
+        String http2ClientClassName = "org.apache.hc.client5.http.impl.async.HttpAsyncClients";
 
         private Builder() {
 
@@ -93,7 +146,36 @@ public class OptimizelyHttpClient implements Closeable {
             return this;
         }
 
+        /**
+         * Sends requests over HTTP/2, multiplexed on one connection per host. The connection pool settings
+         * don't apply. Requires the optional org.apache.httpcomponents.client5:httpclient5 dependency, without it
+         * the connection pool is used.
+         */
+        public Builder withHttp2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * Maximum number of concurrent HTTP/2 streams, requests beyond it wait for a stream to complete.
+         */
+        public Builder withMaxConcurrentStreams(int maxConcurrentStreams) {
+            if (maxConcurrentStreams <= 0) {
+                logger.warn("maxConcurrentStreams cannot be <= 0. Keeping default value: {}", this.maxConcurrentStreams);
+                return this;
+            }
+
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            return this;
+        }
+
         public OptimizelyHttpClient build() {
+            if (http2 && !isPresent(http2ClientClassName)) {
+                logger.warn("HTTP/2 requires httpclient5 on the classpath, using HTTP/1.1");
+            } else if (http2) {
+                return new OptimizelyHttpClient(Http2Transport.create(maxConcurrentStreams, HttpClientUtils.DEFAULT_REQUEST_CONFIG));
+            }
+
             PoolingHttpClientConnectionManager poolingHttpClientConnectionManager = new PoolingHttpClientConnectionManager();
             poolingHttpClientConnectionManager.setMaxTotal(maxTotalConnections);
             poolingHttpClientConnectionManager.setDefaultMaxPerRoute(maxPerRoute);
@@ -108,6 +190,15 @@ public class OptimizelyHttpClient implements Closeable {
 
             return new OptimizelyHttpClient(closableHttpClient);
         }
+
+        private static boolean isPresent(String className) {
+            try {
+                Class.forName(className);
+                return true;
+            } catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
     }
 
 }
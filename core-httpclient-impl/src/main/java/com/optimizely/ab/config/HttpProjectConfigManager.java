@@ -24,13 +24,21 @@ import com.optimizely.ab.internal.PropertyUtils;
 import com.optimizely.ab.notification.NotificationCenter;
 import org.apache.http.*;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.entity.ContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -46,11 +54,24 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
     public static final String CONFIG_BLOCKING_UNIT     = "http.project.config.manager.blocking.unit";
     public static final String CONFIG_SDK_KEY           = "http.project.config.manager.sdk.key";
     public static final String CONFIG_DATAFILE_AUTH_TOKEN = "http.project.config.manager.datafile.auth.token";
+    public static final String CONFIG_STREAM_URL                = "http.project.config.manager.stream.url";
+    public static final String CONFIG_STREAM_RECONNECT_DURATION = "http.project.config.manager.stream.reconnect.duration";
+    public static final String CONFIG_STREAM_RECONNECT_UNIT     = "http.project.config.manager.stream.reconnect.unit";
+    public static final String CONFIG_STREAM_READ_TIMEOUT_DURATION = "http.project.config.manager.stream.read.timeout.duration";
+    public static final String CONFIG_STREAM_READ_TIMEOUT_UNIT     = "http.project.config.manager.stream.read.timeout.unit";
 
     public static final long DEFAULT_POLLING_DURATION  = 5;
     public static final TimeUnit DEFAULT_POLLING_UNIT  = TimeUnit.MINUTES;
     public static final long DEFAULT_BLOCKING_DURATION = 10;
     public static final TimeUnit DEFAULT_BLOCKING_UNIT = TimeUnit.SECONDS;
+    public static final long DEFAULT_STREAM_RECONNECT_DURATION = 1;
+    public static final TimeUnit DEFAULT_STREAM_RECONNECT_UNIT = TimeUnit.SECONDS;
+    public static final long DEFAULT_STREAM_READ_TIMEOUT_DURATION = 60;
+    public static final TimeUnit DEFAULT_STREAM_READ_TIMEOUT_UNIT = TimeUnit.SECONDS;
+
+    // Brotli is not advertised as there is no decoder among the SDK dependencies.
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 
     private static final Logger logger = LoggerFactory.getLogger(HttpProjectConfigManager.class);
 
@@ -58,15 +79,16 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
     private final URI uri;
     private final String datafileAccessToken;
     private String datafileLastModified;
-
-    private HttpProjectConfigManager(long period,
-                                     TimeUnit timeUnit,
-                                     OptimizelyHttpClient httpClient,
-                                     String url,
-                                     String datafileAccessToken,
-                                     long blockingTimeoutPeriod,
-                                     TimeUnit blockingTimeoutUnit,
-                                     NotificationCenter notificationCenter) {
+    private String datafileETag;
+
+    HttpProjectConfigManager(long period,
+                             TimeUnit timeUnit,
+                             OptimizelyHttpClient httpClient,
+                             String url,
+                             String datafileAccessToken,
+                             long blockingTimeoutPeriod,
+                             TimeUnit blockingTimeoutUnit,
+                             NotificationCenter notificationCenter) {
         super(period, timeUnit, blockingTimeoutPeriod, blockingTimeoutUnit, notificationCenter);
         this.httpClient = httpClient;
         this.uri = URI.create(url);
@@ -81,6 +103,10 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
         return datafileLastModified;
     }
 
+    public String getETag() {
+        return datafileETag;
+    }
+
     public String getDatafileFromResponse(HttpResponse response) throws NullPointerException, IOException {
         StatusLine statusLine = response.getStatusLine();
 
@@ -99,16 +125,68 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
         if (status >= 200 && status < 300) {
             // read the response, so we can close the connection
             HttpEntity entity = response.getEntity();
+            String datafile = readDatafile(entity, response.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+
+            // only once the body is read, a failed read must not make the next poll conditional
             Header lastModifiedHeader = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
             if (lastModifiedHeader != null) {
                 datafileLastModified = lastModifiedHeader.getValue();
             }
-            return EntityUtils.toString(entity, "UTF-8");
+            Header eTagHeader = response.getFirstHeader(HttpHeaders.ETAG);
+            if (eTagHeader != null) {
+                datafileETag = eTagHeader.getValue();
+            }
+            return datafile;
         } else {
             throw new ClientProtocolException("unexpected response when trying to fetch datafile, status: " + status);
         }
     }
 
+    /**
+     * Decodes the datafile straight from the entity stream into a single buffer. HttpClient decompresses
+     * transparently by default, a remaining Content-Encoding means the configured client did not, so it
+     * is decompressed here while reading.
+     */
+    private static String readDatafile(HttpEntity entity, Header contentEncoding) throws IOException {
+        if (entity == null) {
+            throw new ClientProtocolException("unexpected response when trying to fetch datafile, entity is null");
+        }
+
+        long contentLength = entity.getContentLength();
+        if (contentEncoding != null) {
+            String encoding = contentEncoding.getValue().trim().toLowerCase(Locale.ROOT);
+            switch (encoding) {
+                case "gzip":
+                case "x-gzip":
+                    entity = new GzipDecompressingEntity(entity);
+                    break;
+                case "deflate":
+                    entity = new DeflateDecompressingEntity(entity);
+                    break;
+                case "identity":
+                    break;
+                default:
+                    throw new ClientProtocolException("unsupported datafile content encoding: " + encoding);
+            }
+        }
+
+        ContentType contentType = ContentType.get(entity);
+        Charset charset = contentType == null || contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+
+        int size = contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : DEFAULT_BUFFER_SIZE;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(size);
+        try (InputStream in = entity.getContent()) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+        }
+
+        // Decodes from the internal buffer without another copy of the bytes.
+        return buffer.toString(charset.name());
+    }
+
     static ProjectConfig parseProjectConfig(String datafile) throws ConfigParseException {
         return new DatafileProjectConfig.Builder().withDatafile(datafile).build();
     }
@@ -118,8 +196,7 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
         HttpGet httpGet = createHttpRequest();
 
         logger.debug("Fetching datafile from: {}", httpGet.getURI());
-        try {
-            HttpResponse response = httpClient.execute(httpGet);
+        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
             String datafile = getDatafileFromResponse(response);
             if (datafile == null) {
                 return null;
@@ -144,6 +221,12 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
             httpGet.setHeader(HttpHeaders.IF_MODIFIED_SINCE, datafileLastModified);
         }
 
+        if (datafileETag != null) {
+            httpGet.setHeader(HttpHeaders.IF_NONE_MATCH, datafileETag);
+        }
+
+        httpGet.setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+
         return httpGet;
     }
 
@@ -167,6 +250,12 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
         long blockingTimeoutPeriod = PropertyUtils.getLong(CONFIG_BLOCKING_DURATION, DEFAULT_BLOCKING_DURATION);
         TimeUnit blockingTimeoutUnit = PropertyUtils.getEnum(CONFIG_BLOCKING_UNIT, TimeUnit.class, DEFAULT_BLOCKING_UNIT);
 
+        String streamUrl = PropertyUtils.get(CONFIG_STREAM_URL);
+        long streamReconnectPeriod = PropertyUtils.getLong(CONFIG_STREAM_RECONNECT_DURATION, DEFAULT_STREAM_RECONNECT_DURATION);
+        TimeUnit streamReconnectUnit = PropertyUtils.getEnum(CONFIG_STREAM_RECONNECT_UNIT, TimeUnit.class, DEFAULT_STREAM_RECONNECT_UNIT);
+        long streamReadTimeoutPeriod = PropertyUtils.getLong(CONFIG_STREAM_READ_TIMEOUT_DURATION, DEFAULT_STREAM_READ_TIMEOUT_DURATION);
+        TimeUnit streamReadTimeoutUnit = PropertyUtils.getEnum(CONFIG_STREAM_READ_TIMEOUT_UNIT, TimeUnit.class, DEFAULT_STREAM_READ_TIMEOUT_UNIT);
+
         public Builder withDatafile(String datafile) {
             this.datafile = datafile;
             return this;
@@ -247,6 +336,67 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
             return this;
         }
 
+        /**
+         * Server-sent events endpoint announcing datafile changes. When set, a {@link StreamingProjectConfigManager}
+         * is built which applies pushed updates and only polls while the stream is disconnected.
+         * The stream is read over HTTP/1.1, with a client of its own if the configured one uses HTTP/2.
+         */
+        public Builder withStreamUrl(String streamUrl) {
+            this.streamUrl = streamUrl;
+            return this;
+        }
+
+        /**
+         * Initial delay before reconnecting a dropped stream. The delay doubles on each failed attempt,
+         * up to the polling interval.
+         */
+        public Builder withStreamReconnectDelay(Long period, TimeUnit timeUnit) {
+            if (timeUnit == null) {
+                logger.warn("TimeUnit cannot be null. Keeping default period: {} and time unit: {}", this.streamReconnectPeriod, this.streamReconnectUnit);
+                return this;
+            }
+
+            if (period == null) {
+                logger.warn("Delay cannot be null. Keeping default period: {} and time unit: {}", this.streamReconnectPeriod, this.streamReconnectUnit);
+                return this;
+            }
+
+            if (period <= 0) {
+                logger.warn("Delay cannot be <= 0. Keeping default period: {} and time unit: {}", this.streamReconnectPeriod, this.streamReconnectUnit);
+                return this;
+            }
+
+            this.streamReconnectPeriod = period;
+            this.streamReconnectUnit = timeUnit;
+
+            return this;
+        }
+
+        /**
+         * Maximum time without any data, including keep-alive comments, before the stream is considered dead.
+         */
+        public Builder withStreamReadTimeout(Long period, TimeUnit timeUnit) {
+            if (timeUnit == null) {
+                logger.warn("TimeUnit cannot be null. Keeping default period: {} and time unit: {}", this.streamReadTimeoutPeriod, this.streamReadTimeoutUnit);
+                return this;
+            }
+
+            if (period == null) {
+                logger.warn("Timeout cannot be null. Keeping default period: {} and time unit: {}", this.streamReadTimeoutPeriod, this.streamReadTimeoutUnit);
+                return this;
+            }
+
+            if (period <= 0) {
+                logger.warn("Timeout cannot be <= 0. Keeping default period: {} and time unit: {}", this.streamReadTimeoutPeriod, this.streamReadTimeoutUnit);
+                return this;
+            }
+
+            this.streamReadTimeoutPeriod = period;
+            this.streamReadTimeoutUnit = timeUnit;
+
+            return this;
+        }
+
         public Builder withNotificationCenter(NotificationCenter notificationCenter) {
             this.notificationCenter = notificationCenter;
             return this;
@@ -301,15 +451,47 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
                 notificationCenter = new NotificationCenter();
             }
 
-            HttpProjectConfigManager httpProjectManager = new HttpProjectConfigManager(
-                period,
-                timeUnit,
-                httpClient,
-                url,
-                datafileAccessToken,
-                blockingTimeoutPeriod,
-                blockingTimeoutUnit,
-                notificationCenter);
+            if (streamReconnectPeriod <= 0) {
+                logger.warn("Invalid stream reconnect delay {}, {}. Defaulting to {}, {}",
+                    streamReconnectPeriod, streamReconnectUnit, DEFAULT_STREAM_RECONNECT_DURATION, DEFAULT_STREAM_RECONNECT_UNIT);
+                streamReconnectPeriod = DEFAULT_STREAM_RECONNECT_DURATION;
+                streamReconnectUnit = DEFAULT_STREAM_RECONNECT_UNIT;
+            }
+
+            if (streamReadTimeoutPeriod <= 0) {
+                logger.warn("Invalid stream read timeout {}, {}. Defaulting to {}, {}",
+                    streamReadTimeoutPeriod, streamReadTimeoutUnit, DEFAULT_STREAM_READ_TIMEOUT_DURATION, DEFAULT_STREAM_READ_TIMEOUT_UNIT);
+                streamReadTimeoutPeriod = DEFAULT_STREAM_READ_TIMEOUT_DURATION;
+                streamReadTimeoutUnit = DEFAULT_STREAM_READ_TIMEOUT_UNIT;
+            }
+
+            HttpProjectConfigManager httpProjectManager;
+            if (streamUrl == null) {
+                httpProjectManager = new HttpProjectConfigManager(
+                    period,
+                    timeUnit,
+                    httpClient,
+                    url,
+                    datafileAccessToken,
+                    blockingTimeoutPeriod,
+                    blockingTimeoutUnit,
+                    notificationCenter);
+            } else {
+                httpProjectManager = new StreamingProjectConfigManager(
+                    period,
+                    timeUnit,
+                    httpClient,
+                    url,
+                    streamUrl,
+                    datafileAccessToken,
+                    streamReconnectPeriod,
+                    streamReconnectUnit,
+                    streamReadTimeoutPeriod,
+                    streamReadTimeoutUnit,
+                    blockingTimeoutPeriod,
+                    blockingTimeoutUnit,
+                    notificationCenter);
+            }
 
             if (datafile != null) {
                 try {
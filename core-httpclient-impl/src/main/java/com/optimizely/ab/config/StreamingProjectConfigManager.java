@@ -0,0 +1,334 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import com.optimizely.ab.HttpClientUtils;
+import com.optimizely.ab.NamedThreadFactory;
+import com.optimizely.ab.OptimizelyHttpClient;
+import com.optimizely.ab.annotations.VisibleForTesting;
+import com.optimizely.ab.config.parser.ConfigParseException;
+import com.optimizely.ab.notification.NotificationCenter;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.optimizely.ab.internal.SafetyUtils.tryClose;
+
+/**
+ * StreamingProjectConfigManager is an {@link HttpProjectConfigManager} that additionally holds a
+ * server-sent events connection open and applies datafile updates as soon as they are pushed.
+ *
+ * Two event types are understood on the stream:
+ * <ul>
+ *     <li>{@code datafile} - the event data is a complete datafile and is applied directly.</li>
+ *     <li>any other event - treated as a change notification, the datafile is fetched from the datafile URL.</li>
+ * </ul>
+ *
+ * While the stream is connected the scheduled poll is skipped. When the stream disconnects the datafile is
+ * fetched once to catch up, regular polling resumes, and the stream is reconnected with exponential backoff
+ * capped at the polling interval. Instances are created with {@link HttpProjectConfigManager.Builder#withStreamUrl(String)}.
+ */
+public class StreamingProjectConfigManager extends HttpProjectConfigManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingProjectConfigManager.class);
+
+    static final String EVENT_DATAFILE = "datafile";
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+    static final String TEXT_EVENT_STREAM = "text/event-stream";
+
+    private final ThreadFactory threadFactory = new NamedThreadFactory("optimizely-datafile-stream-%d", true);
+
+    private final OptimizelyHttpClient httpClient;
+    private final boolean ownsHttpClient;
+    private final URI streamUri;
+    private final String datafileAccessToken;
+    private final RequestConfig streamRequestConfig;
+    private final long reconnectDelayMillis;
+    private final long maxReconnectDelayMillis;
+    private final Object fetchLock = new Object();
+
+    private volatile Thread streamThread;
+    private volatile HttpGet streamRequest;
+    private volatile boolean streaming;
+    private volatile String lastEventId;
+    private volatile long serverRetryMillis = -1;
+
+    StreamingProjectConfigManager(long period,
+                                  TimeUnit timeUnit,
+                                  OptimizelyHttpClient httpClient,
+                                  String url,
+                                  String streamUrl,
+                                  String datafileAccessToken,
+                                  long reconnectDelay,
+                                  TimeUnit reconnectDelayUnit,
+                                  long readTimeout,
+                                  TimeUnit readTimeoutUnit,
+                                  long blockingTimeoutPeriod,
+                                  TimeUnit blockingTimeoutUnit,
+                                  NotificationCenter notificationCenter) {
+        super(period, timeUnit, httpClient, url, datafileAccessToken, blockingTimeoutPeriod, blockingTimeoutUnit, notificationCenter);
+        // an HTTP/2 client buffers the whole response, which never ends for the stream
+        if (httpClient.isHttp2()) {
+            logger.warn("The datafile stream can't be read over HTTP/2, opening it with an HTTP/1.1 client.");
+            this.httpClient = HttpClientUtils.getDefaultHttpClient();
+            this.ownsHttpClient = true;
+        } else {
+            this.httpClient = httpClient;
+            this.ownsHttpClient = false;
+        }
+        this.streamUri = URI.create(streamUrl);
+        this.datafileAccessToken = datafileAccessToken;
+        this.reconnectDelayMillis = reconnectDelayUnit.toMillis(reconnectDelay);
+        this.maxReconnectDelayMillis = Math.max(reconnectDelayMillis, timeUnit.toMillis(period));
+        this.streamRequestConfig = RequestConfig.copy(HttpClientUtils.DEFAULT_REQUEST_CONFIG)
+            .setSocketTimeout((int) Math.min(Integer.MAX_VALUE, readTimeoutUnit.toMillis(readTimeout)))
+            .build();
+    }
+
+    public URI getStreamUri() {
+        return streamUri;
+    }
+
+    /**
+     * Returns true while the event stream is connected and the scheduled poll is suspended.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    @Override
+    protected ProjectConfig poll() {
+        // Updates arrive on the stream while it is connected, polling is only the fallback.
+        if (streaming) {
+            return null;
+        }
+
+        return fetch();
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+
+        if (!isRunning() || streamThread != null) {
+            return;
+        }
+
+        streamThread = threadFactory.newThread(this::runStream);
+        streamThread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread thread = streamThread;
+        streamThread = null;
+
+        if (thread != null) {
+            HttpGet request = streamRequest;
+            if (request != null) {
+                request.abort();
+            }
+            thread.interrupt();
+        }
+        streaming = false;
+
+        super.stop();
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+        if (ownsHttpClient) {
+            tryClose(httpClient);
+        }
+    }
+
+    private ProjectConfig fetch() {
+        synchronized (fetchLock) {
+            return super.poll();
+        }
+    }
+
+    private boolean isCurrentStream() {
+        return streamThread == Thread.currentThread();
+    }
+
+    private void runStream() {
+        long delay = reconnectDelayMillis;
+
+        while (isCurrentStream()) {
+            try {
+                readStream();
+                logger.info("Datafile stream closed by server, falling back to polling.");
+            } catch (IOException | RuntimeException e) {
+                if (!isCurrentStream()) {
+                    return;
+                }
+                logger.warn("Datafile stream disconnected, falling back to polling: {}", e.toString());
+            }
+
+            if (streaming) {
+                streaming = false;
+                delay = reconnectDelayMillis;
+                // Catch up on anything published while the connection was going down.
+                setConfig(fetch());
+            }
+
+            long sleep = serverRetryMillis >= 0 ? Math.max(serverRetryMillis, delay) : delay;
+            try {
+                Thread.sleep(Math.min(sleep, maxReconnectDelayMillis));
+            } catch (InterruptedException e) {
+                return;
+            }
+            delay = Math.min(delay * 2, maxReconnectDelayMillis);
+        }
+    }
+
+    private void readStream() throws IOException {
+        HttpGet request = createStreamRequest();
+        streamRequest = request;
+        if (!isCurrentStream()) {
+            return;
+        }
+
+        // The response is closed rather than the content stream, since closing the content
+        // would try to drain a stream that never ends.
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status != HttpStatus.SC_OK) {
+                throw new ClientProtocolException("unexpected response when opening datafile stream, status: " + status);
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new ClientProtocolException("datafile stream response has no content");
+            }
+
+            logger.info("Connected to datafile stream: {}", streamUri);
+
+            // Anything published before the stream was attached is picked up with a conditional fetch.
+            setConfig(fetch());
+            streaming = isCurrentStream();
+
+            readEvents(new BufferedReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)));
+        } finally {
+            streamRequest = null;
+        }
+    }
+
+    /**
+     * Reads events until the end of the stream, following the server-sent events line format.
+     */
+    @VisibleForTesting
+    void readEvents(BufferedReader reader) throws IOException {
+        String eventType = null;
+        StringBuilder data = new StringBuilder();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    data.setLength(data.length() - 1);
+                    handleEvent(eventType, data.toString());
+                }
+                eventType = null;
+                data.setLength(0);
+                continue;
+            }
+
+            // Comment lines are used as keep-alives.
+            if (line.startsWith(":")) {
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+
+            switch (field) {
+                case "event":
+                    eventType = value;
+                    break;
+                case "data":
+                    data.append(value).append('\n');
+                    break;
+                case "id":
+                    lastEventId = value;
+                    break;
+                case "retry":
+                    try {
+                        serverRetryMillis = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        logger.debug("Ignoring invalid retry value: {}", value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void handleEvent(String eventType, String data) {
+        if (EVENT_DATAFILE.equals(eventType)) {
+            try {
+                setConfig(parseProjectConfig(data));
+                return;
+            } catch (ConfigParseException e) {
+                logger.warn("Invalid datafile received on stream, fetching instead.", e);
+            }
+        } else {
+            logger.debug("Datafile change notification received: {}", eventType);
+        }
+
+        setConfig(fetch());
+    }
+
+    @VisibleForTesting
+    HttpGet createStreamRequest() {
+        HttpGet httpGet = new HttpGet(streamUri);
+        httpGet.setConfig(streamRequestConfig);
+        httpGet.setHeader(HttpHeaders.ACCEPT, TEXT_EVENT_STREAM);
+        httpGet.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        if (datafileAccessToken != null) {
+            httpGet.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + datafileAccessToken);
+        }
+
+        if (lastEventId != null) {
+            httpGet.setHeader(LAST_EVENT_ID, lastEventId);
+        }
+
+        return httpGet;
+    }
+}
@@ -20,33 +20,54 @@ import com.optimizely.ab.NamedThreadFactory;
 import com.optimizely.ab.OptimizelyHttpClient;
 import com.optimizely.ab.annotations.VisibleForTesting;
 
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.optimizely.ab.event.internal.payload.Snapshot;
+import com.optimizely.ab.event.internal.payload.Visitor;
 import com.optimizely.ab.internal.PropertyUtils;
+import com.optimizely.ab.internal.VirtualThreads;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.StringEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 import javax.annotation.CheckForNull;
 
 /**
  * {@link EventHandler} implementation that queues events and has a separate pool of threads responsible
  * for the dispatch.
+ *
+ * With compression enabled, POST payloads of at least the minimum size are sent gzip encoded.
+ *
+ * Dispatches that fail with an I/O error or a 5xx or 429 response are retried following the
+ * {@link RetryPolicy}, on a separate scheduler so the workers keep dispatching new events.
+ *
+ * With virtual threads enabled on a runtime that has them, every event is dispatched on its own virtual
+ * thread instead of the worker pool. Up to queueCapacity events are accepted at a time, and up to
+ * connectionsPerRoute of them are sent concurrently while the others wait on their parked threads.
+ *
+ * Events that don't fit in the full queue are handled by the {@link OverflowPolicy}, which drops the newest
+ * event by default, or spills it to the {@link EventSpool} when one is configured.
+ *
+ * With an {@link EventSpool}, events that are rejected by the full queue or still fail once they run out
+ * of retries are spooled to disk. Every successful dispatch takes one spooled event and
+ * dispatches it again, so the spool drains as the endpoint recovers. Events recovered from the spool
+ * are dispatched when the handler is built.
  */
 public class AsyncEventHandler implements EventHandler, AutoCloseable {
 
@@ -55,22 +76,58 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
     public static final String CONFIG_MAX_CONNECTIONS           = "async.event.handler.max.connections";
     public static final String CONFIG_MAX_PER_ROUTE             = "async.event.handler.event.max.per.route";
     public static final String CONFIG_VALIDATE_AFTER_INACTIVITY = "async.event.handler.validate.after";
+    public static final String CONFIG_COMPRESSION_ENABLED       = "async.event.handler.compression.enabled";
+    public static final String CONFIG_COMPRESSION_LEVEL         = "async.event.handler.compression.level";
+    public static final String CONFIG_COMPRESSION_MIN_BYTES     = "async.event.handler.compression.min.bytes";
+    public static final String CONFIG_RETRY_MAX_ATTEMPTS        = "async.event.handler.retry.max.attempts";
+    public static final String CONFIG_RETRY_INITIAL_BACKOFF     = "async.event.handler.retry.initial.backoff";
+    public static final String CONFIG_RETRY_MAX_BACKOFF         = "async.event.handler.retry.max.backoff";
+    public static final String CONFIG_RETRY_MAX_IN_FLIGHT       = "async.event.handler.retry.max.in.flight";
+    public static final String CONFIG_VIRTUAL_THREADS           = "async.event.handler.virtual.threads";
+    public static final String CONFIG_HTTP2                     = "async.event.handler.http2";
 
     public static final int DEFAULT_QUEUE_CAPACITY = 10000;
     public static final int DEFAULT_NUM_WORKERS = 2;
     public static final int DEFAULT_MAX_CONNECTIONS = 200;
     public static final int DEFAULT_MAX_PER_ROUTE = 20;
     public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 5000;
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    public static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
 
     private static final Logger logger = LoggerFactory.getLogger(AsyncEventHandler.class);
     private static final ProjectConfigResponseHandler EVENT_RESPONSE_HANDLER = new ProjectConfigResponseHandler();
 
+    private static final OverflowPolicy.Target<Runnable> OVERFLOW_TARGET = new OverflowPolicy.Target<Runnable>() {
+        @Override
+        public boolean isSampleable(Runnable element) {
+            return element instanceof EventDispatcher && isImpressionBatch(((EventDispatcher) element).logEvent);
+        }
+
+        @Override
+        public LogEvent toLogEvent(Runnable element) {
+            return element instanceof EventDispatcher ? ((EventDispatcher) element).logEvent : null;
+        }
+    };
+
     private final OptimizelyHttpClient httpClient;
     private final ExecutorService workerExecutor;
+    // the queue of the worker pool the handler owns, null for an injected executor or virtual threads
+    private final BlockingQueue<Runnable> workQueue;
+    private final OverflowPolicy overflowPolicy;
 
     private final long closeTimeout;
     private final TimeUnit closeTimeoutUnit;
 
+    private final boolean compressionEnabled;
+    private final int compressionLevel;
+    private final int compressionMinBytes;
+
+    private final EventSpool eventSpool;
+
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService retryExecutor;
+    private final Set<EventDispatcher> pendingRetries = ConcurrentHashMap.newKeySet();
+
     /**
      * @deprecated Use the builder {@link Builder}
      */
@@ -99,6 +156,25 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
                              int validateAfter,
                              long closeTimeout,
                              TimeUnit closeTimeoutUnit) {
+        this(queueCapacity, numWorkers, maxConnections, connectionsPerRoute, validateAfter, closeTimeout, closeTimeoutUnit,
+            false, DEFAULT_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_MIN_BYTES, null, RetryPolicy.NO_RETRY, null, false, false);
+    }
+
+    private AsyncEventHandler(int queueCapacity,
+                              int numWorkers,
+                              int maxConnections,
+                              int connectionsPerRoute,
+                              int validateAfter,
+                              long closeTimeout,
+                              TimeUnit closeTimeoutUnit,
+                              boolean compressionEnabled,
+                              int compressionLevel,
+                              int compressionMinBytes,
+                              EventSpool eventSpool,
+                              RetryPolicy retryPolicy,
+                              OverflowPolicy overflowPolicy,
+                              boolean virtualThreads,
+                              boolean http2) {
 
         queueCapacity       = validateInput("queueCapacity", queueCapacity, DEFAULT_QUEUE_CAPACITY);
         numWorkers          = validateInput("numWorkers", numWorkers, DEFAULT_NUM_WORKERS);
@@ -106,36 +182,180 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
         connectionsPerRoute = validateInput("connectionsPerRoute", connectionsPerRoute, DEFAULT_MAX_PER_ROUTE);
         validateAfter       = validateInput("validateAfter", validateAfter, DEFAULT_VALIDATE_AFTER_INACTIVITY);
 
+        if (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION) {
+            logger.warn("Invalid value for compressionLevel: {}. Defaulting to {}", compressionLevel, DEFAULT_COMPRESSION_LEVEL);
+            compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+        }
+
         this.httpClient = OptimizelyHttpClient.builder()
             .withMaxTotalConnections(maxConnections)
             .withMaxPerRoute(connectionsPerRoute)
             .withValidateAfterInactivity(validateAfter)
+            .withHttp2(http2)
             .build();
 
-        this.workerExecutor = new ThreadPoolExecutor(numWorkers, numWorkers,
-            0L, TimeUnit.MILLISECONDS,
-            new ArrayBlockingQueue<>(queueCapacity),
-            new NamedThreadFactory("optimizely-event-dispatcher-thread-%s", true));
+        if (overflowPolicy == null) {
+            overflowPolicy = eventSpool != null ? OverflowPolicy.spillToDisk(eventSpool) : OverflowPolicy.dropNewest();
+        }
+        this.overflowPolicy = overflowPolicy;
+
+        ExecutorService virtualThreadExecutor = null;
+        if (virtualThreads) {
+            virtualThreadExecutor = VirtualThreads.newExecutor("optimizely-event-dispatcher-", queueCapacity, connectionsPerRoute);
+            if (virtualThreadExecutor == null) {
+                logger.warn("Virtual threads are not supported by this runtime, using {} worker threads", numWorkers);
+            }
+        }
+
+        if (virtualThreadExecutor != null) {
+            this.workQueue = null;
+            this.workerExecutor = virtualThreadExecutor;
+        } else {
+            this.workQueue = new ArrayBlockingQueue<>(queueCapacity);
+            this.workerExecutor = new ThreadPoolExecutor(numWorkers, numWorkers,
+                0L, TimeUnit.MILLISECONDS,
+                workQueue,
+                new NamedThreadFactory("optimizely-event-dispatcher-thread-%s", true),
+                this::handleOverflow);
+        }
 
         this.closeTimeout = closeTimeout;
         this.closeTimeoutUnit = closeTimeoutUnit;
+
+        this.compressionEnabled = compressionEnabled;
+        this.compressionLevel = compressionLevel;
+        this.compressionMinBytes = compressionMinBytes;
+        this.eventSpool = eventSpool;
+        this.retryPolicy = retryPolicy;
+        this.retryExecutor = createRetryExecutor(retryPolicy);
+
+        dispatchSpooled();
     }
 
     @VisibleForTesting
     public AsyncEventHandler(OptimizelyHttpClient httpClient, ExecutorService workerExecutor) {
+        this(httpClient, workerExecutor, null);
+    }
+
+    @VisibleForTesting
+    AsyncEventHandler(OptimizelyHttpClient httpClient, ExecutorService workerExecutor, EventSpool eventSpool) {
+        this(httpClient, workerExecutor, eventSpool, RetryPolicy.NO_RETRY);
+    }
+
+    @VisibleForTesting
+    AsyncEventHandler(OptimizelyHttpClient httpClient, ExecutorService workerExecutor, EventSpool eventSpool, RetryPolicy retryPolicy) {
         this.httpClient = httpClient;
         this.workerExecutor = workerExecutor;
+        this.workQueue = null;
+        this.overflowPolicy = OverflowPolicy.dropNewest();
         this.closeTimeout = Long.MAX_VALUE;
         this.closeTimeoutUnit = TimeUnit.MILLISECONDS;
+        this.compressionEnabled = false;
+        this.compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+        this.compressionMinBytes = DEFAULT_COMPRESSION_MIN_BYTES;
+        this.eventSpool = eventSpool;
+        this.retryPolicy = retryPolicy;
+        this.retryExecutor = createRetryExecutor(retryPolicy);
+    }
+
+    private static ScheduledExecutorService createRetryExecutor(RetryPolicy retryPolicy) {
+        if (retryPolicy.getMaxAttempts() < 2 || retryPolicy.getMaxRetriesInFlight() == 0) {
+            return null;
+        }
+
+        ScheduledThreadPoolExecutor retryExecutor = new ScheduledThreadPoolExecutor(1,
+            new NamedThreadFactory("optimizely-event-retry-thread-%s", true));
+        retryExecutor.setRemoveOnCancelPolicy(true);
+        return retryExecutor;
     }
 
     @Override
     public void dispatchEvent(LogEvent logEvent) {
+        EventDispatcher eventDispatcher = new EventDispatcher(logEvent);
+        if (workQueue != null && !overflowPolicy.admit(workQueue, eventDispatcher, OVERFLOW_TARGET)) {
+            logger.debug("event sampled out while the queue is full");
+            return;
+        }
+
         try {
             // attempt to enqueue the log event for processing
+            workerExecutor.execute(eventDispatcher);
+        } catch (RejectedExecutionException e) {
+            onRejected(logEvent, "event dispatch");
+        }
+    }
+
+    /**
+     * Returns the OverflowPolicy of the dispatch queue, with its counters.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Applies the OverflowPolicy to a dispatch the full worker queue did not accept.
+     */
+    private void handleOverflow(Runnable runnable, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("event handler is shut down");
+        }
+
+        if (!overflowPolicy.onFull(executor.getQueue(), runnable, OVERFLOW_TARGET)) {
+            throw new RejectedExecutionException("event dropped by overflow policy");
+        }
+    }
+
+    private void onRejected(LogEvent logEvent, String what) {
+        if (workQueue != null && !workerExecutor.isShutdown()) {
+            // the overflow policy has already spilled or dropped it
+            logger.warn("{} rejected by full queue", what);
+        } else if (spool(logEvent)) {
+            logger.warn("{} rejected, event spooled", what);
+        } else {
+            logger.error("{} rejected", what);
+        }
+    }
+
+    /**
+     * Returns whether all the events of the batch are impressions.
+     */
+    private static boolean isImpressionBatch(LogEvent logEvent) {
+        EventBatch eventBatch = logEvent.getEventBatch();
+        if (eventBatch == null || eventBatch.getVisitors() == null || eventBatch.getVisitors().isEmpty()) {
+            return false;
+        }
+
+        for (Visitor visitor : eventBatch.getVisitors()) {
+            for (Snapshot snapshot : visitor.getSnapshots()) {
+                if (snapshot.getDecisions() == null || snapshot.getDecisions().isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean spool(LogEvent logEvent) {
+        return eventSpool != null && eventSpool.append(logEvent);
+    }
+
+    /**
+     * Dispatches the oldest spooled event, if any.
+     */
+    private void dispatchSpooled() {
+        if (eventSpool == null) {
+            return;
+        }
+
+        LogEvent logEvent = eventSpool.poll();
+        if (logEvent == null) {
+            return;
+        }
+
+        try {
             workerExecutor.execute(new EventDispatcher(logEvent));
         } catch (RejectedExecutionException e) {
-            logger.error("event dispatch rejected");
+            eventSpool.append(logEvent);
         }
     }
 
@@ -152,6 +372,7 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
 
         // Disable new tasks from being submitted
         logger.info("event handler shutting down. Attempting to dispatch previously submitted events");
+        cancelPendingRetries();
         workerExecutor.shutdown();
 
         try {
@@ -188,6 +409,26 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
         shutdownAndAwaitTermination(closeTimeout, closeTimeoutUnit);
     }
 
+    /**
+     * Stops the retry scheduler. Events waiting for a retry are spooled, or dropped without a spool.
+     */
+    private void cancelPendingRetries() {
+        if (retryExecutor == null) {
+            return;
+        }
+
+        retryExecutor.shutdownNow();
+        int dropped = 0;
+        for (EventDispatcher retry : pendingRetries) {
+            if (pendingRetries.remove(retry) && !spool(retry.logEvent)) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            logger.warn("{} events waiting for a retry were dropped.", dropped);
+        }
+    }
+
     //======== Helper classes ========//
 
     /**
@@ -196,9 +437,15 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
     private class EventDispatcher implements Runnable {
 
         private final LogEvent logEvent;
+        private final int attempt;
 
         EventDispatcher(LogEvent logEvent) {
+            this(logEvent, 1);
+        }
+
+        EventDispatcher(LogEvent logEvent, int attempt) {
             this.logEvent = logEvent;
+            this.attempt = attempt;
         }
 
         @Override
@@ -209,38 +456,69 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
             }
 
             try {
-                HttpRequestBase request;
-                if (logEvent.getRequestMethod() == LogEvent.RequestMethod.GET) {
-                    request = generateGetRequest(logEvent);
+                HttpRequestBase request = EventRequests.createRequest(logEvent, compressionEnabled, compressionLevel, compressionMinBytes);
+                httpClient.execute(request, EVENT_RESPONSE_HANDLER);
+            } catch (HttpResponseException e) {
+                if (retryPolicy.isRetryableStatus(e.getStatusCode())) {
+                    long retryAfterMillis = e instanceof EventResponseException ? ((EventResponseException) e).retryAfterMillis : 0;
+                    retryOrSpool(e, retryAfterMillis);
                 } else {
-                    request = generatePostRequest(logEvent);
+                    logger.error("event dispatch failed", e);
                 }
-                httpClient.execute(request, EVENT_RESPONSE_HANDLER);
+                return;
             } catch (IOException e) {
-                logger.error("event dispatch failed", e);
+                retryOrSpool(e, 0);
+                return;
             } catch (URISyntaxException e) {
                 logger.error("unable to parse generated URI", e);
+                return;
             }
+
+            dispatchSpooled();
         }
 
-        /**
-         * Helper method that generates the event request for the given {@link LogEvent}.
-         */
-        private HttpGet generateGetRequest(LogEvent event) throws URISyntaxException {
+        private void retryOrSpool(IOException e, long retryAfterMillis) {
+            if (scheduleRetry(retryAfterMillis)) {
+                logger.debug("event dispatch attempt {} failed, retrying", attempt, e);
+            } else if (spool(logEvent)) {
+                logger.warn("event dispatch failed, event spooled", e);
+            } else {
+                logger.error("event dispatch failed", e);
+            }
+        }
+
+        private boolean scheduleRetry(long retryAfterMillis) {
+            long delay = retryPolicy.getDelayMillis(attempt + 1, retryAfterMillis);
+            if (delay < 0 || retryExecutor == null) {
+                return false;
+            }
 
-            URIBuilder builder = new URIBuilder(event.getEndpointUrl());
-            for (Map.Entry<String, String> param : event.getRequestParams().entrySet()) {
-                builder.addParameter(param.getKey(), param.getValue());
+            if (pendingRetries.size() >= retryPolicy.getMaxRetriesInFlight()) {
+                logger.debug("retry budget of {} exhausted, not retrying event", retryPolicy.getMaxRetriesInFlight());
+                return false;
             }
 
-            return new HttpGet(builder.build());
+            EventDispatcher retry = new EventDispatcher(logEvent, attempt + 1);
+            pendingRetries.add(retry);
+            try {
+                retryExecutor.schedule(() -> {
+                    if (pendingRetries.remove(retry)) {
+                        dispatchRetry(retry);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (RejectedExecutionException ex) {
+                pendingRetries.remove(retry);
+                return false;
+            }
         }
 
-        private HttpPost generatePostRequest(LogEvent event) throws UnsupportedEncodingException {
-            HttpPost post = new HttpPost(event.getEndpointUrl());
-            post.setEntity(new StringEntity(event.getBody()));
-            post.addHeader("Content-Type", "application/json");
-            return post;
+        private void dispatchRetry(EventDispatcher retry) {
+            try {
+                workerExecutor.execute(retry);
+            } catch (RejectedExecutionException e) {
+                onRejected(retry.logEvent, "event retry");
+            }
         }
     }
 
@@ -253,16 +531,30 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
         @CheckForNull
         public Void handleResponse(HttpResponse response) throws IOException {
             int status = response.getStatusLine().getStatusCode();
-            if (status >= 200 && status < 300) {
+            if (EventRequests.isSuccess(status)) {
                 // read the response, so we can close the connection
                 response.getEntity();
                 return null;
             } else {
-                throw new ClientProtocolException("unexpected response from event endpoint, status: " + status);
+                throw new EventResponseException(status, EventRequests.retryAfterMillis(response));
             }
         }
     }
 
+    /**
+     * Unexpected response from the event endpoint, with the delay the endpoint asked for before a retry.
+     */
+    private static final class EventResponseException extends HttpResponseException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterMillis;
+
+        EventResponseException(int status, long retryAfterMillis) {
+            super(status, "unexpected response from event endpoint, status: " + status);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+
     //======== Builder ========//
 
     public static Builder builder() { return new Builder(); }
@@ -274,8 +566,20 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
         int maxTotalConnections = PropertyUtils.getInteger(CONFIG_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
         int maxPerRoute = PropertyUtils.getInteger(CONFIG_MAX_PER_ROUTE, DEFAULT_MAX_PER_ROUTE);
         int validateAfterInactivity = PropertyUtils.getInteger(CONFIG_VALIDATE_AFTER_INACTIVITY, DEFAULT_VALIDATE_AFTER_INACTIVITY);
+        boolean compressionEnabled = Boolean.parseBoolean(PropertyUtils.get(CONFIG_COMPRESSION_ENABLED, "false"));
+        int compressionLevel = PropertyUtils.getInteger(CONFIG_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL);
+        int compressionMinBytes = PropertyUtils.getInteger(CONFIG_COMPRESSION_MIN_BYTES, DEFAULT_COMPRESSION_MIN_BYTES);
         private long closeTimeout = Long.MAX_VALUE;
         private TimeUnit closeTimeoutUnit = TimeUnit.MILLISECONDS;
+        private EventSpool eventSpool = null;
+        private OverflowPolicy overflowPolicy = null;
+        boolean virtualThreads = Boolean.parseBoolean(PropertyUtils.get(CONFIG_VIRTUAL_THREADS, "false"));
+        boolean http2 = Boolean.parseBoolean(PropertyUtils.get(CONFIG_HTTP2, "false"));
+        int retryMaxAttempts = PropertyUtils.getInteger(CONFIG_RETRY_MAX_ATTEMPTS, RetryPolicy.DEFAULT_MAX_ATTEMPTS);
+        long retryInitialBackoffMillis = PropertyUtils.getLong(CONFIG_RETRY_INITIAL_BACKOFF, RetryPolicy.DEFAULT_INITIAL_BACKOFF_MILLIS);
+        long retryMaxBackoffMillis = PropertyUtils.getLong(CONFIG_RETRY_MAX_BACKOFF, RetryPolicy.DEFAULT_MAX_BACKOFF_MILLIS);
+        double retryJitter = RetryPolicy.DEFAULT_JITTER;
+        int retryMaxInFlight = PropertyUtils.getInteger(CONFIG_RETRY_MAX_IN_FLIGHT, RetryPolicy.DEFAULT_MAX_RETRIES_IN_FLIGHT);
 
         public Builder withQueueCapacity(int queueCapacity) {
             if (queueCapacity <= 0) {
@@ -312,12 +616,139 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
             return this;
         }
 
+        /**
+         * Enables gzip encoding of event payloads. Disabled by default.
+         */
+        public Builder withCompression(boolean compressionEnabled) {
+            this.compressionEnabled = compressionEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the gzip compression level, from 1 (fastest) to 9 (smallest).
+         */
+        public Builder withCompressionLevel(int compressionLevel) {
+            if (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION) {
+                logger.warn("Compression level must be between 1 and 9. Keeping default value: {}", this.compressionLevel);
+                return this;
+            }
+
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Sets the payload size, in bytes, below which events are sent uncompressed.
+         */
+        public Builder withCompressionMinBytes(int compressionMinBytes) {
+            if (compressionMinBytes < 0) {
+                logger.warn("Compression min bytes cannot be < 0. Keeping default value: {}", this.compressionMinBytes);
+                return this;
+            }
+
+            this.compressionMinBytes = compressionMinBytes;
+            return this;
+        }
+
         public Builder withCloseTimeout(long closeTimeout, TimeUnit unit) {
             this.closeTimeout = closeTimeout;
             this.closeTimeoutUnit = unit;
             return this;
         }
 
+        /**
+         * Sets the {@link EventSpool} that keeps events on disk when they can't be dispatched.
+         * The spool is not closed with the handler.
+         */
+        public Builder withEventSpool(EventSpool eventSpool) {
+            this.eventSpool = eventSpool;
+            return this;
+        }
+
+        /**
+         * Dispatches every event on its own virtual thread instead of the numWorkers pool, on runtimes that
+         * have virtual threads. Events beyond the queue capacity are rejected, the OverflowPolicy doesn't apply.
+         * Disabled by default.
+         */
+        public Builder withVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Sends events over HTTP/2, multiplexed on a single connection, instead of up to maxPerRoute
+         * HTTP/1.1 connections. Requires the optional org.apache.httpcomponents.client5:httpclient5 dependency.
+         * Disabled by default.
+         */
+        public Builder withHttp2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * OverflowPolicy applied when the dispatch queue is full. Defaults to spilling to the EventSpool
+         * when one is configured, and to dropping the newest event otherwise.
+         */
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the number of times an event is sent, including the first attempt. 1 disables retries.
+         */
+        public Builder withRetryMaxAttempts(int retryMaxAttempts) {
+            if (retryMaxAttempts < 1) {
+                logger.warn("Retry max attempts cannot be < 1. Keeping default value: {}", this.retryMaxAttempts);
+                return this;
+            }
+
+            this.retryMaxAttempts = retryMaxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the backoff before the first retry, doubled for every following retry up to the max backoff.
+         * A Retry-After longer than the max backoff is not waited for.
+         */
+        public Builder withRetryBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+            if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+                logger.warn("Retry backoff must satisfy 0 <= initialBackoff <= maxBackoff. Keeping default values: {} and {} ms",
+                    this.retryInitialBackoffMillis, this.retryMaxBackoffMillis);
+                return this;
+            }
+
+            this.retryInitialBackoffMillis = unit.toMillis(initialBackoff);
+            this.retryMaxBackoffMillis = unit.toMillis(maxBackoff);
+            return this;
+        }
+
+        /**
+         * Sets the largest fraction, between 0 and 1, randomly taken off each backoff.
+         */
+        public Builder withRetryJitter(double retryJitter) {
+            if (retryJitter < 0 || retryJitter > 1) {
+                logger.warn("Retry jitter must be between 0 and 1. Keeping default value: {}", this.retryJitter);
+                return this;
+            }
+
+            this.retryJitter = retryJitter;
+            return this;
+        }
+
+        /**
+         * Sets the number of retries that can wait at a time. Failures beyond it are not retried.
+         */
+        public Builder withRetryMaxInFlight(int retryMaxInFlight) {
+            if (retryMaxInFlight < 0) {
+                logger.warn("Retry max in flight cannot be < 0. Keeping default value: {}", this.retryMaxInFlight);
+                return this;
+            }
+
+            this.retryMaxInFlight = retryMaxInFlight;
+            return this;
+        }
+
         public AsyncEventHandler build() {
             return new AsyncEventHandler(
                 queueCapacity,
@@ -326,9 +757,26 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
                 maxPerRoute,
                 validateAfterInactivity,
                 closeTimeout,
-                closeTimeoutUnit
+                closeTimeoutUnit,
+                compressionEnabled,
+                compressionLevel,
+                compressionMinBytes,
+                eventSpool,
+                createRetryPolicy(),
+                overflowPolicy,
+                virtualThreads,
+                http2
             );
         }
+
+        private RetryPolicy createRetryPolicy() {
+            try {
+                return new RetryPolicy(retryMaxAttempts, retryInitialBackoffMillis, retryMaxBackoffMillis, retryJitter, retryMaxInFlight);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid retry configuration: {}. Defaulting to no retries", e.getMessage());
+                return RetryPolicy.NO_RETRY;
+            }
+        }
     }
 
     private int validateInput(String name, int input, int fallback) {
@@ -0,0 +1,110 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the HTTP requests of {@link LogEvent}s and reads the responses, for the event handlers of this module.
+ */
+final class EventRequests {
+
+    private EventRequests() {
+    }
+
+    /**
+     * Generates the request for the given {@link LogEvent}. POST payloads of at least compressionMinBytes
+     * are gzip encoded when compression is enabled.
+     */
+    static HttpRequestBase createRequest(LogEvent logEvent,
+                                         boolean compressionEnabled,
+                                         int compressionLevel,
+                                         int compressionMinBytes) throws IOException, URISyntaxException {
+        if (logEvent.getRequestMethod() == LogEvent.RequestMethod.GET) {
+            URIBuilder builder = new URIBuilder(logEvent.getEndpointUrl());
+            for (Map.Entry<String, String> param : logEvent.getRequestParams().entrySet()) {
+                builder.addParameter(param.getKey(), param.getValue());
+            }
+
+            return new HttpGet(builder.build());
+        }
+
+        HttpPost post = new HttpPost(logEvent.getEndpointUrl());
+        byte[] body = logEvent.getBodyBytes();
+        if (compressionEnabled && body.length >= compressionMinBytes) {
+            post.setEntity(new ByteArrayEntity(gzip(body, compressionLevel)));
+            post.addHeader("Content-Encoding", "gzip");
+        } else {
+            post.setEntity(new ByteArrayEntity(body));
+        }
+        post.addHeader("Content-Type", "application/json");
+        return post;
+    }
+
+    private static byte[] gzip(byte[] body, int compressionLevel) throws IOException {
+        // repetitive event JSON usually compresses well below a quarter of its size
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(compressionLevel);
+            }
+        }) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Returns whether the event endpoint accepted the event.
+     */
+    static boolean isSuccess(int status) {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * Reads the Retry-After header, given either in seconds or as an HTTP date.
+     */
+    static long retryAfterMillis(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null || header.getValue() == null) {
+            return 0;
+        }
+
+        String value = header.getValue().trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? 0 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+}
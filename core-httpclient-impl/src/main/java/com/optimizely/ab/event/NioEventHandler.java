@@ -0,0 +1,403 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.HttpClientUtils;
+import com.optimizely.ab.NamedThreadFactory;
+import com.optimizely.ab.annotations.VisibleForTesting;
+import com.optimizely.ab.internal.PropertyUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventHandler} implementation that dispatches events with a non-blocking HTTP client.
+ *
+ * Requests are multiplexed by a few I/O reactor threads over a pool of persistent connections, so slow
+ * responses don't hold a thread each the way they do in the {@link AsyncEventHandler}. The number of requests
+ * in flight is bounded: once the bound is reached, dispatchEvent waits up to the acquire timeout for a request
+ * to complete, which slows down the caller instead of queueing without limit, and then drops the event.
+ *
+ * With an {@link EventSpool}, events that can't be sent in time or fail with an I/O error or a 5xx or 429
+ * response are spooled to disk, and every successful dispatch sends one spooled event again. Spooled events
+ * are read and sent from a thread of their own, so the disk reads don't stall the I/O reactor.
+ *
+ * It requires the org.apache.httpcomponents:httpasyncclient dependency, which is optional for this module.
+ */
+public class NioEventHandler implements EventHandler, AutoCloseable {
+
+    public static final String CONFIG_MAX_IN_FLIGHT     = "nio.event.handler.max.in.flight";
+    public static final String CONFIG_IO_THREADS        = "nio.event.handler.io.threads";
+    public static final String CONFIG_MAX_CONNECTIONS   = "nio.event.handler.max.connections";
+    public static final String CONFIG_MAX_PER_ROUTE     = "nio.event.handler.max.per.route";
+    public static final String CONFIG_ACQUIRE_TIMEOUT   = "nio.event.handler.acquire.timeout";
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    public static final int DEFAULT_IO_THREADS = 1;
+    public static final int DEFAULT_MAX_CONNECTIONS = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private static final Logger logger = LoggerFactory.getLogger(NioEventHandler.class);
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final long acquireTimeoutMillis;
+    private final long closeTimeout;
+    private final TimeUnit closeTimeoutUnit;
+    private final boolean compressionEnabled;
+    private final EventSpool eventSpool;
+    private final ExecutorService replayExecutor;
+
+    private volatile boolean closed = false;
+
+    @VisibleForTesting
+    NioEventHandler(CloseableHttpAsyncClient httpClient,
+                    int maxInFlight,
+                    long acquireTimeoutMillis,
+                    long closeTimeout,
+                    TimeUnit closeTimeoutUnit,
+                    boolean compressionEnabled,
+                    EventSpool eventSpool) {
+        this.httpClient = httpClient;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.closeTimeout = closeTimeout;
+        this.closeTimeoutUnit = closeTimeoutUnit;
+        this.compressionEnabled = compressionEnabled;
+        this.eventSpool = eventSpool;
+        this.replayExecutor = eventSpool == null ? null :
+            Executors.newSingleThreadExecutor(new NamedThreadFactory("optimizely-nio-event-replay-%d", true));
+
+        httpClient.start();
+        replaySpooled();
+    }
+
+    @Override
+    public void dispatchEvent(LogEvent logEvent) {
+        if (closed) {
+            rejected(logEvent, "event handler is closed");
+            return;
+        }
+
+        try {
+            if (!inFlight.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected(logEvent, "too many events in flight");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected(logEvent, "interrupted while waiting for an event in flight");
+            return;
+        }
+
+        send(logEvent);
+    }
+
+    /**
+     * Returns the number of requests sent and not yet completed.
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Sends the event, holding an in flight permit that is released once the request completes.
+     */
+    private void send(LogEvent logEvent) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Dispatching event to URL {} with params {} and payload \"{}\".",
+                logEvent.getEndpointUrl(), logEvent.getRequestParams(), logEvent.getBody());
+        }
+
+        HttpRequestBase request;
+        try {
+            request = EventRequests.createRequest(logEvent, compressionEnabled,
+                AsyncEventHandler.DEFAULT_COMPRESSION_LEVEL, AsyncEventHandler.DEFAULT_COMPRESSION_MIN_BYTES);
+        } catch (URISyntaxException e) {
+            inFlight.release();
+            logger.error("unable to parse generated URI", e);
+            return;
+        } catch (IOException e) {
+            inFlight.release();
+            logger.error("unable to compress event payload", e);
+            return;
+        }
+
+        try {
+            httpClient.execute(request, new DispatchCallback(logEvent));
+        } catch (RuntimeException e) {
+            // the client was closed concurrently
+            inFlight.release();
+            rejected(logEvent, e.getMessage());
+        }
+    }
+
+    private void rejected(LogEvent logEvent, String reason) {
+        if (spool(logEvent)) {
+            logger.warn("event dispatch rejected, {}, event spooled", reason);
+        } else {
+            logger.error("event dispatch rejected, {}", reason);
+        }
+    }
+
+    private boolean spool(LogEvent logEvent) {
+        return eventSpool != null && eventSpool.append(logEvent);
+    }
+
+    /**
+     * Hands the replay of a spooled event to the replay thread, as it is called from the I/O reactor.
+     */
+    private void replaySpooled() {
+        if (replayExecutor == null || closed || eventSpool.isEmpty()) {
+            return;
+        }
+
+        try {
+            replayExecutor.execute(this::dispatchSpooled);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Replay executor is shut down, not replaying spooled events.");
+        }
+    }
+
+    /**
+     * Sends the oldest spooled event, if any, when a request can be sent without waiting.
+     */
+    private void dispatchSpooled() {
+        if (eventSpool == null || closed || !inFlight.tryAcquire()) {
+            return;
+        }
+
+        LogEvent logEvent = eventSpool.poll();
+        if (logEvent == null) {
+            inFlight.release();
+            return;
+        }
+        send(logEvent);
+    }
+
+    /**
+     * Waits up to the close timeout for the requests in flight to complete, and closes the client.
+     */
+    @Override
+    public void close() {
+        logger.info("event handler shutting down. Waiting for events in flight");
+        closed = true;
+        if (replayExecutor != null) {
+            replayExecutor.shutdown();
+        }
+        try {
+            if (inFlight.tryAcquire(maxInFlight, closeTimeout, closeTimeoutUnit)) {
+                inFlight.release(maxInFlight);
+            } else {
+                logger.warn("timed out waiting for events in flight. {} events were dropped.", getInFlightCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.error("unable to close event dispatcher http client", e);
+            }
+        }
+        logger.info("event handler shutdown complete");
+    }
+
+    /**
+     * Completes an event dispatch on an I/O reactor thread.
+     */
+    private class DispatchCallback implements FutureCallback<HttpResponse> {
+
+        private final LogEvent logEvent;
+
+        DispatchCallback(LogEvent logEvent) {
+            this.logEvent = logEvent;
+        }
+
+        @Override
+        public void completed(HttpResponse response) {
+            inFlight.release();
+            int status = response.getStatusLine().getStatusCode();
+            if (EventRequests.isSuccess(status)) {
+                replaySpooled();
+            } else if ((status >= 500 || status == 429) && spool(logEvent)) {
+                logger.warn("event dispatch failed with status {}, event spooled", status);
+            } else {
+                logger.error("event dispatch failed, unexpected response from event endpoint, status: {}", status);
+            }
+        }
+
+        @Override
+        public void failed(Exception e) {
+            inFlight.release();
+            if (spool(logEvent)) {
+                logger.warn("event dispatch failed, event spooled", e);
+            } else {
+                logger.error("event dispatch failed", e);
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            inFlight.release();
+            logger.warn("event dispatch cancelled");
+        }
+    }
+
+    //======== Builder ========//
+
+    public static Builder builder() { return new Builder(); }
+
+    public static class Builder {
+
+        int maxInFlight = PropertyUtils.getInteger(CONFIG_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT);
+        int ioThreads = PropertyUtils.getInteger(CONFIG_IO_THREADS, DEFAULT_IO_THREADS);
+        int maxTotalConnections = PropertyUtils.getInteger(CONFIG_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+        int maxPerRoute = PropertyUtils.getInteger(CONFIG_MAX_PER_ROUTE, DEFAULT_MAX_PER_ROUTE);
+        long acquireTimeoutMillis = PropertyUtils.getLong(CONFIG_ACQUIRE_TIMEOUT, DEFAULT_ACQUIRE_TIMEOUT);
+        private long closeTimeout = Long.MAX_VALUE;
+        private TimeUnit closeTimeoutUnit = TimeUnit.MILLISECONDS;
+        private boolean compressionEnabled = false;
+        private EventSpool eventSpool = null;
+
+        /**
+         * Sets the maximum number of requests in flight at a time.
+         */
+        public Builder withMaxInFlight(int maxInFlight) {
+            if (maxInFlight <= 0) {
+                logger.warn("Max in flight cannot be <= 0. Keeping default value: {}", this.maxInFlight);
+                return this;
+            }
+
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets the number of I/O reactor threads. A single thread keeps many requests in flight.
+         */
+        public Builder withIoThreads(int ioThreads) {
+            if (ioThreads <= 0) {
+                logger.warn("I/O threads cannot be <= 0. Keeping default value: {}", this.ioThreads);
+                return this;
+            }
+
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        public Builder withMaxTotalConnections(int maxTotalConnections) {
+            if (maxTotalConnections <= 0) {
+                logger.warn("Max total connections cannot be <= 0. Keeping default value: {}", this.maxTotalConnections);
+                return this;
+            }
+
+            this.maxTotalConnections = maxTotalConnections;
+            return this;
+        }
+
+        public Builder withMaxPerRoute(int maxPerRoute) {
+            if (maxPerRoute <= 0) {
+                logger.warn("Max per route cannot be <= 0. Keeping default value: {}", this.maxPerRoute);
+                return this;
+            }
+
+            this.maxPerRoute = maxPerRoute;
+            return this;
+        }
+
+        /**
+         * Sets how long dispatchEvent waits for a request to complete when the maximum is in flight.
+         */
+        public Builder withAcquireTimeout(long acquireTimeout, TimeUnit unit) {
+            if (acquireTimeout < 0) {
+                logger.warn("Acquire timeout cannot be < 0. Keeping default value: {}", this.acquireTimeoutMillis);
+                return this;
+            }
+
+            this.acquireTimeoutMillis = unit.toMillis(acquireTimeout);
+            return this;
+        }
+
+        public Builder withCloseTimeout(long closeTimeout, TimeUnit unit) {
+            this.closeTimeout = closeTimeout;
+            this.closeTimeoutUnit = unit;
+            return this;
+        }
+
+        /**
+         * Enables gzip encoding of event payloads. Disabled by default.
+         */
+        public Builder withCompression(boolean compressionEnabled) {
+            this.compressionEnabled = compressionEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the EventSpool that keeps events which can't be delivered.
+         * The spool is not closed with the handler.
+         */
+        public Builder withEventSpool(EventSpool eventSpool) {
+            this.eventSpool = eventSpool;
+            return this;
+        }
+
+        public NioEventHandler build() {
+            IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setConnectTimeout(HttpClientUtils.DEFAULT_REQUEST_CONFIG.getConnectTimeout())
+                .setSoTimeout(HttpClientUtils.DEFAULT_REQUEST_CONFIG.getSocketTimeout())
+                .build();
+
+            CloseableHttpAsyncClient httpClient = HttpAsyncClients.custom()
+                .setDefaultIOReactorConfig(ioReactorConfig)
+                .setDefaultRequestConfig(HttpClientUtils.DEFAULT_REQUEST_CONFIG)
+                .setMaxConnTotal(maxTotalConnections)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setThreadFactory(new NamedThreadFactory("optimizely-event-reactor-thread-%s", true))
+                .disableCookieManagement()
+                .useSystemProperties()
+                .build();
+
+            return new NioEventHandler(
+                httpClient,
+                maxInFlight,
+                acquireTimeoutMillis,
+                closeTimeout,
+                closeTimeoutUnit,
+                compressionEnabled,
+                eventSpool
+            );
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RetryPolicy decides whether and when a failed event dispatch is attempted again.
+ *
+ * Attempts are spaced by exponential backoff: the initial backoff doubles with every retry up to the
+ * maximum backoff, and a random fraction of each delay, up to the jitter, is taken off so clients don't
+ * retry in lockstep. I/O errors and 429 or 5xx responses are retried. A Retry-After from the endpoint is
+ * honored when it is within the maximum backoff, longer ones are not retried.
+ *
+ * At most maxRetriesInFlight retries wait at a time, so retries can't crowd out new events.
+ */
+public final class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30000;
+    public static final double DEFAULT_JITTER = 0.5;
+    public static final int DEFAULT_MAX_RETRIES_IN_FLIGHT = 100;
+
+    /**
+     * Dispatches every event once.
+     */
+    public static final RetryPolicy NO_RETRY = new RetryPolicy(1, 0, 0, 0, 0);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double jitter;
+    private final int maxRetriesInFlight;
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, double jitter, int maxRetriesInFlight) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("backoff must satisfy 0 <= initialBackoffMillis <= maxBackoffMillis");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        if (maxRetriesInFlight < 0) {
+            throw new IllegalArgumentException("maxRetriesInFlight can't be negative");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.jitter = jitter;
+        this.maxRetriesInFlight = maxRetriesInFlight;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public int getMaxRetriesInFlight() {
+        return maxRetriesInFlight;
+    }
+
+    /**
+     * Returns whether a response with the given status is worth retrying.
+     */
+    public boolean isRetryableStatus(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * Returns the delay before the given attempt, the first retry being attempt 2, or -1 if the attempt
+     * should not be made.
+     *
+     * @param attempt          the attempt to make
+     * @param retryAfterMillis the delay asked for by the endpoint, or 0
+     */
+    public long getDelayMillis(int attempt, long retryAfterMillis) {
+        if (attempt < 2 || attempt > maxAttempts || retryAfterMillis > maxBackoffMillis) {
+            return -1;
+        }
+
+        long backoff = initialBackoffMillis;
+        for (int i = 2; i < attempt && backoff < maxBackoffMillis; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoffMillis);
+
+        long delay = backoff - (long) (backoff * jitter * ThreadLocalRandom.current().nextDouble());
+        return Math.max(delay, retryAfterMillis);
+    }
+}
@@ -16,17 +16,47 @@
  */
 package com.optimizely.ab;
 
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.conn.HttpHostConnectException;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -81,4 +111,87 @@ public class OptimizelyHttpClientTest {
         OptimizelyHttpClient optimizelyHttpClient = new OptimizelyHttpClient(mockHttpClient);
         assertTrue(optimizelyHttpClient.execute(httpUriRequest, responseHandler));
     }
+
+    @Test
+    public void testInvalidMaxConcurrentStreamsUsesDefault() throws Exception {
+        OptimizelyHttpClient.Builder builder = OptimizelyHttpClient.builder();
+        assertSame(builder, builder.withMaxConcurrentStreams(0));
+        assertEquals(100, builder.maxConcurrentStreams);
+        builder.withMaxConcurrentStreams(-1);
+        assertEquals(100, builder.maxConcurrentStreams);
+        builder.withMaxConcurrentStreams(8);
+        assertEquals(8, builder.maxConcurrentStreams);
+    }
+
+    @Test
+    public void testHttp2WithoutHttpClient5UsesHttp1() throws Exception {
+        OptimizelyHttpClient.Builder builder = OptimizelyHttpClient.builder().withHttp2(true);
+        builder.http2ClientClassName = "org.apache.hc.client5.MissingClass";
+        try (OptimizelyHttpClient optimizelyHttpClient = builder.build()) {
+            assertFalse(optimizelyHttpClient.isHttp2());
+            assertNotNull(optimizelyHttpClient.getHttpClient());
+        }
+    }
+
+    @Test
+    public void testHttp2() throws Exception {
+        Set<String> connections = ConcurrentHashMap.newKeySet();
+        Set<String> protocols = ConcurrentHashMap.newKeySet();
+        HttpAsyncServer server = H2ServerBootstrap.bootstrap()
+            .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+            .register("*", new AsyncServerRequestHandler<Message<HttpRequest, String>>() {
+                @Override
+                public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(HttpRequest request, EntityDetails entityDetails, HttpContext context) {
+                    return new BasicRequestConsumer<>(entityDetails != null ? new StringAsyncEntityConsumer() : null);
+                }
+
+                @Override
+                public void handle(Message<HttpRequest, String> message, ResponseTrigger responseTrigger, HttpContext context) throws org.apache.hc.core5.http.HttpException, IOException {
+                    HttpCoreContext coreContext = HttpCoreContext.adapt(context);
+                    connections.add(coreContext.getEndpointDetails().getRemoteAddress().toString());
+                    protocols.add(coreContext.getProtocolVersion().toString());
+                    String body = message.getBody() != null ? message.getBody() : message.getHead().getPath();
+                    responseTrigger.submitResponse(AsyncResponseBuilder.create(200)
+                        .setEntity(AsyncEntityProducers.create(body, ContentType.TEXT_PLAIN))
+                        .build(), context);
+                }
+            })
+            .create();
+        server.start();
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress("127.0.0.1", 0)).get(5, TimeUnit.SECONDS);
+        String baseUrl = "http://127.0.0.1:" + ((InetSocketAddress) endpoint.getAddress()).getPort();
+
+        OptimizelyHttpClient optimizelyHttpClient = OptimizelyHttpClient.builder().withHttp2(true).build();
+        assertTrue(optimizelyHttpClient.getTransport() instanceof Http2Transport);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                HttpGet get = new HttpGet(baseUrl + "/datafile/" + i);
+                responses.add(executor.submit(() -> optimizelyHttpClient.execute(get, response -> {
+                    assertEquals(200, response.getStatusLine().getStatusCode());
+                    assertEquals(2, response.getStatusLine().getProtocolVersion().getMajor());
+                    return EntityUtils.toString(response.getEntity());
+                })));
+            }
+            for (int i = 0; i < 20; i++) {
+                assertEquals("/datafile/" + i, responses.get(i).get(5, TimeUnit.SECONDS));
+            }
+
+            HttpPost post = new HttpPost(baseUrl + "/v1/events");
+            post.setEntity(new StringEntity("{\"account_id\":\"12345\"}"));
+            post.addHeader("Content-Type", "application/json");
+            HttpResponse response = optimizelyHttpClient.execute(post);
+            assertEquals("{\"account_id\":\"12345\"}", EntityUtils.toString(response.getEntity()));
+        } finally {
+            executor.shutdownNow();
+            optimizelyHttpClient.close();
+            server.close(CloseMode.IMMEDIATE);
+        }
+
+        // all requests are multiplexed over one connection
+        assertEquals(1, connections.size());
+        assertEquals(1, protocols.size());
+        assertEquals("HTTP/2.0", protocols.iterator().next());
+    }
 }
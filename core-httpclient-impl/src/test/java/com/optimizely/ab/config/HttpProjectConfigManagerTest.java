@@ -26,6 +26,8 @@ import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHttpResponse;
 import org.junit.After;
@@ -36,8 +38,15 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.optimizely.ab.config.HttpProjectConfigManager.*;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -175,6 +184,22 @@ public class HttpProjectConfigManagerTest {
         assertEquals(request.getHeaders("Authorization")[0].getValue(), "Bearer auth-token");
     }
 
+    @Test
+    public void testCreateHttpRequestWithETag() throws Exception {
+        HttpGet request = projectConfigManager.createHttpRequest();
+        assertEquals(ACCEPT_ENCODING, request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue());
+        assertNull(request.getFirstHeader(HttpHeaders.IF_NONE_MATCH));
+
+        HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        getResponse.setEntity(new StringEntity(datafileString));
+        getResponse.setHeader(HttpHeaders.ETAG, "\"abc123\"");
+        projectConfigManager.getDatafileFromResponse(getResponse);
+
+        assertEquals("\"abc123\"", projectConfigManager.getETag());
+        request = projectConfigManager.createHttpRequest();
+        assertEquals("\"abc123\"", request.getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue());
+    }
+
     @Test
     public void testPoll() throws Exception {
         projectConfigManager = builder()
@@ -291,6 +316,93 @@ public class HttpProjectConfigManagerTest {
         projectConfigManager.getDatafileFromResponse(getResponse);
     }
 
+    @Test
+    public void testGetDatafileHttpResponseGzip() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(datafileString.getBytes(StandardCharsets.UTF_8));
+        }
+
+        HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        getResponse.setEntity(new ByteArrayEntity(compressed.toByteArray(), ContentType.APPLICATION_JSON));
+        getResponse.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        assertEquals(datafileString, projectConfigManager.getDatafileFromResponse(getResponse));
+    }
+
+    @Test
+    public void testGetDatafileHttpResponseDeflate() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(datafileString.getBytes(StandardCharsets.UTF_8));
+        }
+
+        HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        getResponse.setEntity(new ByteArrayEntity(compressed.toByteArray(), ContentType.APPLICATION_JSON));
+        getResponse.setHeader(HttpHeaders.CONTENT_ENCODING, "deflate");
+
+        assertEquals(datafileString, projectConfigManager.getDatafileFromResponse(getResponse));
+    }
+
+    @Test(expected = ClientProtocolException.class)
+    public void testGetDatafileHttpResponseUnsupportedEncoding() throws Exception {
+        HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        getResponse.setEntity(new StringEntity(datafileString));
+        getResponse.setHeader(HttpHeaders.CONTENT_ENCODING, "br");
+
+        projectConfigManager.getDatafileFromResponse(getResponse);
+    }
+
+    @Test
+    public void testETagIsKeptOnlyAfterTheDatafileIsRead() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(datafileString.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] truncated = Arrays.copyOf(compressed.toByteArray(), compressed.size() / 2);
+
+        HttpResponse truncatedResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        truncatedResponse.setEntity(new ByteArrayEntity(truncated, ContentType.APPLICATION_JSON));
+        truncatedResponse.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        truncatedResponse.setHeader(HttpHeaders.ETAG, "\"abc123\"");
+        truncatedResponse.setHeader(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT");
+        try {
+            projectConfigManager.getDatafileFromResponse(truncatedResponse);
+            fail("a truncated datafile should not be read");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // the retry fetches the whole datafile instead of getting a 304 for one that was never received
+        assertNull(projectConfigManager.getETag());
+        assertNull(projectConfigManager.getLastModified());
+        HttpGet request = projectConfigManager.createHttpRequest();
+        assertNull(request.getFirstHeader(HttpHeaders.IF_NONE_MATCH));
+        assertNull(request.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE));
+
+        HttpResponse retryResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        retryResponse.setEntity(new ByteArrayEntity(compressed.toByteArray(), ContentType.APPLICATION_JSON));
+        retryResponse.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        retryResponse.setHeader(HttpHeaders.ETAG, "\"abc123\"");
+        assertEquals(datafileString, projectConfigManager.getDatafileFromResponse(retryResponse));
+        assertEquals("\"abc123\"", projectConfigManager.getETag());
+    }
+
+    @Test
+    public void testPollClosesResponse() throws Exception {
+        reset(mockHttpClient);
+        CloseableHttpResponse notModifiedResponse = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+
+        when(statusLine.getStatusCode()).thenReturn(304);
+        when(notModifiedResponse.getStatusLine()).thenReturn(statusLine);
+        when(mockHttpClient.execute(any(HttpGet.class)))
+            .thenReturn(notModifiedResponse);
+
+        assertNull(projectConfigManager.poll());
+        verify(notModifiedResponse).close();
+    }
+
     @Test
     public void testInvalidPayload() throws Exception {
         reset(mockHttpClient);
@@ -0,0 +1,316 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.optimizely.ab.OptimizelyHttpClient;
+import com.optimizely.ab.notification.NotificationCenter;
+import com.optimizely.ab.notification.UpdateConfigNotification;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class StreamingProjectConfigManagerTest {
+
+    private static final String REVISION = "1480511547";
+
+    private String datafileString;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private StreamingProjectConfigManager projectConfigManager;
+
+    private final AtomicReference<String> datafile = new AtomicReference<>();
+    private final AtomicInteger datafileRequests = new AtomicInteger();
+    private final AtomicInteger streamStatus = new AtomicInteger(200);
+    private final BlockingQueue<String> streamEvents = new LinkedBlockingQueue<>();
+    private final List<String> lastEventIds = new CopyOnWriteArrayList<>();
+    private final CountDownLatch serverStopped = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        datafileString = Resources.toString(Resources.getResource("valid-project-config-v4.json"), Charsets.UTF_8);
+        datafile.set(withRevision("1"));
+
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/datafile", exchange -> {
+            datafileRequests.incrementAndGet();
+            byte[] body = datafile.get().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/stream", this::handleStream);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (projectConfigManager != null) {
+            projectConfigManager.close();
+        }
+        serverStopped.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Writes queued events to the stream. A null event, signalled by an empty string, ends the response.
+     */
+    private void handleStream(HttpExchange exchange) throws IOException {
+        lastEventIds.add(String.valueOf(exchange.getRequestHeaders().getFirst(StreamingProjectConfigManager.LAST_EVENT_ID)));
+
+        int status = streamStatus.get();
+        if (status != 200) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", StreamingProjectConfigManager.TEXT_EVENT_STREAM);
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (serverStopped.getCount() > 0) {
+                String event = streamEvents.poll(50, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    continue;
+                }
+                if (event.isEmpty()) {
+                    return;
+                }
+                out.write(event.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String withRevision(String revision) {
+        return datafileString.replace("\"revision\": \"" + REVISION + "\"", "\"revision\": \"" + revision + "\"");
+    }
+
+    private static String datafileEvent(String id, String datafile) {
+        StringBuilder event = new StringBuilder("id: ").append(id).append('\n').append("event: datafile\n");
+        for (String line : datafile.split("\n", -1)) {
+            event.append("data: ").append(line).append('\n');
+        }
+        return event.append('\n').toString();
+    }
+
+    private String url(String path) {
+        return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + path;
+    }
+
+    private StreamingProjectConfigManager build(long pollingMillis, NotificationCenter notificationCenter) {
+        return (StreamingProjectConfigManager) HttpProjectConfigManager.builder()
+            .withUrl(url("/datafile"))
+            .withStreamUrl(url("/stream"))
+            .withPollingInterval(pollingMillis, TimeUnit.MILLISECONDS)
+            .withStreamReconnectDelay(50L, TimeUnit.MILLISECONDS)
+            .withNotificationCenter(notificationCenter)
+            .build();
+    }
+
+    private static BlockingQueue<String> revisions(NotificationCenter notificationCenter, ProjectConfigManager manager) {
+        BlockingQueue<String> revisions = new LinkedBlockingQueue<>();
+        notificationCenter.addNotificationHandler(UpdateConfigNotification.class,
+            notification -> revisions.add(manager.getConfig().getRevision()));
+        return revisions;
+    }
+
+    private static void awaitRevision(BlockingQueue<String> revisions, String revision) throws InterruptedException {
+        String received;
+        do {
+            received = revisions.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Timed out waiting for revision " + revision, received);
+        } while (!revision.equals(received));
+    }
+
+    private static void awaitStreaming(StreamingProjectConfigManager manager, boolean streaming) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.isStreaming() != streaming) {
+            assertTrue("Timed out waiting for streaming=" + streaming, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testBuilderWithStreamUrl() {
+        projectConfigManager = build(TimeUnit.HOURS.toMillis(1), new NotificationCenter());
+
+        assertEquals(url("/stream"), projectConfigManager.getStreamUri().toString());
+        assertEquals("1", projectConfigManager.getConfig().getRevision());
+    }
+
+    @Test
+    public void testPushedDatafileIsApplied() throws Exception {
+        NotificationCenter notificationCenter = new NotificationCenter();
+        projectConfigManager = build(TimeUnit.HOURS.toMillis(1), notificationCenter);
+        BlockingQueue<String> revisions = revisions(notificationCenter, projectConfigManager);
+        awaitStreaming(projectConfigManager, true);
+        Thread.sleep(100);
+        int fetches = datafileRequests.get();
+
+        streamEvents.add(datafileEvent("42", withRevision("2")));
+        awaitRevision(revisions, "2");
+
+        // The pushed datafile is applied without another request to the datafile URL.
+        assertEquals(fetches, datafileRequests.get());
+    }
+
+    @Test
+    public void testChangeNotificationFetchesDatafile() throws Exception {
+        NotificationCenter notificationCenter = new NotificationCenter();
+        projectConfigManager = build(TimeUnit.HOURS.toMillis(1), notificationCenter);
+        BlockingQueue<String> revisions = revisions(notificationCenter, projectConfigManager);
+        awaitStreaming(projectConfigManager, true);
+
+        datafile.set(withRevision("3"));
+        streamEvents.add(": keep-alive\n\nevent: update\ndata: 3\n\n");
+        awaitRevision(revisions, "3");
+    }
+
+    @Test
+    public void testInvalidPushedDatafileFetchesDatafile() throws Exception {
+        NotificationCenter notificationCenter = new NotificationCenter();
+        projectConfigManager = build(TimeUnit.HOURS.toMillis(1), notificationCenter);
+        BlockingQueue<String> revisions = revisions(notificationCenter, projectConfigManager);
+        awaitStreaming(projectConfigManager, true);
+
+        datafile.set(withRevision("4"));
+        streamEvents.add("event: datafile\ndata: {\n\n");
+        awaitRevision(revisions, "4");
+    }
+
+    @Test
+    public void testPollingWhileStreamUnavailable() throws Exception {
+        streamStatus.set(503);
+        NotificationCenter notificationCenter = new NotificationCenter();
+        projectConfigManager = build(100, notificationCenter);
+        BlockingQueue<String> revisions = revisions(notificationCenter, projectConfigManager);
+
+        datafile.set(withRevision("5"));
+        awaitRevision(revisions, "5");
+        assertFalse(projectConfigManager.isStreaming());
+
+        // Once the stream is reachable again polling is suspended.
+        streamStatus.set(200);
+        awaitStreaming(projectConfigManager, true);
+        Thread.sleep(300);
+        int fetches = datafileRequests.get();
+        Thread.sleep(300);
+        assertEquals(fetches, datafileRequests.get());
+    }
+
+    @Test
+    public void testReconnectAfterDisconnect() throws Exception {
+        NotificationCenter notificationCenter = new NotificationCenter();
+        projectConfigManager = build(TimeUnit.HOURS.toMillis(1), notificationCenter);
+        BlockingQueue<String> revisions = revisions(notificationCenter, projectConfigManager);
+        awaitStreaming(projectConfigManager, true);
+
+        streamEvents.add(datafileEvent("7", withRevision("6")));
+        awaitRevision(revisions, "6");
+
+        // Changes made while disconnected are caught up with a fetch, and the stream resumes from the last event id.
+        datafile.set(withRevision("8"));
+        streamEvents.add("");
+        awaitRevision(revisions, "8");
+        awaitStreaming(projectConfigManager, true);
+
+        assertEquals("null", lastEventIds.get(0));
+        assertEquals("7", lastEventIds.get(lastEventIds.size() - 1));
+    }
+
+    @Test
+    public void testHttp2ClientStreamsOverHttp1() throws Exception {
+        OptimizelyHttpClient http2Client = OptimizelyHttpClient.builder().withHttp2(true).build();
+        NotificationCenter notificationCenter = new NotificationCenter();
+        projectConfigManager = (StreamingProjectConfigManager) HttpProjectConfigManager.builder()
+            .withUrl(url("/datafile"))
+            .withStreamUrl(url("/stream"))
+            .withOptimizelyHttpClient(http2Client)
+            .withPollingInterval(1L, TimeUnit.HOURS)
+            .withNotificationCenter(notificationCenter)
+            .build(true);
+        BlockingQueue<String> revisions = revisions(notificationCenter, projectConfigManager);
+
+        // the stream server only speaks HTTP/1.1, so events arrive only if the stream is not read over HTTP/2
+        awaitStreaming(projectConfigManager, true);
+        streamEvents.add(datafileEvent("1", withRevision("9")));
+        awaitRevision(revisions, "9");
+        http2Client.close();
+    }
+
+    @Test
+    public void testCloseStopsStream() throws Exception {
+        projectConfigManager = build(TimeUnit.HOURS.toMillis(1), new NotificationCenter());
+        awaitStreaming(projectConfigManager, true);
+
+        projectConfigManager.close();
+
+        assertFalse(projectConfigManager.isStreaming());
+        assertFalse(projectConfigManager.isRunning());
+    }
+
+    @Test
+    public void testReadEvents() throws Exception {
+        projectConfigManager = build(TimeUnit.HOURS.toMillis(1), new NotificationCenter());
+        projectConfigManager.close();
+
+        String stream = ": comment\n" +
+            "retry: 2500\n" +
+            "id: 9\n" +
+            "event: unknown-field-only\n" +
+            "\n" +
+            "id:10\n";
+        projectConfigManager.readEvents(new BufferedReader(new StringReader(stream)));
+
+        HttpGet request = projectConfigManager.createStreamRequest();
+        assertEquals("10", request.getFirstHeader(StreamingProjectConfigManager.LAST_EVENT_ID).getValue());
+        assertEquals(StreamingProjectConfigManager.TEXT_EVENT_STREAM, request.getFirstHeader("Accept").getValue());
+    }
+}
@@ -20,33 +20,54 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 import com.optimizely.ab.OptimizelyHttpClient;
 import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.optimizely.ab.event.internal.payload.Attribute;
+import com.optimizely.ab.event.internal.payload.Visitor;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static com.optimizely.ab.event.AsyncEventHandler.builder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -61,6 +82,9 @@ public class AsyncEventHandlerTest {
     @Mock
     ExecutorService mockExecutorService;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testDispatch() throws Exception {
         AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService());
@@ -124,6 +148,72 @@ public class AsyncEventHandlerTest {
         verify(mockHttpClient).close();
     }
 
+    @Test
+    public void testRejectedEventsAreSpooled() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, mockExecutorService, eventSpool);
+        doThrow(RejectedExecutionException.class).when(mockExecutorService).execute(any(Runnable.class));
+
+        eventHandler.dispatchEvent(createLogEvent());
+        assertEquals(1, eventSpool.size());
+        eventSpool.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFailedEventsAreSpooledAndRetried() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService(), eventSpool);
+
+        when(mockHttpClient.execute(any(HttpGet.class), any(ResponseHandler.class)))
+            .thenThrow(new HttpResponseException(503, "unavailable"))
+            .thenThrow(new HttpResponseException(400, "bad request"))
+            .thenReturn(null);
+
+        eventHandler.dispatchEvent(createLogEvent());
+        assertEquals(1, eventSpool.size());
+
+        // client errors are not retried
+        eventHandler.dispatchEvent(createLogEvent());
+        assertEquals(1, eventSpool.size());
+
+        // a successful dispatch sends the spooled event again
+        eventHandler.dispatchEvent(createLogEvent());
+        assertTrue(eventSpool.isEmpty());
+        verify(mockHttpClient, times(4)).execute(any(HttpGet.class), any(ResponseHandler.class));
+        eventSpool.close();
+    }
+
+    @Test
+    public void testSpooledEventsAreDispatchedOnBuild() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        RecordedRequest recorded = new RecordedRequest();
+        CountDownLatch received = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/events", exchange -> {
+            recorded.body = readFully(exchange.getRequestBody());
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            received.countDown();
+        });
+        server.start();
+
+        String endpoint = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/v1/events";
+        EventBatch eventBatch = new EventBatch.Builder().setAccountId("12345").setVisitors(Collections.emptyList()).build();
+        LogEvent logEvent = new LogEvent(LogEvent.RequestMethod.POST, endpoint, Collections.emptyMap(), eventBatch);
+        eventSpool.append(logEvent);
+
+        AsyncEventHandler eventHandler = builder().withEventSpool(eventSpool).withCloseTimeout(5, TimeUnit.SECONDS).build();
+        try {
+            assertTrue("spooled event was not received", received.await(5, TimeUnit.SECONDS));
+            assertEquals(logEvent.getBody(), new String(recorded.body, StandardCharsets.UTF_8));
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+            eventSpool.close();
+        }
+    }
+
     @Test
     public void testInvalidQueueCapacity() {
         AsyncEventHandler.Builder builder = builder();
@@ -140,8 +230,410 @@ public class AsyncEventHandlerTest {
         assertEquals(expected, builder.numWorkers);
     }
 
+    @Test
+    public void testCompressedDispatch() throws Exception {
+        RecordedRequest request = dispatchToLocalServer(builder()
+            .withCompression(true)
+            .withCompressionLevel(9)
+            .withCompressionMinBytes(0));
+
+        assertEquals("gzip", request.contentEncoding);
+        assertEquals("application/json", request.contentType);
+        assertEquals(request.expectedBody, decode(request));
+        assertTrue(request.body.length * 5 < request.expectedBody.length());
+    }
+
+    @Test
+    public void testUncompressedBelowMinBytes() throws Exception {
+        RecordedRequest request = dispatchToLocalServer(builder()
+            .withCompression(true)
+            .withCompressionMinBytes(Integer.MAX_VALUE));
+
+        assertNull(request.contentEncoding);
+        assertEquals(request.expectedBody, decode(request));
+    }
+
+    @Test
+    public void testUncompressedByDefault() throws Exception {
+        RecordedRequest request = dispatchToLocalServer(builder());
+
+        assertNull(request.contentEncoding);
+        assertEquals(request.expectedBody, decode(request));
+    }
+
+    @Test
+    public void testInvalidCompressionLevel() {
+        AsyncEventHandler.Builder builder = builder();
+        int expected = builder.compressionLevel;
+        builder.withCompressionLevel(10);
+        assertEquals(expected, builder.compressionLevel);
+    }
+
+    @Test
+    public void testRetryOnServerError() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(1);
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            if (requests.incrementAndGet() < 3) {
+                exchange.sendResponseHeaders(503, -1);
+            } else {
+                exchange.sendResponseHeaders(204, -1);
+                delivered.countDown();
+            }
+            exchange.close();
+        });
+
+        AsyncEventHandler eventHandler = builder()
+            .withRetryMaxAttempts(3)
+            .withRetryBackoff(10, 50, TimeUnit.MILLISECONDS)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            eventHandler.dispatchEvent(createLogEvent(server));
+            assertTrue("event was not delivered", delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(3, requests.get());
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRetryHonorsRetryAfter() throws Exception {
+        List<Long> requestTimes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch delivered = new CountDownLatch(1);
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            requestTimes.add(System.nanoTime());
+            if (requestTimes.size() == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.sendResponseHeaders(429, -1);
+            } else {
+                exchange.sendResponseHeaders(204, -1);
+                delivered.countDown();
+            }
+            exchange.close();
+        });
+
+        AsyncEventHandler eventHandler = builder()
+            .withRetryMaxAttempts(2)
+            .withRetryBackoff(10, 5000, TimeUnit.MILLISECONDS)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            eventHandler.dispatchEvent(createLogEvent(server));
+            assertTrue("event was not delivered", delivered.await(5, TimeUnit.SECONDS));
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(requestTimes.get(1) - requestTimes.get(0));
+            assertTrue("retried after " + waitedMillis + "ms", waitedMillis >= 900);
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testNoRetryOnClientError() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+        });
+
+        AsyncEventHandler eventHandler = builder()
+            .withRetryMaxAttempts(3)
+            .withRetryBackoff(1, 1, TimeUnit.MILLISECONDS)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            eventHandler.dispatchEvent(createLogEvent(server));
+            Thread.sleep(200);
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testRetriesAreLimitedInFlight() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+
+        AsyncEventHandler eventHandler = builder()
+            .withNumWorkers(1)
+            .withRetryMaxAttempts(2)
+            .withRetryBackoff(300, 300, TimeUnit.MILLISECONDS)
+            .withRetryJitter(0)
+            .withRetryMaxInFlight(1)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            for (int i = 0; i < 3; i++) {
+                eventHandler.dispatchEvent(createLogEvent(server));
+            }
+            Thread.sleep(1000);
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+        }
+        // three first attempts and a single retry
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    public void testPendingRetriesAreSpooledOnClose() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        CountDownLatch failed = new CountDownLatch(1);
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            failed.countDown();
+        });
+
+        AsyncEventHandler eventHandler = builder()
+            .withRetryMaxAttempts(2)
+            .withRetryBackoff(1, 1, TimeUnit.MINUTES)
+            .withEventSpool(eventSpool)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        LogEvent logEvent = createLogEvent(server);
+        try {
+            eventHandler.dispatchEvent(logEvent);
+            assertTrue("event was not sent", failed.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+        }
+        assertEquals(1, eventSpool.size());
+        assertEquals(logEvent.getBody(), eventSpool.poll().getBody());
+        eventSpool.close();
+    }
+
+    @Test
+    public void testOverflowPolicy() throws Exception {
+        CountDownLatch dispatching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            requests.incrementAndGet();
+            dispatching.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+
+        AsyncEventHandler eventHandler = builder()
+            .withQueueCapacity(1)
+            .withNumWorkers(1)
+            .withOverflowPolicy(OverflowPolicy.dropOldest())
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            eventHandler.dispatchEvent(createLogEvent(server));
+            assertTrue("event was not sent", dispatching.await(5, TimeUnit.SECONDS));
+            // the worker is busy, the second event is queued and dropped for the third
+            eventHandler.dispatchEvent(createLogEvent(server));
+            eventHandler.dispatchEvent(createLogEvent(server));
+            assertEquals(1, eventHandler.getOverflowPolicy().getOverflowCount());
+            assertEquals(1, eventHandler.getOverflowPolicy().getDroppedCount());
+        } finally {
+            release.countDown();
+            eventHandler.close();
+            server.stop(0);
+        }
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testOverflowSpillsToEventSpool() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        CountDownLatch dispatching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            dispatching.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+
+        AsyncEventHandler eventHandler = builder()
+            .withQueueCapacity(1)
+            .withNumWorkers(1)
+            .withEventSpool(eventSpool)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            eventHandler.dispatchEvent(createLogEvent(server));
+            assertTrue("event was not sent", dispatching.await(5, TimeUnit.SECONDS));
+            eventHandler.dispatchEvent(createLogEvent(server));
+            eventHandler.dispatchEvent(createLogEvent(server));
+            assertEquals(1, eventHandler.getOverflowPolicy().getSpilledCount());
+            assertEquals(1, eventSpool.size());
+        } finally {
+            release.countDown();
+            eventHandler.close();
+            server.stop(0);
+            eventSpool.close();
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        int eventCount = 20;
+        CountDownLatch received = new CountDownLatch(eventCount);
+        HttpServer server = startLocalServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            received.countDown();
+        });
+
+        // falls back to the worker pool on runtimes without virtual threads
+        AsyncEventHandler eventHandler = builder()
+            .withVirtualThreads(true)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            for (int i = 0; i < eventCount; i++) {
+                eventHandler.dispatchEvent(createLogEvent(server));
+            }
+            assertTrue("events were not received", received.await(5, TimeUnit.SECONDS));
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testInvalidRetryConfiguration() {
+        AsyncEventHandler.Builder builder = builder();
+        int expectedAttempts = builder.retryMaxAttempts;
+        long expectedInitialBackoff = builder.retryInitialBackoffMillis;
+        double expectedJitter = builder.retryJitter;
+
+        builder.withRetryMaxAttempts(0)
+            .withRetryBackoff(10, 5, TimeUnit.SECONDS)
+            .withRetryJitter(1.5)
+            .withRetryMaxInFlight(-1);
+
+        assertEquals(expectedAttempts, builder.retryMaxAttempts);
+        assertEquals(expectedInitialBackoff, builder.retryInitialBackoffMillis);
+        assertEquals(expectedJitter, builder.retryJitter, 0);
+        assertEquals(RetryPolicy.DEFAULT_MAX_RETRIES_IN_FLIGHT, builder.retryMaxInFlight);
+    }
+
     //======== Helper methods ========//
 
+    private static HttpServer startLocalServer(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/events", handler);
+        server.start();
+        return server;
+    }
+
+    private static LogEvent createLogEvent(HttpServer server) {
+        String endpoint = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/v1/events";
+        EventBatch eventBatch = new EventBatch.Builder().setAccountId("12345").setVisitors(Collections.emptyList()).build();
+        return new LogEvent(LogEvent.RequestMethod.POST, endpoint, Collections.emptyMap(), eventBatch);
+    }
+
+    private static class RecordedRequest {
+        String expectedBody;
+        String contentEncoding;
+        String contentType;
+        byte[] body;
+    }
+
+    private static String decode(RecordedRequest request) throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(request.body);
+        if ("gzip".equals(request.contentEncoding)) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        return new String(readFully(inputStream), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Dispatches a batch of repetitive events to a local stand-in for the event endpoint and returns what it received.
+     */
+    private static RecordedRequest dispatchToLocalServer(AsyncEventHandler.Builder builder) throws Exception {
+        RecordedRequest recorded = new RecordedRequest();
+        CountDownLatch received = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/events", exchange -> {
+            recorded.contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            recorded.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            recorded.body = readFully(exchange.getRequestBody());
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            received.countDown();
+        });
+        server.start();
+
+        AsyncEventHandler eventHandler = builder.withCloseTimeout(5, TimeUnit.SECONDS).build();
+        try {
+            List<Visitor> visitors = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                visitors.add(new Visitor.Builder()
+                    .setVisitorId("visitor" + i)
+                    .setAttributes(Collections.singletonList(new Attribute.Builder()
+                        .setEntityId("1234567890")
+                        .setKey("browser_type")
+                        .setType(Attribute.CUSTOM_ATTRIBUTE_TYPE)
+                        .setValue("chrome")
+                        .build()))
+                    .setSnapshots(Collections.emptyList())
+                    .build());
+            }
+            EventBatch eventBatch = new EventBatch.Builder()
+                .setAccountId("12345")
+                .setProjectId("67890")
+                .setRevision("42")
+                .setVisitors(visitors)
+                .build();
+            String endpoint = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/v1/events";
+            LogEvent logEvent = new LogEvent(LogEvent.RequestMethod.POST, endpoint, Collections.emptyMap(), eventBatch);
+            recorded.expectedBody = logEvent.getBody();
+
+            eventHandler.dispatchEvent(logEvent);
+            assertTrue("event was not received", received.await(5, TimeUnit.SECONDS));
+        } finally {
+            eventHandler.close();
+            server.stop(0);
+        }
+        return recorded;
+    }
+
+
     private LogEvent createLogEvent() {
         Map<String, String> testParams = new HashMap<String, String>();
         testParams.put("test", "params");
@@ -0,0 +1,227 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.optimizely.ab.event.NioEventHandler.builder;
+import static org.junit.Assert.*;
+
+public class NioEventHandlerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testManyEventsInFlightOnOneThread() throws Exception {
+        int eventCount = 40;
+        CountDownLatch received = new CountDownLatch(eventCount);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        startServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            sleep(200);
+            concurrent.decrementAndGet();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            received.countDown();
+        });
+
+        NioEventHandler eventHandler = builder()
+            .withIoThreads(1)
+            .withMaxInFlight(10)
+            .withMaxPerRoute(10)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < eventCount; i++) {
+                eventHandler.dispatchEvent(createLogEvent());
+            }
+            assertTrue("events were not received", received.await(10, TimeUnit.SECONDS));
+        } finally {
+            eventHandler.close();
+        }
+
+        // 4 rounds of 10 concurrent requests, where one at a time would take 8 seconds
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 4000);
+        assertTrue("max concurrent " + maxConcurrent.get(), maxConcurrent.get() > 1);
+        assertTrue("max concurrent " + maxConcurrent.get(), maxConcurrent.get() <= 10);
+    }
+
+    @Test
+    public void testMaxInFlightWithTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        startServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            requests.incrementAndGet();
+            await(release);
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+
+        NioEventHandler eventHandler = builder()
+            .withMaxInFlight(2)
+            .withAcquireTimeout(50, TimeUnit.MILLISECONDS)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            for (int i = 0; i < 3; i++) {
+                eventHandler.dispatchEvent(createLogEvent());
+            }
+            assertEquals(2, eventHandler.getInFlightCount());
+        } finally {
+            release.countDown();
+            eventHandler.close();
+        }
+        assertEquals(0, eventHandler.getInFlightCount());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testFailedEventsAreSpooled() throws Exception {
+        List<String> pollThreads = new CopyOnWriteArrayList<>();
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool")) {
+            @Override
+            public synchronized LogEvent poll() {
+                pollThreads.add(Thread.currentThread().getName());
+                return super.poll();
+            }
+        };
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(2);
+        startServer(exchange -> {
+            readFully(exchange.getRequestBody());
+            if (requests.incrementAndGet() == 1) {
+                exchange.sendResponseHeaders(503, -1);
+            } else {
+                exchange.sendResponseHeaders(204, -1);
+                delivered.countDown();
+            }
+            exchange.close();
+        });
+
+        NioEventHandler eventHandler = builder()
+            .withMaxInFlight(1)
+            .withEventSpool(eventSpool)
+            .withCloseTimeout(5, TimeUnit.SECONDS)
+            .build();
+        try {
+            eventHandler.dispatchEvent(createLogEvent());
+            // the second event succeeds and sends the spooled one again
+            eventHandler.dispatchEvent(createLogEvent());
+            assertTrue("spooled event was not delivered", delivered.await(5, TimeUnit.SECONDS));
+        } finally {
+            eventHandler.close();
+            eventSpool.close();
+        }
+        assertEquals(3, requests.get());
+        // the spool is read off the I/O reactor
+        assertFalse(pollThreads.isEmpty());
+        for (String threadName : pollThreads) {
+            assertTrue(threadName, threadName.startsWith("optimizely-nio-event-replay-"));
+        }
+    }
+
+    @Test
+    public void testClosedHandlerRejectsEvents() throws Exception {
+        EventSpool eventSpool = new EventSpool(temporaryFolder.newFolder("spool"));
+        NioEventHandler eventHandler = builder().withEventSpool(eventSpool).build();
+        eventHandler.close();
+
+        eventHandler.dispatchEvent(new LogEvent(LogEvent.RequestMethod.POST, "http://localhost/v1/events",
+            Collections.emptyMap(), new EventBatch()));
+        assertEquals(1, eventSpool.size());
+        eventSpool.close();
+    }
+
+    @Test
+    public void testInvalidMaxInFlight() {
+        NioEventHandler.Builder builder = builder();
+        int expected = builder.maxInFlight;
+        builder.withMaxInFlight(0);
+        assertEquals(expected, builder.maxInFlight);
+    }
+
+    //======== Helper methods ========//
+
+    private void startServer(HttpHandler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/events", handler);
+        // the stand-in endpoint answers concurrently, like the real one
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    private LogEvent createLogEvent() {
+        String endpoint = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/v1/events";
+        EventBatch eventBatch = new EventBatch.Builder().setAccountId("12345").setVisitors(Collections.emptyList()).build();
+        return new LogEvent(LogEvent.RequestMethod.POST, endpoint, Collections.emptyMap(), eventBatch);
+    }
+
+    private static void readFully(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (inputStream.read(buffer) != -1) {
+            // discard
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
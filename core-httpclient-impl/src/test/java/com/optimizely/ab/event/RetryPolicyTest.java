@@ -0,0 +1,81 @@
+/**
+ *
+ *    Copyright 2020, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void exponentialBackoffWithoutJitter() {
+        RetryPolicy retryPolicy = new RetryPolicy(6, 100, 500, 0, 10);
+
+        assertEquals(-1, retryPolicy.getDelayMillis(1, 0));
+        assertEquals(100, retryPolicy.getDelayMillis(2, 0));
+        assertEquals(200, retryPolicy.getDelayMillis(3, 0));
+        assertEquals(400, retryPolicy.getDelayMillis(4, 0));
+        assertEquals(500, retryPolicy.getDelayMillis(5, 0));
+        assertEquals(500, retryPolicy.getDelayMillis(6, 0));
+        assertEquals(-1, retryPolicy.getDelayMillis(7, 0));
+    }
+
+    @Test
+    public void jitterShortensBackoff() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 1000, 1000, 0.5, 10);
+
+        for (int i = 0; i < 1000; i++) {
+            long delay = retryPolicy.getDelayMillis(2, 0);
+            assertTrue("delay " + delay, delay > 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void retryAfterWithinMaxBackoff() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 100, 5000, 0.5, 10);
+
+        assertEquals(3000, retryPolicy.getDelayMillis(2, 3000));
+        assertEquals(-1, retryPolicy.getDelayMillis(2, 6000));
+    }
+
+    @Test
+    public void noRetry() {
+        assertEquals(-1, RetryPolicy.NO_RETRY.getDelayMillis(2, 0));
+    }
+
+    @Test
+    public void retryableStatus() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 100, 5000, 0.5, 10);
+
+        assertTrue(retryPolicy.isRetryableStatus(429));
+        assertTrue(retryPolicy.isRetryableStatus(500));
+        assertTrue(retryPolicy.isRetryableStatus(503));
+        assertFalse(retryPolicy.isRetryableStatus(400));
+        assertFalse(retryPolicy.isRetryableStatus(404));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBackoff() {
+        new RetryPolicy(3, 1000, 100, 0.5, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidJitter() {
+        new RetryPolicy(3, 100, 1000, 2, 10);
+    }
+}